@@ -0,0 +1,13 @@
+#!/bin/sh
+# Build the application and the benchmarks, then run JMH and keep the results per commit:
+#   results/<commit>.json (machine readable) and results/<commit>.txt (the summary table).
+# Extra arguments go to JMH, e.g. ./run.sh -p rows=1000000 RepositoryBenchmarks
+# Platform against virtual request threads over HTTP (the virtual trials need a Java 21 fork):
+#   ./run.sh -jvm /path/to/jdk-21/bin/java ThreadModeBenchmarks
+set -e
+cd "$(dirname "$0")"
+(cd .. && mvn -B -q install -DskipTests)
+mvn -B -q package
+commit=$(git rev-parse --short HEAD)
+mkdir -p results
+java -jar target/benchmarks.jar -rf json -rff "results/$commit.json" "$@" | tee "results/$commit.txt"
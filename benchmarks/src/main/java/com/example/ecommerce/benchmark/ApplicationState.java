@@ -0,0 +1,115 @@
+package com.example.ecommerce.benchmark;
+
+import com.example.ecommerce.EcommerceApiApplication;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// The application running against a temporary copy of a dataset from SyntheticDataGenerator:
+// rows orders, one customer per 10 orders and one product per 20, ending on a fixed date.
+// Generating is the slow part, so each (rows, seed) dataset is built once and cached in
+// bench.data-dir (default: <tmp>/ecommerce-bench); every trial then starts from a fresh copy,
+// so writes made by one benchmark never leak into the next.
+@State(Scope.Benchmark)
+public class ApplicationState {
+
+    private static final String END_DATE = "2025-01-01";
+
+    @Param({ "10000" })
+    public long rows;
+
+    @Param({ "42" })
+    public long seed;
+
+    ConfigurableApplicationContext context;
+    private Path databaseFile;
+
+    @Setup(Level.Trial)
+    public void start() throws IOException {
+        Path pristine = pristineDataset();
+        databaseFile = Files.createTempFile("ecommerce-bench-", ".db");
+        Files.copy(pristine, databaseFile, StandardCopyOption.REPLACE_EXISTING);
+        context = startApplication(databaseFile, webApplicationType(), properties());
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws IOException {
+        context.close();
+        deleteDatabase(databaseFile);
+    }
+
+    <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    // Overridden by states that serve HTTP or configure the application differently
+    WebApplicationType webApplicationType() {
+        return WebApplicationType.NONE;
+    }
+
+    String[] properties() {
+        return new String[0];
+    }
+
+    private Path pristineDataset() throws IOException {
+        Path dir = Paths.get(System.getProperty("bench.data-dir",
+                Paths.get(System.getProperty("java.io.tmpdir"), "ecommerce-bench").toString()));
+        Files.createDirectories(dir);
+        Path file = dir.resolve("orders-" + rows + "-seed-" + seed + ".db");
+        if (Files.exists(file)) {
+            return file;
+        }
+
+        Path building = dir.resolve(file.getFileName() + ".building");
+        deleteDatabase(building);
+        // The data is generated on startup, the context only has to be closed again
+        startApplication(building, WebApplicationType.NONE,
+                "app.data.generator.enabled=true",
+                "app.data.generator.seed=" + seed,
+                "app.data.generator.orders=" + rows,
+                "app.data.generator.customers=" + Math.max(rows / 10, 10),
+                "app.data.generator.products=" + Math.max(rows / 20, 10),
+                "app.data.generator.end-date=" + END_DATE).close();
+        // Closing the last connection checkpoints the WAL back into the main file
+        Files.move(building, file, StandardCopyOption.ATOMIC_MOVE);
+        return file;
+    }
+
+    // Passed as command line arguments: default properties would lose to application.properties
+    private static ConfigurableApplicationContext startApplication(Path database, WebApplicationType web,
+                                                                   String... properties) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:sqlite:" + database.toAbsolutePath(),
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.ecommerce.datagen=INFO",
+                "--app.metrics.live.reconcile-interval=3600000"));
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(EcommerceApiApplication.class)
+                .web(web)
+                .logStartupInfo(false)
+                .run(args.toArray(new String[0]));
+    }
+
+    private static void deleteDatabase(Path file) throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(Paths.get(file + "-wal"));
+        Files.deleteIfExists(Paths.get(file + "-shm"));
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.ecommerce.benchmark;
+
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.service.OrderService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// One order per call through the full service path: customer lookup, insert, rollups, commit
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderServiceBenchmarks {
+
+    private static final BigDecimal TOTAL = new BigDecimal("59.90");
+
+    private OrderService orderService;
+    private long firstCustomerId;
+    private long customerCount;
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        orderService = application.bean(OrderService.class);
+        JdbcTemplate jdbcTemplate = application.bean(JdbcTemplate.class);
+        firstCustomerId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM customers", Long.class);
+        customerCount = jdbcTemplate.queryForObject("SELECT MAX(id) FROM customers", Long.class) - firstCustomerId + 1;
+    }
+
+    @Benchmark
+    public Order createOrder() {
+        long customerId = firstCustomerId + random.nextLong(customerCount);
+        return orderService.createOrder(customerId, "1 Benchmark Way", TOTAL);
+    }
+}
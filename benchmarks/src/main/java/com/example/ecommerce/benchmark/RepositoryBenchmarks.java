@@ -0,0 +1,61 @@
+package com.example.ecommerce.benchmark;
+
+import com.example.ecommerce.entity.Product;
+import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.repository.ProductRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Read queries against the generated dataset, average time per call
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepositoryBenchmarks {
+
+    private static final BigDecimal MIN_PRICE = new BigDecimal("100.00");
+    private static final BigDecimal MAX_PRICE = new BigDecimal("150.00");
+
+    private ProductRepository productRepository;
+    private OrderRepository orderRepository;
+
+    @Setup
+    public void setUp(ApplicationState application) {
+        productRepository = application.bean(ProductRepository.class);
+        orderRepository = application.bean(OrderRepository.class);
+    }
+
+    @Benchmark
+    public List<Product> searchProducts() {
+        return productRepository.searchProducts("laptop");
+    }
+
+    @Benchmark
+    public List<Product> findByPriceBetween() {
+        return productRepository.findByPriceBetween(MIN_PRICE, MAX_PRICE);
+    }
+
+    @Benchmark
+    public List<Object[]> getMonthlySalesReport() {
+        return orderRepository.getMonthlySalesReport();
+    }
+
+    @Benchmark
+    public List<Object[]> findTopCustomersByTotalSpent() {
+        return orderRepository.findTopCustomersByTotalSpent();
+    }
+}
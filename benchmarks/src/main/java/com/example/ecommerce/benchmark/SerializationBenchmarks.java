@@ -0,0 +1,156 @@
+package com.example.ecommerce.benchmark;
+
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.entity.OrderStatus;
+import com.example.ecommerce.entity.Product;
+import com.example.ecommerce.web.BinaryFormatsConfig;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+// Jackson serialization of the API entities in every response format the API offers, with the
+// mappers configured the way the application configures them. "json-gzip" adds the cost of
+// server.compression to plain JSON. No database involved: the payloads are built in memory.
+// The payload size of each format is printed once per trial.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmarks {
+
+    private static final int LIST_SIZE = 100;
+
+    @Param({"json", "json-gzip", "smile", "cbor"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private boolean gzip;
+    private Product product;
+    private Order order;
+    private Customer customer;
+    private List<Product> products;
+    private List<Order> orders;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = objectMapper(format);
+        gzip = format.endsWith("-gzip");
+
+        customer = new Customer("Jane", "Smith", "jane.smith@example.com");
+        customer.setId(1L);
+        customer.setPhone("+1234567891");
+        customer.setAddress("456 Oak Ave, Los Angeles, CA 90001");
+
+        products = new ArrayList<>(LIST_SIZE);
+        orders = new ArrayList<>(LIST_SIZE);
+        LocalDateTime now = LocalDateTime.of(2024, 5, 17, 14, 30, 12);
+        for (int i = 0; i < LIST_SIZE; i++) {
+            Product p = new Product("Samsung Galaxy S24 " + i, new BigDecimal("899.99"), 30 + i);
+            p.setId((long) i + 1);
+            p.setDescription("Flagship Android smartphone with a 6.2 inch display");
+            p.setCategory("Electronics");
+            p.setBrand("Samsung");
+            p.setCreatedAt(now);
+            p.setUpdatedAt(now);
+            products.add(p);
+
+            Order o = new Order(customer);
+            o.setId((long) i + 1);
+            o.setOrderDate(now.minusDays(i));
+            o.setStatus(OrderStatus.values()[i % OrderStatus.values().length]);
+            o.setTotalAmount(new BigDecimal("1249.98"));
+            o.setShippingAddress("456 Oak Ave, Los Angeles, CA 90001");
+            o.setCreatedAt(now);
+            o.setUpdatedAt(now);
+            orders.add(o);
+        }
+        product = products.get(0);
+        order = orders.get(0);
+        customer.setOrders(new ArrayList<>(orders.subList(0, 10)));
+
+        System.out.printf("%n%s payload bytes: product=%d, productList=%d, orderList=%d%n", format,
+                write(product).length, write(products).length, write(orders).length);
+    }
+
+    private static ObjectMapper objectMapper(String format) {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        switch (format) {
+            case "json":
+            case "json-gzip":
+                return builder.build();
+            case "smile":
+                return BinaryFormatsConfig.binaryObjectMapper(builder, new SmileFactory());
+            case "cbor":
+                return BinaryFormatsConfig.binaryObjectMapper(builder, new CBORFactory());
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    private byte[] write(Object value) throws JsonProcessingException {
+        byte[] bytes = objectMapper.writeValueAsBytes(value);
+        if (!gzip) {
+            return bytes;
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] product() throws JsonProcessingException {
+        return write(product);
+    }
+
+    @Benchmark
+    public byte[] order() throws JsonProcessingException {
+        return write(order);
+    }
+
+    @Benchmark
+    public byte[] customerWithOrders() throws JsonProcessingException {
+        return write(customer);
+    }
+
+    @Benchmark
+    public byte[] productList() throws JsonProcessingException {
+        return write(products);
+    }
+
+    @Benchmark
+    public byte[] orderList() throws JsonProcessingException {
+        return write(orders);
+    }
+}
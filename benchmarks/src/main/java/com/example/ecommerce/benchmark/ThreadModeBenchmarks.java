@@ -0,0 +1,148 @@
+package com.example.ecommerce.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// Load test of the HTTP API served on platform threads against virtual threads (app.threads.mode).
+// Every call fires "concurrency" requests at once and waits for the last answer; the score is
+// bursts per second, with requests and errors per second as secondary results. Half the requests
+// read a product, half a customer's orders, so most of them block on the SQLite reader pool, which
+// is where the two modes differ. The virtual mode needs a Java 21 runtime for the forked JVM
+// (./run.sh -jvm <jdk21>/bin/java ThreadModeBenchmarks); on an older one its trials fail.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ThreadModeBenchmarks {
+
+    @Param({ "200", "2000" })
+    public int concurrency;
+
+    private HttpClient client;
+    private ExecutorService clientExecutor;
+    private String baseUrl;
+    private long firstCustomerId;
+    private long customerCount;
+    private long firstProductId;
+    private long productCount;
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    // The application serving HTTP on a random port in the given thread mode
+    @State(Scope.Benchmark)
+    public static class Server extends ApplicationState {
+
+        @Param({ "platform", "virtual" })
+        public String mode;
+
+        @Override
+        WebApplicationType webApplicationType() {
+            return WebApplicationType.SERVLET;
+        }
+
+        @Override
+        String[] properties() {
+            return new String[] {
+                    "app.threads.mode=" + mode,
+                    "server.port=0",
+                    // Both modes accept the whole burst; only how it is executed differs
+                    "server.tomcat.max-connections=20000",
+                    "server.tomcat.accept-count=20000"
+            };
+        }
+
+        int port() {
+            return context.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Responses {
+        public long requests;
+        public long errors;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            requests = 0;
+            errors = 0;
+        }
+    }
+
+    @Setup
+    public void setUp(Server server) {
+        baseUrl = "http://localhost:" + server.port();
+        JdbcTemplate jdbcTemplate = server.bean(JdbcTemplate.class);
+        firstCustomerId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM customers", Long.class);
+        customerCount = jdbcTemplate.queryForObject("SELECT MAX(id) FROM customers", Long.class) - firstCustomerId + 1;
+        firstProductId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM products", Long.class);
+        productCount = jdbcTemplate.queryForObject("SELECT MAX(id) FROM products", Long.class) - firstProductId + 1;
+        // HTTP/1.1, so every request in flight holds a connection (and, in platform mode, a thread)
+        clientExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .executor(clientExecutor)
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        clientExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void burst(Responses responses) {
+        CompletableFuture<?>[] inFlight = new CompletableFuture<?>[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            inFlight[i] = client.sendAsync(nextRequest(i), HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> {
+                        boolean ok = error == null && response.statusCode() < 400;
+                        synchronized (responses) {
+                            responses.requests++;
+                            if (!ok) {
+                                responses.errors++;
+                            }
+                        }
+                        return null;
+                    });
+        }
+        CompletableFuture.allOf(inFlight).join();
+    }
+
+    private HttpRequest nextRequest(int i) {
+        String path = i % 2 == 0
+                ? "/api/products/" + (firstProductId + random.nextLong(productCount))
+                : "/api/orders/customer/" + (firstCustomerId + random.nextLong(customerCount));
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(60))
+                .GET()
+                .build();
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.ecommerce.archive;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+
+// One month of archived orders and the table holding them
+public final class ArchivePartition {
+
+    private final YearMonth month;
+    private final String table;
+
+    ArchivePartition(YearMonth month, String table) {
+        this.month = month;
+        this.table = table;
+    }
+
+    public YearMonth getMonth() { return month; }
+
+    public String getTable() { return table; }
+
+    public LocalDateTime getStart() { return month.atDay(1).atStartOfDay(); }
+
+    public LocalDateTime getEnd() { return month.plusMonths(1).atDay(1).atStartOfDay(); }
+}
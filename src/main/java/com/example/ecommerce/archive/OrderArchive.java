@@ -0,0 +1,311 @@
+package com.example.ecommerce.archive;
+
+import com.example.ecommerce.entity.OrderStatus;
+import com.example.ecommerce.event.OrderSnapshot;
+import com.example.ecommerce.event.OrdersArchivedEvent;
+import com.example.ecommerce.rollup.Cents;
+import com.example.ecommerce.shard.Shards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+// Moves delivered and cancelled orders older than app.orders.archive.age out of the orders table
+// into one table per month (orders_archive_2023_04), so the hot table and its indexes only hold
+// the recent working set. Orders still in progress stay hot however old they are.
+//
+// Archived orders are read-only. OrderRepository reads them transparently where a query is bounded
+// by date (date range listings, exports, sales totals); per-partition sales figures are kept in
+// order_archive_partitions, so reports never scan archived rows. Moving orders changes no order
+// data, so the sales rollups are left alone.
+//
+// Not available with app.sharding.shards > 1: the partitions and their totals live on shard 0 only,
+// so app.orders.archive.enabled=true together with sharding fails at startup.
+@Component
+@DependsOn({"entityManagerFactory", "schemaMigrations"})
+@Endpoint(id = "orderarchive")
+public class OrderArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderArchive.class);
+
+    private static final String TERMINAL_STATUSES =
+            "('" + OrderStatus.DELIVERED.name() + "', '" + OrderStatus.CANCELLED.name() + "')";
+    private static final DateTimeFormatter TABLE_SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+    private static final Pattern CREATE_ORDERS = Pattern.compile(
+            "^\\s*create\\s+table\\s+(\"orders\"|`orders`|\\[orders]|orders)(?=\\s|\\()", Pattern.CASE_INSENSITIVE);
+    private static final String UPSERT_STATS =
+            "INSERT INTO order_archive_partitions (month, table_name, order_count, sales_count, sales_cents) " +
+            "VALUES (?, ?, ?, ?, ?) ON CONFLICT(month) DO UPDATE SET " +
+            "order_count = order_count + excluded.order_count, sales_count = sales_count + excluded.sales_count, " +
+            "sales_cents = sales_cents + excluded.sales_cents";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final Duration age;
+    private final int batchSize;
+    private final Shards shards;
+
+    // Month -> partition; replaced as a whole whenever a partition is added
+    private volatile NavigableMap<YearMonth, ArchivePartition> partitions = Collections.emptyNavigableMap();
+    private volatile Map<String, Object> lastRun;
+
+    @Autowired
+    public OrderArchive(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                        ApplicationEventPublisher eventPublisher,
+                        @Value("${app.orders.archive.enabled:false}") boolean enabled,
+                        @Value("${app.orders.archive.age:365d}") Duration age,
+                        @Value("${app.orders.archive.batch-size:1000}") int batchSize,
+                        Shards shards) {
+        if (enabled && shards.isSharded()) {
+            throw new IllegalStateException("app.orders.archive.enabled cannot be combined with app.sharding.shards > 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.age = age;
+        this.batchSize = batchSize;
+        this.shards = shards;
+    }
+
+    @PostConstruct
+    public void loadPartitions() {
+        NavigableMap<YearMonth, ArchivePartition> loaded = new TreeMap<>();
+        jdbcTemplate.query("SELECT month, table_name FROM order_archive_partitions", rs -> {
+            YearMonth month = YearMonth.parse(rs.getString(1));
+            loaded.put(month, new ArchivePartition(month, rs.getString(2)));
+        });
+        partitions = Collections.unmodifiableNavigableMap(loaded);
+    }
+
+    // Every partition, oldest first
+    public List<ArchivePartition> getPartitions() {
+        return new ArrayList<>(partitions.values());
+    }
+
+    // Partitions that may hold orders dated between start and end (inclusive), oldest first
+    public List<ArchivePartition> getPartitionsBetween(LocalDateTime start, LocalDateTime end) {
+        if (start == null || end == null || start.isAfter(end)) {
+            return List.of();
+        }
+        return new ArrayList<>(partitions.subMap(YearMonth.from(start), true, YearMonth.from(end), true).values());
+    }
+
+    // Sales of the archived orders per month (cancelled excluded), as {month, order count, cents}
+    public Map<YearMonth, long[]> getSalesByMonth() {
+        Map<YearMonth, long[]> sales = new TreeMap<>();
+        jdbcTemplate.query("SELECT month, sales_count, sales_cents FROM order_archive_partitions", rs -> {
+            sales.put(YearMonth.parse(rs.getString(1)), new long[] { rs.getLong(2), rs.getLong(3) });
+        });
+        return sales;
+    }
+
+    @Scheduled(cron = "${app.orders.archive.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            archive();
+        }
+    }
+
+    // Archive everything past the configured age now (POST /actuator/orderarchive)
+    @WriteOperation
+    public Map<String, Object> archive() {
+        return archiveOlderThan(LocalDateTime.now().minus(age));
+    }
+
+    // One month at a time, one batch per write transaction so other writers are only briefly held up
+    public synchronized Map<String, Object> archiveOlderThan(LocalDateTime cutoff) {
+        if (shards.isSharded()) {
+            throw new IllegalStateException("Orders cannot be archived with app.sharding.shards > 1");
+        }
+        long started = System.currentTimeMillis();
+        Timestamp oldest = jdbcTemplate.queryForObject(
+                "SELECT MIN(order_date) FROM orders WHERE status IN " + TERMINAL_STATUSES, Timestamp.class);
+        // The newest row never moves: SQLite hands out max(id) + 1, so archiving it could reuse an id
+        Long newestId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM orders", Long.class);
+
+        Map<String, Long> archived = new TreeMap<>();
+        if (oldest != null && newestId != null) {
+            for (YearMonth month = YearMonth.from(oldest.toLocalDateTime());
+                 month.atDay(1).atStartOfDay().isBefore(cutoff); month = month.plusMonths(1)) {
+                LocalDateTime end = month.plusMonths(1).atDay(1).atStartOfDay();
+                long moved = archiveMonth(month, end.isBefore(cutoff) ? end : cutoff, newestId);
+                if (moved > 0) {
+                    archived.put(month.toString(), moved);
+                }
+            }
+        }
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("cutoff", cutoff);
+        run.put("archived", archived.values().stream().mapToLong(Long::longValue).sum());
+        run.put("byMonth", archived);
+        run.put("millis", System.currentTimeMillis() - started);
+        run.put("finishedAt", LocalDateTime.now());
+        lastRun = run;
+        if (!archived.isEmpty()) {
+            log.info("Archived {} orders older than {} in {} ms", run.get("archived"), cutoff, run.get("millis"));
+        }
+        return run;
+    }
+
+    private long archiveMonth(YearMonth month, LocalDateTime end, long newestId) {
+        Timestamp from = Timestamp.valueOf(month.atDay(1).atStartOfDay());
+        Timestamp to = Timestamp.valueOf(end);
+        String candidates = "FROM orders WHERE order_date >= ? AND order_date < ? AND status IN " + TERMINAL_STATUSES +
+                " AND id < ?";
+        if (jdbcTemplate.queryForList("SELECT id " + candidates + " LIMIT 1", Long.class, from, to, newestId).isEmpty()) {
+            return 0;
+        }
+        String table = ensurePartition(month);
+        List<String> columns = columns("orders");
+        String columnList = String.join(", ", columns);
+
+        long total = 0;
+        int moved;
+        do {
+            moved = transactionTemplate.execute(status -> {
+                // Status is checked again in here: an order may have changed since the last batch
+                List<long[]> batch = jdbcTemplate.query(
+                        "SELECT id, CASE WHEN status = 'CANCELLED' THEN 0 ELSE 1 END, total_amount " + candidates +
+                                " ORDER BY order_date, id LIMIT ?",
+                        (rs, row) -> new long[] { rs.getLong(1), rs.getInt(2), Cents.of(rs.getBigDecimal(3)) },
+                        from, to, newestId, batchSize);
+                if (batch.isEmpty()) {
+                    return 0;
+                }
+                StringBuilder ids = new StringBuilder();
+                long salesCount = 0;
+                long salesCents = 0;
+                for (long[] row : batch) {
+                    ids.append(ids.length() == 0 ? "" : ",").append(row[0]);
+                    salesCount += row[1];
+                    salesCents += row[1] * row[2];
+                }
+                jdbcTemplate.update("INSERT INTO " + table + " (" + columnList + ") SELECT " + columnList +
+                        " FROM orders WHERE id IN (" + ids + ")");
+                jdbcTemplate.update("DELETE FROM orders WHERE id IN (" + ids + ")");
+                jdbcTemplate.update(UPSERT_STATS, month.toString(), table, batch.size(), salesCount, salesCents);
+                eventPublisher.publishEvent(new OrdersArchivedEvent(table, batch.size()));
+                return batch.size();
+            });
+            total += moved;
+        } while (moved == batchSize);
+        return total;
+    }
+
+    // Creates the month's table from the current orders DDL (or adds columns the orders table has
+    // gained since), registers it and makes it visible to readers before any order moves in
+    private String ensurePartition(YearMonth month) {
+        String table = "orders_archive_" + month.format(TABLE_SUFFIX);
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, String> archivedColumns = columnTypes(table);
+            if (archivedColumns.isEmpty()) {
+                String ddl = jdbcTemplate.queryForObject(
+                        "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = 'orders'", String.class);
+                jdbcTemplate.execute(CREATE_ORDERS.matcher(ddl).replaceFirst("CREATE TABLE " + table));
+                jdbcTemplate.execute("CREATE INDEX idx_" + table + "_date ON " + table + " (order_date, id)");
+                jdbcTemplate.execute("CREATE INDEX idx_" + table + "_customer ON " + table + " (customer_id)");
+            } else {
+                columnTypes("orders").forEach((column, type) -> {
+                    if (!archivedColumns.containsKey(column)) {
+                        jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+                    }
+                });
+            }
+            jdbcTemplate.update(UPSERT_STATS, month.toString(), table, 0, 0, 0);
+        });
+        if (!partitions.containsKey(month)) {
+            loadPartitions();
+        }
+        return table;
+    }
+
+    // Removes a deleted customer's archived orders, in the caller's transaction; returns them so
+    // the caller can publish the deletions like it does for hot orders
+    public List<OrderSnapshot> deleteCustomerOrders(Long customerId) {
+        List<OrderSnapshot> deleted = new ArrayList<>();
+        for (ArchivePartition partition : partitions.values()) {
+            List<OrderSnapshot> orders = jdbcTemplate.query(
+                    "SELECT id, order_date, status, total_amount FROM " + partition.getTable() + " WHERE customer_id = ?",
+                    (rs, row) -> new OrderSnapshot(rs.getLong(1), customerId, rs.getTimestamp(2).toLocalDateTime(),
+                            OrderStatus.valueOf(rs.getString(3)), rs.getBigDecimal(4)),
+                    customerId);
+            if (orders.isEmpty()) {
+                continue;
+            }
+            long salesCount = 0;
+            long salesCents = 0;
+            for (OrderSnapshot order : orders) {
+                if (order.countsAsSale()) {
+                    salesCount++;
+                    salesCents += Cents.of(order.getTotalAmount());
+                }
+            }
+            jdbcTemplate.update("DELETE FROM " + partition.getTable() + " WHERE customer_id = ?", customerId);
+            jdbcTemplate.update(UPSERT_STATS, partition.getMonth().toString(), partition.getTable(),
+                    -orders.size(), -salesCount, -salesCents);
+            deleted.addAll(orders);
+        }
+        return deleted;
+    }
+
+    @ReadOperation
+    public Map<String, Object> report() {
+        List<Map<String, Object>> stats = new ArrayList<>();
+        jdbcTemplate.query("SELECT month, table_name, order_count, sales_count, sales_cents " +
+                "FROM order_archive_partitions ORDER BY month", rs -> {
+            Map<String, Object> partition = new LinkedHashMap<>();
+            partition.put("month", rs.getString(1));
+            partition.put("table", rs.getString(2));
+            partition.put("orders", rs.getLong(3));
+            partition.put("sales", rs.getLong(4));
+            partition.put("revenue", Cents.toAmount(rs.getLong(5)));
+            stats.add(partition);
+        });
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("enabled", enabled);
+        report.put("age", age.toString());
+        report.put("partitions", stats);
+        report.put("lastRun", lastRun);
+        return report;
+    }
+
+    private List<String> columns(String table) {
+        return new ArrayList<>(columnTypes(table).keySet());
+    }
+
+    private Map<String, String> columnTypes(String table) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        jdbcTemplate.query("PRAGMA table_info(" + table + ")", rs -> {
+            columns.put(rs.getString("name"), rs.getString("type"));
+        });
+        return columns;
+    }
+}
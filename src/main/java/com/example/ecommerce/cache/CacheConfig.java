@@ -0,0 +1,58 @@
+package com.example.ecommerce.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Collections;
+
+// Bounded, TTL-evicting product caches. Statistics are recorded so that Spring Boot binds
+// hit/miss/eviction counters for every cache to Micrometer (/actuator/metrics/cache.gets, cache.evictions).
+// Every cache is a FillGuardedCache, so a fill that raced with an eviction is not stored.
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(
+            @Value("${app.cache.products.max-size:10000}") long productsMaxSize,
+            @Value("${app.cache.products.ttl:10m}") Duration productsTtl,
+            @Value("${app.cache.product-lists.max-size:500}") long listsMaxSize,
+            @Value("${app.cache.product-lists.ttl:5m}") Duration listsTtl) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager() {
+            @Override
+            protected Cache adaptCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache) {
+                return new FillGuardedCache(super.adaptCaffeineCache(name, cache));
+            }
+        };
+        // Only the caches registered here exist; an unknown cache name is a programming error
+        cacheManager.setCacheNames(Collections.emptyList());
+        cacheManager.registerCustomCache(CacheNames.PRODUCTS, Caffeine.newBuilder()
+                .maximumSize(productsMaxSize)
+                .expireAfterWrite(productsTtl)
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(CacheNames.PRODUCTS_BY_CATEGORY, Caffeine.newBuilder()
+                .maximumSize(listsMaxSize)
+                .expireAfterWrite(listsTtl)
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(CacheNames.PRODUCT_CATEGORIES, Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(listsTtl)
+                .recordStats()
+                .build());
+        cacheManager.registerCustomCache(CacheNames.PRODUCT_BRANDS, Caffeine.newBuilder()
+                .maximumSize(1)
+                .expireAfterWrite(listsTtl)
+                .recordStats()
+                .build());
+        return cacheManager;
+    }
+}
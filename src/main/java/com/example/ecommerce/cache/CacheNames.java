@@ -0,0 +1,14 @@
+package com.example.ecommerce.cache;
+
+public final class CacheNames {
+
+    // Product by id
+    public static final String PRODUCTS = "products";
+    // Product lists keyed by lower-cased category
+    public static final String PRODUCTS_BY_CATEGORY = "productsByCategory";
+    // Query-result caches for the facet lists, single key "all"
+    public static final String PRODUCT_CATEGORIES = "productCategories";
+    public static final String PRODUCT_BRANDS = "productBrands";
+
+    private CacheNames() {}
+}
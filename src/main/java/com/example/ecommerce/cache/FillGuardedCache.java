@@ -0,0 +1,110 @@
+package com.example.ecommerce.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Drops cache fills that raced with an eviction. @Cacheable misses, runs the method and puts the
+// result; a reader that read the row before a writer committed can reach its put only after the
+// writer's after-commit eviction, and would then cache the old row until the TTL. Every eviction
+// bumps a generation for the key's stripe, a miss remembers the generation it saw (per thread, the
+// miss and the put of @Cacheable run on the same one), and a put for that key is skipped when the
+// generation has moved since. Stripes keep the bookkeeping bounded; a fill that shares a stripe
+// with an unrelated eviction is skipped too, which only costs one more miss.
+class FillGuardedCache implements Cache {
+
+    private static final int STRIPES = 1024;
+
+    private final Cache delegate;
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+    private final ThreadLocal<Miss> lastMiss = new ThreadLocal<>();
+
+    FillGuardedCache(Cache delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        // Read the generation first: an eviction after that makes the later put stale
+        long generation = generations.get(stripe(key));
+        ValueWrapper value = delegate.get(key);
+        lastMiss.set(value == null ? new Miss(key, generation) : null);
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return delegate.get(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Miss miss = lastMiss.get();
+        lastMiss.remove();
+        if (miss != null && miss.key.equals(key) && generations.get(stripe(key)) != miss.generation) {
+            return;
+        }
+        delegate.put(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        generations.incrementAndGet(stripe(key));
+        delegate.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        generations.incrementAndGet(stripe(key));
+        return delegate.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        bumpAll();
+        delegate.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        bumpAll();
+        return delegate.invalidate();
+    }
+
+    private void bumpAll() {
+        for (int i = 0; i < STRIPES; i++) {
+            generations.incrementAndGet(i);
+        }
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    private static final class Miss {
+        private final Object key;
+        private final long generation;
+
+        Miss(Object key, long generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.ecommerce.cache;
+
+import com.example.ecommerce.entity.Product;
+import com.example.ecommerce.event.ChangeType;
+import com.example.ecommerce.event.ProductChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Locale;
+import java.util.Objects;
+
+// Evicts exactly the cache entries a committed product change can affect.
+// Eviction runs after commit, so readers that miss afterwards load the committed row. A reader
+// that loaded the old row before the commit but stores it after the eviction is stopped by
+// FillGuardedCache, which drops fills that an eviction of the same key overtook.
+@Component
+public class ProductCacheInvalidator {
+
+    private static final String ALL = "all";
+
+    private final CacheManager cacheManager;
+
+    @Autowired
+    public ProductCacheInvalidator(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        Product product = event.getProduct();
+        evict(CacheNames.PRODUCTS, event.getProductId());
+        if (product == null) {
+            // Stock-only change: the category listing shows stock levels, the facets are unaffected
+            evictCategory(event.getStockCategory());
+            return;
+        }
+
+        evictCategory(product.getCategory());
+        if (event.getType() == ChangeType.UPDATED) {
+            evictCategory(event.getPreviousCategory());
+            if (!Objects.equals(product.getCategory(), event.getPreviousCategory())) {
+                evict(CacheNames.PRODUCT_CATEGORIES, ALL);
+            }
+            if (!Objects.equals(product.getBrand(), event.getPreviousBrand())) {
+                evict(CacheNames.PRODUCT_BRANDS, ALL);
+            }
+        } else {
+            // A new product can add a facet value, a removed one can take the last occurrence away
+            if (product.getCategory() != null) {
+                evict(CacheNames.PRODUCT_CATEGORIES, ALL);
+            }
+            if (product.getBrand() != null) {
+                evict(CacheNames.PRODUCT_BRANDS, ALL);
+            }
+        }
+    }
+
+    private void evictCategory(String category) {
+        if (category != null) {
+            evict(CacheNames.PRODUCTS_BY_CATEGORY, category.toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+}
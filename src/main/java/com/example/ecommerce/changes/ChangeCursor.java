@@ -0,0 +1,67 @@
+package com.example.ecommerce.changes;
+
+import java.util.Objects;
+
+// A position in the change feed: a shard and the last seq seen in that shard's change log.
+// Written "<shard>:<seq>", or just "<seq>" for shard 0, the only shard there is without sharding.
+public final class ChangeCursor {
+
+    private final int shard;
+    private final long seq;
+
+    public ChangeCursor(int shard, long seq) {
+        if (shard < 0 || seq < 0) {
+            throw new IllegalArgumentException("A change feed position needs a shard and a seq that are not negative");
+        }
+        this.shard = shard;
+        this.seq = seq;
+    }
+
+    public static ChangeCursor parse(String value) {
+        try {
+            int colon = value.indexOf(':');
+            if (colon < 0) {
+                return new ChangeCursor(0, Long.parseLong(value.trim()));
+            }
+            return new ChangeCursor(Integer.parseInt(value.substring(0, colon).trim()),
+                    Long.parseLong(value.substring(colon + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid change feed position '" + value + "', expected <seq> or <shard>:<seq>");
+        }
+    }
+
+    // The same shard, at a later seq
+    public ChangeCursor at(long seq) {
+        return new ChangeCursor(shard, seq);
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ChangeCursor)) {
+            return false;
+        }
+        ChangeCursor other = (ChangeCursor) o;
+        return shard == other.shard && seq == other.seq;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(shard, seq);
+    }
+
+    @Override
+    public String toString() {
+        return shard == 0 ? Long.toString(seq) : shard + ":" + seq;
+    }
+}
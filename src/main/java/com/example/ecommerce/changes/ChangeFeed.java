@@ -0,0 +1,331 @@
+package com.example.ecommerce.changes;
+
+import com.example.ecommerce.dto.ChangeBatch;
+import com.example.ecommerce.dto.ChangeRecord;
+import com.example.ecommerce.event.CustomerChangedEvent;
+import com.example.ecommerce.event.OrderChangedEvent;
+import com.example.ecommerce.event.ProductChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Delivers the change log to long-poll and SSE consumers without holding a request thread each.
+// Waiting requests are parked as DeferredResults and SseEmitters; a single dispatcher thread is
+// woken after every commit, reads what is new once per distinct position and hands it out. A
+// consumer follows one shard's log per request or stream.
+//
+// SseEmitter.send blocks while the client's socket is full, so stream writes run on a small pool
+// of sender threads, never on the dispatcher, and each stream has at most one write in flight: a
+// slow consumer holds one sender and falls behind on its own. A stream whose write has not
+// finished after send-timeout is dropped and ended once the write returns; its EventSource then
+// reconnects with Last-Event-ID.
+@Component
+public class ChangeFeed {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeFeed.class);
+
+    private final ChangeLog changeLog;
+    private final int batchSize;
+    private final Duration heartbeat;
+    private final Duration streamTimeout;
+    private final long sendTimeoutNanos;
+    private final ScheduledExecutorService dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders;
+    private final AtomicBoolean dispatchPending = new AtomicBoolean();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final Queue<Subscriber> subscribers = new ConcurrentLinkedQueue<>();
+
+    @Autowired
+    public ChangeFeed(ChangeLog changeLog,
+                      @Value("${app.changes.batch-size:500}") int batchSize,
+                      @Value("${app.changes.heartbeat:15s}") Duration heartbeat,
+                      @Value("${app.changes.stream-timeout:30m}") Duration streamTimeout,
+                      @Value("${app.changes.send-threads:4}") int sendThreads,
+                      @Value("${app.changes.send-timeout:10s}") Duration sendTimeout) {
+        this.changeLog = changeLog;
+        this.batchSize = batchSize;
+        this.heartbeat = heartbeat;
+        this.streamTimeout = streamTimeout;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        AtomicInteger threads = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(sendThreads, runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-send-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        dispatcher.scheduleWithFixedDelay(this::sendHeartbeats,
+                heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        signal();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        signal();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        signal();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    // Answers at once when changes after "since" exist, otherwise when the next one commits or,
+    // at the latest, with an empty batch after "wait"
+    public DeferredResult<ResponseEntity<?>> poll(ChangeCursor since, int limit, Duration wait) {
+        changeLog.checkRetained(since);
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>(wait.toMillis(),
+                () -> ResponseEntity.ok(batch(List.of(), since)));
+        List<ChangeRecord> changes = changeLog.readSince(since, limit);
+        if (!changes.isEmpty() || wait.isZero()) {
+            result.setResult(ResponseEntity.ok(batch(changes, since)));
+            return result;
+        }
+        Waiter waiter = new Waiter(since, limit, result);
+        waiters.add(waiter);
+        result.onCompletion(() -> waiters.remove(waiter));
+        // A commit between the read above and registering would otherwise go unnoticed
+        signal();
+        return result;
+    }
+
+    // Streams every change after "since" as "changes" events whose id is the position after the
+    // batch, so a reconnecting EventSource resumes through Last-Event-ID (also after the stream
+    // timeout ends the response)
+    public SseEmitter subscribe(ChangeCursor since) {
+        return subscribe(since, new SseEmitter(streamTimeout.toMillis()));
+    }
+
+    SseEmitter subscribe(ChangeCursor since, SseEmitter emitter) {
+        try {
+            changeLog.checkRetained(since);
+        } catch (ChangesExpiredException e) {
+            send(emitter, SseEmitter.event().name("expired").data(e.getMessage()));
+            emitter.complete();
+            return emitter;
+        }
+        Subscriber subscriber = new Subscriber(since, emitter);
+        subscribers.add(subscriber);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        signal();
+        return emitter;
+    }
+
+    public int getWaiterCount() {
+        return waiters.size();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    // Commits arriving while a dispatch is queued are folded into it
+    private void signal() {
+        if (dispatchPending.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(this::dispatch);
+            } catch (RuntimeException e) {
+                dispatchPending.set(false);
+            }
+        }
+    }
+
+    private void dispatch() {
+        dispatchPending.set(false);
+        if (waiters.isEmpty() && subscribers.isEmpty()) {
+            return;
+        }
+        Map<ChangeCursor, List<ChangeRecord>> read = new HashMap<>();
+        try {
+            for (Waiter waiter : waiters) {
+                List<ChangeRecord> changes = read.computeIfAbsent(waiter.since,
+                        since -> changeLog.readSince(since, batchSize));
+                if (!changes.isEmpty()) {
+                    List<ChangeRecord> batch = changes.size() > waiter.limit ? changes.subList(0, waiter.limit) : changes;
+                    waiter.result.setResult(ResponseEntity.ok(batch(batch, waiter.since)));
+                }
+            }
+            for (Subscriber subscriber : subscribers) {
+                deliver(subscriber, read);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Change feed dispatch failed: {}", e.getMessage());
+        }
+    }
+
+    // Hand the next batch to a sender; a full batch asks for another dispatch once it is written,
+    // until the subscriber has caught up with the log
+    private void deliver(Subscriber subscriber, Map<ChangeCursor, List<ChangeRecord>> read) {
+        if (!subscriber.startSend()) {
+            dropIfStalled(subscriber);
+            return;
+        }
+        List<ChangeRecord> changes;
+        try {
+            changes = read.computeIfAbsent(subscriber.position, since -> changeLog.readSince(since, batchSize));
+        } catch (RuntimeException e) {
+            subscriber.endSend();
+            throw e;
+        }
+        if (changes.isEmpty()) {
+            subscriber.endSend();
+            return;
+        }
+        ChangeCursor last = subscriber.position.at(changes.get(changes.size() - 1).getSeq());
+        boolean full = changes.size() >= batchSize;
+        sendAsync(subscriber, SseEmitter.event().name("changes").id(last.toString()).data(changes), last, full);
+    }
+
+    // Comment lines keep proxies from closing idle streams and reveal dead connections
+    private void sendHeartbeats() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.startSend()) {
+                sendAsync(subscriber, SseEmitter.event().comment("heartbeat"), null, false);
+            } else {
+                dropIfStalled(subscriber);
+            }
+        }
+    }
+
+    private void sendAsync(Subscriber subscriber, SseEmitter.SseEventBuilder event, ChangeCursor position, boolean more) {
+        try {
+            senders.execute(() -> {
+                boolean sent = send(subscriber.emitter, event);
+                if (sent && position != null) {
+                    subscriber.position = position;
+                }
+                if (!sent) {
+                    subscribers.remove(subscriber);
+                } else if (subscriber.dropped) {
+                    subscriber.emitter.complete();
+                }
+                // Commits the dispatcher skipped this subscriber for are picked up by another dispatch
+                if (subscriber.endSend() || (sent && more)) {
+                    signal();
+                }
+            });
+        } catch (RuntimeException e) {
+            // Shutting down
+            subscriber.endSend();
+        }
+    }
+
+    // The write has not returned since before send-timeout: stop feeding the stream. The stuck
+    // send holds the emitter's lock, so the stream is ended by the sender once the write returns
+    // (or fails with the connection's write timeout).
+    private void dropIfStalled(Subscriber subscriber) {
+        if (System.nanoTime() - subscriber.sendStarted > sendTimeoutNanos && subscribers.remove(subscriber)) {
+            subscriber.dropped = true;
+            log.info("Dropped change feed stream at {}: a write has been pending for more than {} ms",
+                    subscriber.position, TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+        }
+    }
+
+    private static ChangeBatch batch(List<ChangeRecord> changes, ChangeCursor since) {
+        ChangeCursor next = changes.isEmpty() ? since : since.at(changes.get(changes.size() - 1).getSeq());
+        return new ChangeBatch(changes, next.getSeq(), next.toString());
+    }
+
+    private static boolean send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private static final class Waiter {
+        private final ChangeCursor since;
+        private final int limit;
+        private final DeferredResult<ResponseEntity<?>> result;
+
+        Waiter(ChangeCursor since, int limit, DeferredResult<ResponseEntity<?>> result) {
+            this.since = since;
+            this.limit = limit;
+            this.result = result;
+        }
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private final AtomicBoolean skipped = new AtomicBoolean();
+        // Written by the sender, read by the dispatcher once the send has ended
+        private volatile ChangeCursor position;
+        private volatile long sendStarted;
+        private volatile boolean dropped;
+
+        Subscriber(ChangeCursor position, SseEmitter emitter) {
+            this.position = position;
+            this.emitter = emitter;
+        }
+
+        // False while a send is still in flight; the skip is remembered for endSend. Marking the
+        // skip before trying means a send ending in between cannot miss it.
+        boolean startSend() {
+            skipped.set(true);
+            if (!sending.compareAndSet(false, true)) {
+                return false;
+            }
+            skipped.set(false);
+            sendStarted = System.nanoTime();
+            return true;
+        }
+
+        // True when a dispatch passed this subscriber over while the send was in flight
+        boolean endSend() {
+            sending.set(false);
+            return skipped.getAndSet(false);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.ecommerce.changes;
+
+import com.example.ecommerce.dto.ChangeRecord;
+import com.example.ecommerce.event.ChangeType;
+import com.example.ecommerce.event.CustomerChangedEvent;
+import com.example.ecommerce.event.OrderChangedEvent;
+import com.example.ecommerce.event.ProductChangedEvent;
+import com.example.ecommerce.shard.Shards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+// Transactional outbox: every product, order and customer change event is appended to change_log
+// inside the transaction that made the change, so a change and its log row commit or roll back
+// together. All writes go through the single writer connection, so sequence numbers are handed
+// out in commit order, and AUTOINCREMENT never reuses one (a rollback releases nothing, so the
+// only gaps are rows removed by retention). A consumer that remembers the last seq it saw never
+// misses or repeats a change.
+//
+// With app.sharding.shards > 1 each shard logs the changes made on it with its own sequence, and no
+// single seq orders them all, so a position in the log is a ChangeCursor naming the shard as well
+// ("<shard>:<seq>") and a consumer follows every shard's log.
+@Component
+@Transactional
+public class ChangeLog {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeLog.class);
+
+    public static final String PRODUCT = "product";
+    public static final String ORDER = "order";
+    public static final String CUSTOMER = "customer";
+
+    private static final String INSERT =
+            "INSERT INTO change_log (entity, entity_id, change_type, changed_at) VALUES (?, ?, ?, ?)";
+    private static final int PRUNE_BATCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration retention;
+    private final Shards shards;
+
+    @Autowired
+    public ChangeLog(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                     @Value("${app.changes.retention:7d}") Duration retention,
+                     Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.retention = retention;
+        this.shards = shards;
+    }
+
+    // The listeners run synchronously in the publisher's transaction
+    @EventListener
+    public void onProductChanged(ProductChangedEvent event) {
+        append(PRODUCT, event.getProductId(), event.getType());
+    }
+
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        append(ORDER, event.getOrderId(), event.getType());
+    }
+
+    @EventListener
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        append(CUSTOMER, event.getCustomerId(), event.getType());
+    }
+
+    private void append(String entity, Long entityId, ChangeType type) {
+        jdbcTemplate.update(INSERT, entity, entityId, type.name(), System.currentTimeMillis());
+    }
+
+    // Changes on the cursor's shard after its sequence number, oldest first
+    @Transactional(readOnly = true)
+    public List<ChangeRecord> readSince(ChangeCursor since, int limit) {
+        return shards.read(shardOf(since), () -> jdbcTemplate.query(
+                "SELECT seq, entity, entity_id, change_type, changed_at FROM change_log WHERE seq > ? ORDER BY seq LIMIT ?",
+                (rs, row) -> new ChangeRecord(rs.getLong(1), rs.getString(2), rs.getLong(3),
+                        ChangeType.valueOf(rs.getString(4)),
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(rs.getLong(5)), ZoneId.systemDefault())),
+                since.getSeq(), limit));
+    }
+
+    // Position of the newest change on every shard, shard 0 first; seq 0 before a shard's first change
+    @Transactional(readOnly = true)
+    public List<ChangeCursor> heads() {
+        List<ChangeCursor> heads = new ArrayList<>();
+        for (int shard = 0; shard < shards.getCount(); shard++) {
+            heads.add(new ChangeCursor(shard, shards.read(shard, this::lastSeq)));
+        }
+        return heads;
+    }
+
+    // Fails when changes right after "since" have already been removed by retention
+    @Transactional(readOnly = true)
+    public void checkRetained(ChangeCursor since) {
+        long firstRetained = shards.read(shardOf(since), () -> {
+            Long oldest = jdbcTemplate.queryForObject("SELECT MIN(seq) FROM change_log", Long.class);
+            return oldest != null ? oldest : lastSeq() + 1;
+        });
+        if (since.getSeq() + 1 < firstRetained) {
+            throw new ChangesExpiredException("Changes after " + since + " are no longer retained, " +
+                    "the oldest available change is " + since.at(firstRetained));
+        }
+    }
+
+    // Drop changes older than the retention period. Rows are appended in changed_at order, so the
+    // first row to keep is found by walking from the oldest one, and everything before it goes,
+    // a batch per transaction so writers are only held up briefly.
+    @Scheduled(fixedDelayString = "${app.changes.prune-interval:3600000}",
+               initialDelayString = "${app.changes.prune-interval:3600000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void prune() {
+        shards.forEachShard(this::pruneShard);
+    }
+
+    private void pruneShard(int shard) {
+        long cutoff = System.currentTimeMillis() - retention.toMillis();
+        List<Long> kept = jdbcTemplate.queryForList(
+                "SELECT seq FROM change_log WHERE changed_at >= ? ORDER BY seq LIMIT 1", Long.class, cutoff);
+        long keepFrom = kept.isEmpty() ? Long.MAX_VALUE : kept.get(0);
+        int removed = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> jdbcTemplate.update(
+                    "DELETE FROM change_log WHERE seq < ? AND seq < (SELECT MIN(seq) FROM change_log) + ?",
+                    keepFrom, PRUNE_BATCH_SIZE));
+            removed += batch;
+        } while (batch > 0);
+        if (removed > 0) {
+            log.info("Pruned {} change log entries older than {} on shard {}", removed, retention, shard);
+        }
+    }
+
+    // Sequence number of the newest change on the current shard
+    private long lastSeq() {
+        Long seq = jdbcTemplate.queryForObject(
+                "SELECT COALESCE((SELECT seq FROM sqlite_sequence WHERE name = 'change_log'), 0)", Long.class);
+        return seq != null ? seq : 0;
+    }
+
+    private int shardOf(ChangeCursor cursor) {
+        if (cursor.getShard() >= shards.getCount()) {
+            throw new IllegalArgumentException("There is no shard " + cursor.getShard() + ", shards are 0 to " + (shards.getCount() - 1));
+        }
+        return cursor.getShard();
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.ecommerce.changes;
+
+// The requested position is older than the retained change log; the consumer has to resync
+public class ChangesExpiredException extends RuntimeException {
+
+    public ChangesExpiredException(String message) {
+        super(message);
+    }
+}
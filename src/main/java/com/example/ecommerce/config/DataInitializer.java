@@ -1,5 +1,6 @@
 package com.example.ecommerce.config;
 
+import com.example.ecommerce.datagen.SyntheticDataGenerator;
 import com.example.ecommerce.entity.Customer;
 import com.example.ecommerce.entity.Product;
 import com.example.ecommerce.entity.Order;
@@ -8,6 +9,7 @@ import com.example.ecommerce.service.CustomerService;
 import com.example.ecommerce.service.ProductService;
 import com.example.ecommerce.service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
@@ -19,21 +21,31 @@ public class DataInitializer implements CommandLineRunner {
     private final CustomerService customerService;
     private final ProductService productService;
     private final OrderService orderService;
+    private final SyntheticDataGenerator syntheticDataGenerator;
+    private final boolean generateSyntheticData;
     
     @Autowired
     public DataInitializer(CustomerService customerService, 
                           ProductService productService,
-                          OrderService orderService) {
+                          OrderService orderService,
+                          SyntheticDataGenerator syntheticDataGenerator,
+                          @Value("${app.data.generator.enabled:false}") boolean generateSyntheticData) {
         this.customerService = customerService;
         this.productService = productService;
         this.orderService = orderService;
+        this.syntheticDataGenerator = syntheticDataGenerator;
+        this.generateSyntheticData = generateSyntheticData;
     }
     
     @Override
     public void run(String... args) throws Exception {
-        // Check if data already exists
-        if (customerService.getAllCustomers().isEmpty()) {
-            initializeData();
+        // Check if data already exists; an empty database gets either the generated data set or the samples
+        if (customerService.countCustomers() == 0) {
+            if (generateSyntheticData) {
+                syntheticDataGenerator.generate();
+            } else {
+                initializeData();
+            }
         }
         System.out.println("\n==============================================");
         System.out.println("Application is ready!");
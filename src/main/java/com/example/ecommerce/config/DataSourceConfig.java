@@ -0,0 +1,178 @@
+package com.example.ecommerce.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.sqlite.SQLiteConfig;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// SQLite in WAL mode behind two pools: a single writer connection, so writes queue in the pool
+// instead of failing with SQLITE_BUSY, and read-only connections that keep reading while a write
+// is in progress. Read-only transactions are routed to the readers, everything else to the writer.
+//
+// Because there is exactly one writer connection, code running in a write transaction must never
+// open a second, independent write transaction (REQUIRES_NEW); it would wait for itself.
+//
+// With app.threads.mode=virtual each pool sits behind a ConnectionGateDataSource, so thousands of
+// request threads wait on a semaphore rather than inside Hikari and the SQLite driver.
+//
+// With app.sharding.shards > 1 there is one such writer/reader pair per SQLite file, and the
+// ShardContext picks the file before the read/write routing picks the pool (see Shards).
+//
+// Every pool is wrapped in a StatementCountingDataSource for the per-request and per-repository
+// statement metrics.
+@Configuration
+public class DataSourceConfig {
+
+    @Value("${spring.datasource.url}")
+    private String url;
+
+    @Value("${spring.datasource.driver-class-name:org.sqlite.JDBC}")
+    private String driverClassName;
+
+    @Value("${app.sqlite.synchronous:NORMAL}")
+    private String synchronous;
+
+    @Value("${app.sqlite.cache-size:-65536}")
+    private int cacheSize;
+
+    @Value("${app.sqlite.mmap-size:268435456}")
+    private long mmapSize;
+
+    @Value("${app.sqlite.busy-timeout:5000}")
+    private int busyTimeout;
+
+    @Value("${app.threads.mode:platform}")
+    private String threadMode;
+
+    @Value("${app.datasource.read-pool-size:0}")
+    private int readPoolSize;
+
+    @Value("${app.sharding.shards:1}")
+    private int shards;
+
+    // {n} is replaced by the shard number; shard 0 is spring.datasource.url
+    @Value("${app.sharding.url-pattern:jdbc:sqlite:database-shard{n}.db}")
+    private String shardUrlPattern;
+
+    @Bean
+    public HikariDataSource writerDataSource() {
+        return writerPool("sqlite-writer", url);
+    }
+
+    // Depends on the writer so WAL mode is switched on before the first reader opens the file
+    @Bean
+    public HikariDataSource readerDataSource(@Qualifier("writerDataSource") HikariDataSource writerDataSource) {
+        return readerPool("sqlite-reader", url);
+    }
+
+    @Bean
+    public ShardPools shardPools() {
+        List<HikariDataSource> writers = new ArrayList<>();
+        List<HikariDataSource> readers = new ArrayList<>();
+        for (int shard = 1; shard < shards; shard++) {
+            String shardUrl = shardUrlPattern.replace("{n}", Integer.toString(shard));
+            writers.add(writerPool("sqlite-writer-" + shard, shardUrl));
+            readers.add(readerPool("sqlite-reader-" + shard, shardUrl));
+        }
+        return new ShardPools(writers, readers);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writerDataSource") HikariDataSource writerDataSource,
+                                 @Qualifier("readerDataSource") HikariDataSource readerDataSource,
+                                 ShardPools shardPools) {
+        DataSource shard0 = readWrite(writerDataSource, readerDataSource);
+        if (shardPools.getWriters().isEmpty()) {
+            return new LazyConnectionDataSourceProxy(shard0);
+        }
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(0, shard0);
+        for (int i = 0; i < shardPools.getWriters().size(); i++) {
+            targets.put(i + 1, readWrite(shardPools.getWriters().get(i), shardPools.getReaders().get(i)));
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(shard0);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private DataSource readWrite(HikariDataSource writerPool, HikariDataSource readerPool) {
+        DataSource writer = new StatementCountingDataSource(gated(writerPool));
+        DataSource reader = new StatementCountingDataSource(gated(readerPool));
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReadWriteRoutingDataSource.Route.WRITE, writer);
+        targets.put(ReadWriteRoutingDataSource.Route.READ, reader);
+
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(writer);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    private HikariDataSource writerPool(String poolName, String jdbcUrl) {
+        SQLiteConfig sqlite = baseConfig();
+        sqlite.setJournalMode(SQLiteConfig.JournalMode.WAL);
+
+        HikariConfig config = poolConfig(poolName, jdbcUrl, sqlite);
+        config.setMaximumPoolSize(1);
+        return new HikariDataSource(config);
+    }
+
+    private HikariDataSource readerPool(String poolName, String jdbcUrl) {
+        SQLiteConfig sqlite = baseConfig();
+        sqlite.setReadOnly(true);
+
+        HikariConfig config = poolConfig(poolName, jdbcUrl, sqlite);
+        config.setReadOnly(true);
+        config.setMaximumPoolSize(readPoolSize > 0 ? readPoolSize : Runtime.getRuntime().availableProcessors());
+        return new HikariDataSource(config);
+    }
+
+    // One permit per pooled connection, timing out like the pool itself would
+    private DataSource gated(HikariDataSource pool) {
+        if (ThreadMode.fromProperty(threadMode) != ThreadMode.VIRTUAL) {
+            return pool;
+        }
+        return new ConnectionGateDataSource(pool, pool.getMaximumPoolSize(), pool.getConnectionTimeout());
+    }
+
+    private SQLiteConfig baseConfig() {
+        SQLiteConfig sqlite = new SQLiteConfig();
+        sqlite.setSynchronous(SQLiteConfig.SynchronousMode.valueOf(synchronous.toUpperCase(Locale.ROOT)));
+        sqlite.setCacheSize(cacheSize);
+        sqlite.setBusyTimeout(busyTimeout);
+        sqlite.setTempStore(SQLiteConfig.TempStore.MEMORY);
+        return sqlite;
+    }
+
+    private HikariConfig poolConfig(String poolName, String jdbcUrl, SQLiteConfig sqlite) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setDriverClassName(driverClassName);
+        config.setJdbcUrl(jdbcUrl);
+        config.setDataSourceProperties(sqlite.toProperties());
+        // Not covered by SQLiteConfig; a per-connection setting
+        config.setConnectionInitSql("PRAGMA mmap_size=" + mmapSize);
+        // SQLite connections never go stale, keep them for the life of the pool
+        config.setMaxLifetime(0);
+        config.setIdleTimeout(0);
+        return config;
+    }
+}
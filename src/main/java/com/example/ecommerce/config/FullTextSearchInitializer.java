@@ -0,0 +1,114 @@
+package com.example.ecommerce.config;
+
+import com.example.ecommerce.search.SearchBackend;
+import com.example.ecommerce.shard.Shards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+// Maintains FTS5 shadow tables for products and customers.
+// Runs after Hibernate has created the base tables; the virtual tables use external content,
+// so the text lives only once on disk and triggers keep the index in step with every write.
+// Customers are indexed on every shard; products only live on shard 0.
+@Component
+@DependsOn({"entityManagerFactory", "shardSchema"})
+public class FullTextSearchInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(FullTextSearchInitializer.class);
+
+    private static final String[] PRODUCT_DDL = {
+            "CREATE VIRTUAL TABLE products_fts USING fts5(name, description, brand, category, " +
+                    "content='products', content_rowid='id', tokenize='unicode61 remove_diacritics 2')",
+            "CREATE TRIGGER IF NOT EXISTS products_fts_ai AFTER INSERT ON products BEGIN " +
+                    "INSERT INTO products_fts(rowid, name, description, brand, category) " +
+                    "VALUES (new.id, new.name, new.description, new.brand, new.category); END",
+            "CREATE TRIGGER IF NOT EXISTS products_fts_ad AFTER DELETE ON products BEGIN " +
+                    "INSERT INTO products_fts(products_fts, rowid, name, description, brand, category) " +
+                    "VALUES ('delete', old.id, old.name, old.description, old.brand, old.category); END",
+            "CREATE TRIGGER IF NOT EXISTS products_fts_au AFTER UPDATE OF name, description, brand, category ON products BEGIN " +
+                    "INSERT INTO products_fts(products_fts, rowid, name, description, brand, category) " +
+                    "VALUES ('delete', old.id, old.name, old.description, old.brand, old.category); " +
+                    "INSERT INTO products_fts(rowid, name, description, brand, category) " +
+                    "VALUES (new.id, new.name, new.description, new.brand, new.category); END"
+    };
+
+    private static final String[] CUSTOMER_DDL = {
+            "CREATE VIRTUAL TABLE customers_fts USING fts5(first_name, last_name, address, " +
+                    "content='customers', content_rowid='id', tokenize='unicode61 remove_diacritics 2')",
+            "CREATE TRIGGER IF NOT EXISTS customers_fts_ai AFTER INSERT ON customers BEGIN " +
+                    "INSERT INTO customers_fts(rowid, first_name, last_name, address) " +
+                    "VALUES (new.id, new.first_name, new.last_name, new.address); END",
+            "CREATE TRIGGER IF NOT EXISTS customers_fts_ad AFTER DELETE ON customers BEGIN " +
+                    "INSERT INTO customers_fts(customers_fts, rowid, first_name, last_name, address) " +
+                    "VALUES ('delete', old.id, old.first_name, old.last_name, old.address); END",
+            "CREATE TRIGGER IF NOT EXISTS customers_fts_au AFTER UPDATE OF first_name, last_name, address ON customers BEGIN " +
+                    "INSERT INTO customers_fts(customers_fts, rowid, first_name, last_name, address) " +
+                    "VALUES ('delete', old.id, old.first_name, old.last_name, old.address); " +
+                    "INSERT INTO customers_fts(rowid, first_name, last_name, address) " +
+                    "VALUES (new.id, new.first_name, new.last_name, new.address); END"
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SearchBackend backend;
+    private final Shards shards;
+
+    @Autowired
+    public FullTextSearchInitializer(JdbcTemplate jdbcTemplate,
+                                     @Value("${app.search.backend:index}") String backend,
+                                     Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.backend = SearchBackend.fromProperty(backend);
+        this.shards = shards;
+    }
+
+    @PostConstruct
+    public void initialize() {
+        shards.forEachShard(shard -> {
+            if (backend == SearchBackend.FTS5) {
+                if (shard == 0) {
+                    install("products", PRODUCT_DDL);
+                }
+                install("customers", CUSTOMER_DDL);
+            } else {
+                // Writes should not pay for triggers nobody reads; a later install rebuilds from scratch
+                uninstall("products");
+                uninstall("customers");
+            }
+        });
+    }
+
+    private void install(String table, String[] ddl) {
+        String ftsTable = table + "_fts";
+        boolean created = !exists(ftsTable);
+        if (created) {
+            jdbcTemplate.execute(ddl[0]);
+        }
+        for (int i = 1; i < ddl.length; i++) {
+            jdbcTemplate.execute(ddl[i]);
+        }
+        if (created) {
+            jdbcTemplate.execute("INSERT INTO " + ftsTable + "(" + ftsTable + ") VALUES ('rebuild')");
+            log.info("Created and populated FTS5 table {}", ftsTable);
+        }
+    }
+
+    private void uninstall(String table) {
+        String ftsTable = table + "_fts";
+        for (String suffix : new String[] {"_ai", "_ad", "_au"}) {
+            jdbcTemplate.execute("DROP TRIGGER IF EXISTS " + ftsTable + suffix);
+        }
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + ftsTable);
+    }
+
+    private boolean exists(String name) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sqlite_master WHERE name = ?", Integer.class, name);
+        return count != null && count > 0;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.ecommerce.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.retry.RetryCallback;
+import org.springframework.retry.RetryContext;
+import org.springframework.retry.listener.RetryListenerSupport;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counts optimistic locking conflicts per entity type (Micrometer "optimistic.lock.conflicts")
+// and per row, so hot rows show up under /actuator/optimisticlocks
+@Component(RetryConfig.OPTIMISTIC_LOCK_LISTENER)
+@Endpoint(id = "optimisticlocks")
+public class OptimisticLockMonitor extends RetryListenerSupport {
+
+    // Per-row tracking is bounded; once full, only rows already tracked keep counting
+    private static final int MAX_TRACKED_ROWS = 1000;
+    private static final int TOP_ROWS = 20;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<String, LongAdder> conflictsByRow = new ConcurrentHashMap<>();
+
+    @Autowired
+    public OptimisticLockMonitor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public <T, E extends Throwable> void onError(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        String entity = "unknown";
+        String row = null;
+        if (throwable instanceof ObjectOptimisticLockingFailureException) {
+            ObjectOptimisticLockingFailureException conflict = (ObjectOptimisticLockingFailureException) throwable;
+            if (conflict.getPersistentClassName() != null) {
+                String className = conflict.getPersistentClassName();
+                entity = className.substring(className.lastIndexOf('.') + 1);
+                if (conflict.getIdentifier() != null) {
+                    row = entity + "#" + conflict.getIdentifier();
+                }
+            }
+        }
+        meterRegistry.counter("optimistic.lock.conflicts", "entity", entity).increment();
+
+        if (row != null) {
+            LongAdder counter = conflictsByRow.get(row);
+            if (counter == null && conflictsByRow.size() < MAX_TRACKED_ROWS) {
+                counter = conflictsByRow.computeIfAbsent(row, key -> new LongAdder());
+            }
+            if (counter != null) {
+                counter.increment();
+            }
+        }
+    }
+
+    @Override
+    public <T, E extends Throwable> void close(RetryContext context, RetryCallback<T, E> callback, Throwable throwable) {
+        // A throwable here means every attempt conflicted and the caller got the exception
+        if (throwable != null) {
+            meterRegistry.counter("optimistic.lock.exhausted").increment();
+        }
+    }
+
+    @ReadOperation
+    public Map<String, Long> hotRows() {
+        List<Map.Entry<String, LongAdder>> entries = new ArrayList<>(conflictsByRow.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size() && i < TOP_ROWS; i++) {
+            top.put(entries.get(i).getKey(), entries.get(i).getValue().sum());
+        }
+        return top;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.ecommerce.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Sends connections of @Transactional(readOnly = true) work to the reader pool and everything else
+// to the writer. Must sit behind a LazyConnectionDataSourceProxy: the read-only flag is only bound
+// after the transaction manager has asked for its connection, so the target has to be chosen lazily.
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Route {
+        WRITE,
+        READ
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() ? Route.READ : Route.WRITE;
+    }
+}
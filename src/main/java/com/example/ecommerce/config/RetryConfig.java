@@ -0,0 +1,48 @@
+package com.example.ecommerce.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.PriorityOrdered;
+import org.springframework.retry.annotation.EnableRetry;
+import org.springframework.retry.annotation.RetryConfiguration;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+// The retry advice wraps the transaction advice, so each attempt of a @Retryable @Transactional
+// method runs in a new transaction with a fresh persistence context. Neither advisor is ordered by
+// default (both would be LOWEST_PRECEDENCE, nesting undefined), hence the explicit orders.
+@Configuration
+@EnableRetry
+@EnableTransactionManagement(proxyTargetClass = true, order = RetryConfig.TRANSACTION_ORDER)
+public class RetryConfig {
+
+    // Bean name referenced from @Retryable(listeners = ...)
+    public static final String OPTIMISTIC_LOCK_LISTENER = "optimisticLockMonitor";
+
+    // Lower runs first, i.e. further outside
+    public static final int RETRY_ORDER = Ordered.LOWEST_PRECEDENCE - 1;
+    public static final int TRANSACTION_ORDER = Ordered.LOWEST_PRECEDENCE;
+
+    // PriorityOrdered so it is registered before the auto-proxy creator first looks up advisors
+    @Bean
+    public static BeanPostProcessor retryAdvisorOrder() {
+        return new RetryAdvisorOrder();
+    }
+
+    private static final class RetryAdvisorOrder implements BeanPostProcessor, PriorityOrdered {
+
+        @Override
+        public Object postProcessBeforeInitialization(Object bean, String beanName) {
+            if (bean instanceof RetryConfiguration) {
+                ((RetryConfiguration) bean).setOrder(RETRY_ORDER);
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.ecommerce.config;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.retry.annotation.Backoff;
+import org.springframework.retry.annotation.Retryable;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Re-run a read-modify-write that lost a version check against a concurrent writer: up to three
+// more attempts, each in a new transaction (see RetryConfig), with a short jittered backoff so
+// the competing writers spread out. Failures are counted by OptimisticLockMonitor.
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Retryable(value = OptimisticLockingFailureException.class, maxAttempts = 4,
+           backoff = @Backoff(delay = 20, multiplier = 2, maxDelay = 200, random = true),
+           listeners = RetryConfig.OPTIMISTIC_LOCK_LISTENER)
+public @interface RetryOnOptimisticLock {
+}
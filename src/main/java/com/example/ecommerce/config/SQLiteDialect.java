@@ -5,12 +5,33 @@ import org.hibernate.dialect.function.StandardSQLFunction;
 import org.hibernate.dialect.function.SQLFunctionTemplate;
 import org.hibernate.dialect.function.VarArgsSQLFunction;
 import org.hibernate.dialect.identity.IdentityColumnSupport;
+import org.hibernate.dialect.pagination.AbstractLimitHandler;
+import org.hibernate.dialect.pagination.LimitHandler;
+import org.hibernate.dialect.pagination.LimitHelper;
+import org.hibernate.engine.spi.RowSelection;
 import org.hibernate.type.StandardBasicTypes;
 
 import java.sql.Types;
 
 public class SQLiteDialect extends Dialect {
 
+    private static final LimitHandler LIMIT_HANDLER = new AbstractLimitHandler() {
+        @Override
+        public String processSql(String sql, RowSelection selection) {
+            return sql + (LimitHelper.hasFirstRow(selection) ? " limit ? offset ?" : " limit ?");
+        }
+
+        @Override
+        public boolean supportsLimit() {
+            return true;
+        }
+
+        @Override
+        public boolean bindLimitParametersInReverseOrder() {
+            return true;
+        }
+    };
+
     public SQLiteDialect() {
         registerColumnType(Types.BIT, "integer");
         registerColumnType(Types.TINYINT, "tinyint");
@@ -39,6 +60,11 @@ public class SQLiteDialect extends Dialect {
         registerFunction("mod", new SQLFunctionTemplate(StandardBasicTypes.INTEGER, "?1 % ?2"));
         registerFunction("substr", new StandardSQLFunction("substr", StandardBasicTypes.STRING));
         registerFunction("substring", new StandardSQLFunction("substr", StandardBasicTypes.STRING));
+        // The driver stores timestamps as epoch milliseconds of the JVM's local time
+        registerFunction("year", new SQLFunctionTemplate(StandardBasicTypes.INTEGER,
+                "cast(strftime('%Y', ?1 / 1000, 'unixepoch', 'localtime') as integer)"));
+        registerFunction("month", new SQLFunctionTemplate(StandardBasicTypes.INTEGER,
+                "cast(strftime('%m', ?1 / 1000, 'unixepoch', 'localtime') as integer)"));
     }
 
     @Override
@@ -46,6 +72,12 @@ public class SQLiteDialect extends Dialect {
         return new SQLiteIdentityColumnSupport();
     }
 
+    // Push row limits into the SQL instead of truncating the result set client side
+    @Override
+    public LimitHandler getLimitHandler() {
+        return LIMIT_HANDLER;
+    }
+
     @Override
     public boolean hasAlterTable() {
         return false;
@@ -10,6 +10,12 @@ public class SQLiteIdentityColumnSupport extends IdentityColumnSupportImpl {
         return true;
     }
 
+    // Emit a bare "integer" column so that "primary key (id)" makes it an alias for the rowid
+    @Override
+    public boolean hasDataTypeInIdentityColumn() {
+        return false;
+    }
+
     @Override
     public String getIdentitySelectString(String table, String column, int type)
             throws MappingException {
@@ -0,0 +1,28 @@
+package com.example.ecommerce.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import java.util.List;
+
+// Writer and reader pools of the shards after shard 0 (whose pools are the writerDataSource and
+// readerDataSource beans), index 0 here being shard 1. Closed with the context.
+public class ShardPools implements AutoCloseable {
+
+    private final List<HikariDataSource> writers;
+    private final List<HikariDataSource> readers;
+
+    public ShardPools(List<HikariDataSource> writers, List<HikariDataSource> readers) {
+        this.writers = writers;
+        this.readers = readers;
+    }
+
+    public List<HikariDataSource> getWriters() { return writers; }
+
+    public List<HikariDataSource> getReaders() { return readers; }
+
+    @Override
+    public void close() {
+        readers.forEach(HikariDataSource::close);
+        writers.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.ecommerce.config;
+
+import com.example.ecommerce.shard.ShardContext;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+// Picks the shard (one ReadWriteRoutingDataSource per SQLite file) from the ShardContext.
+// Like the read/write routing it must sit behind a LazyConnectionDataSourceProxy, so a service
+// can bind its shard at the top of a @Transactional method, before the first statement runs.
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.route();
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.ecommerce.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Sees every SQL statement Hibernate prepares (registered through
+// spring.jpa.properties.hibernate.session_factory.statement_inspector). Statement counts for the
+// metrics come from StatementCountingDataSource, which also sees plain JDBC.
+//
+// Capture mode, used by the startup query plan check: on the capturing thread SELECTs are recorded
+// and rewritten into a query over the same statement that returns no rows, so repository methods
+// can be invoked with placeholder arguments without reading any data.
+public class SqlStatementInspector implements StatementInspector {
+
+    private static final ThreadLocal<List<String>> CAPTURED = new ThreadLocal<>();
+
+    public static void startCapture() {
+        CAPTURED.set(new ArrayList<>());
+    }
+
+    // The statements captured since startCapture; ends capture mode on this thread
+    public static List<String> stopCapture() {
+        List<String> captured = CAPTURED.get();
+        CAPTURED.remove();
+        return captured != null ? captured : new ArrayList<>();
+    }
+
+    public static boolean isCapturing() {
+        return CAPTURED.get() != null;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        List<String> captured = CAPTURED.get();
+        if (captured == null || !sql.regionMatches(true, 0, "select", 0, 6)) {
+            return sql;
+        }
+        captured.add(sql);
+        // SQLite evaluates the constant WHERE before running the subquery, so nothing is read
+        return "select * from (" + sql + ") where 0";
+    }
+}
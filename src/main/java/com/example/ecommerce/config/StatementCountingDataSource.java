@@ -0,0 +1,81 @@
+package com.example.ecommerce.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Records every statement executed over its connections in the executing thread's StatementLog.
+// Sitting below Hibernate and JdbcTemplate alike, it also sees the plain JDBC issued inside
+// repository calls (custom repository fragments, rollup upserts, the change log), which a
+// Hibernate StatementInspector never does. A batch counts as one statement.
+public class StatementCountingDataSource extends DelegatingDataSource {
+
+    public StatementCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return counting(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return counting(super.getConnection(username, password));
+    }
+
+    private static Connection counting(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof CallableStatement) {
+                        return counting((Statement) result, CallableStatement.class, (String) args[0]);
+                    }
+                    if (result instanceof PreparedStatement) {
+                        return counting((Statement) result, PreparedStatement.class, (String) args[0]);
+                    }
+                    if (result instanceof Statement) {
+                        return counting((Statement) result, Statement.class, null);
+                    }
+                    return result;
+                });
+    }
+
+    private static Statement counting(Statement statement, Class<? extends Statement> type, String preparedSql) {
+        InvocationHandler handler = new InvocationHandler() {
+            // Plain statements name their SQL per call, or per addBatch for a batch
+            private String batchSql;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                if (name.equals("addBatch") && args != null && args.length == 1) {
+                    batchSql = (String) args[0];
+                } else if (name.startsWith("execute")) {
+                    String sql = args != null && args.length > 0 && args[0] instanceof String ? (String) args[0]
+                            : preparedSql != null ? preparedSql : batchSql;
+                    StatementLog.current().record(sql != null ? sql : "(empty batch)");
+                }
+                return StatementCountingDataSource.invoke(statement, method, args);
+            }
+        };
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.ecommerce.config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// SQL statements executed on the current thread, recorded by StatementCountingDataSource: a
+// running count plus the last RECENT statements. Only ever touched by its own thread.
+public final class StatementLog {
+
+    public static final int RECENT = 8;
+
+    private static final ThreadLocal<StatementLog> LOG = ThreadLocal.withInitial(StatementLog::new);
+
+    private final String[] recent = new String[RECENT];
+    private long count;
+
+    private StatementLog() {}
+
+    public static StatementLog current() {
+        return LOG.get();
+    }
+
+    void record(String sql) {
+        recent[(int) (count % RECENT)] = sql;
+        count++;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    // The statements recorded after count() returned mark, oldest first, at most RECENT of them
+    public List<String> since(long mark) {
+        long from = Math.max(mark, count - RECENT);
+        List<String> statements = new ArrayList<>((int) Math.max(0, count - from));
+        for (long i = from; i < count; i++) {
+            statements.add(recent[(int) (i % RECENT)]);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.ecommerce.config;
+
+import java.util.Locale;
+
+// How requests are executed: on Tomcat's platform thread pool or on one virtual thread each
+public enum ThreadMode {
+    PLATFORM,
+    VIRTUAL;
+
+    public static ThreadMode fromProperty(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown app.threads.mode '" + value + "', expected platform or virtual");
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.ecommerce.controller;
+
+import com.example.ecommerce.changes.ChangeCursor;
+import com.example.ecommerce.changes.ChangeFeed;
+import com.example.ecommerce.changes.ChangeLog;
+import com.example.ecommerce.changes.ChangesExpiredException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Incremental change feed over products, orders and customers, read from the change log
+@RestController
+@RequestMapping("/api/changes")
+@CrossOrigin(origins = "*")
+public class ChangeController {
+
+    private static final int MAX_WAIT_SECONDS = 60;
+
+    private final ChangeFeed changeFeed;
+    private final ChangeLog changeLog;
+
+    @Autowired
+    public ChangeController(ChangeFeed changeFeed, ChangeLog changeLog) {
+        this.changeFeed = changeFeed;
+        this.changeLog = changeLog;
+    }
+
+    // Changes after "since", oldest first. With wait > 0 an empty result is held back for up to
+    // that many seconds until something changes (long poll). 410 when "since" has been pruned.
+    // "since" is "<shard>:<seq>" with more than one shard, a plain seq means shard 0.
+    @GetMapping
+    public DeferredResult<ResponseEntity<?>> getChanges(@RequestParam(defaultValue = "0") String since,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        @RequestParam(defaultValue = "0") int wait) {
+        try {
+            int batchSize = limit != null ? limit : changeFeed.getBatchSize();
+            if (batchSize < 1 || batchSize > changeFeed.getBatchSize()) {
+                throw new IllegalArgumentException("limit must be between 1 and " + changeFeed.getBatchSize());
+            }
+            if (wait < 0 || wait > MAX_WAIT_SECONDS) {
+                throw new IllegalArgumentException("wait must be between 0 and " + MAX_WAIT_SECONDS);
+            }
+            return changeFeed.poll(ChangeCursor.parse(since), batchSize, Duration.ofSeconds(wait));
+        } catch (IllegalArgumentException e) {
+            return completed(new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST));
+        } catch (ChangesExpiredException e) {
+            return completed(new ResponseEntity<>(e.getMessage(), HttpStatus.GONE));
+        } catch (Exception e) {
+            return completed(new ResponseEntity<>("Error retrieving changes: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR));
+        }
+    }
+
+    // Server-sent events: every change after "since" (or Last-Event-ID when reconnecting), then
+    // new changes as they commit. Without either, only changes from now on; with more than one
+    // shard "since" is required, one stream per shard.
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(@RequestParam(required = false) String since,
+                                                    @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        try {
+            ChangeCursor position;
+            if (lastEventId != null && !lastEventId.isEmpty()) {
+                position = ChangeCursor.parse(lastEventId);
+            } else if (since != null) {
+                position = ChangeCursor.parse(since);
+            } else {
+                List<ChangeCursor> heads = changeLog.heads();
+                if (heads.size() > 1) {
+                    throw new IllegalArgumentException("since is required with more than one shard");
+                }
+                position = heads.get(0);
+            }
+            return new ResponseEntity<>(changeFeed.subscribe(position), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            // No body: an event stream response can only carry events
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Position of the newest change, a starting point for a consumer that has just loaded
+    // everything: a seq, or with more than one shard a "<shard>:<seq>" position per shard
+    @GetMapping("/head")
+    public ResponseEntity<?> getHead() {
+        try {
+            List<ChangeCursor> heads = changeLog.heads();
+            if (heads.size() == 1) {
+                return new ResponseEntity<>(heads.get(0).getSeq(), HttpStatus.OK);
+            }
+            List<String> positions = new ArrayList<>();
+            for (ChangeCursor head : heads) {
+                positions.add(head.getShard() + ":" + head.getSeq());
+            }
+            return new ResponseEntity<>(positions, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error retrieving change log head: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    private static DeferredResult<ResponseEntity<?>> completed(ResponseEntity<?> response) {
+        DeferredResult<ResponseEntity<?>> result = new DeferredResult<>();
+        result.setResult(response);
+        return result;
+    }
+}
@@ -1,12 +1,24 @@
 package com.example.ecommerce.controller;
 
+import com.example.ecommerce.dto.BulkImportResult;
+import com.example.ecommerce.dto.CursorPage;
+import com.example.ecommerce.dto.EntityVersion;
+import com.example.ecommerce.dto.CustomerView;
 import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.service.BulkImportService;
 import com.example.ecommerce.service.CustomerService;
+import com.example.ecommerce.service.StaleVersionException;
 import javax.validation.Valid;
+import com.example.ecommerce.web.CollectionETag;
+import com.example.ecommerce.web.CollectionVersions;
+import com.example.ecommerce.web.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Optional;
@@ -17,10 +29,15 @@ import java.util.Optional;
 public class CustomerController {
     
     private final CustomerService customerService;
+    private final BulkImportService bulkImportService;
+    private final CollectionVersions collectionVersions;
     
     @Autowired
-    public CustomerController(CustomerService customerService) {
+    public CustomerController(CustomerService customerService, BulkImportService bulkImportService,
+                              CollectionVersions collectionVersions) {
         this.customerService = customerService;
+        this.bulkImportService = bulkImportService;
+        this.collectionVersions = collectionVersions;
     }
     
     // Create a new customer
@@ -28,7 +45,7 @@ public class CustomerController {
     public ResponseEntity<?> createCustomer(@Valid @RequestBody Customer customer) {
         try {
             Customer createdCustomer = customerService.createCustomer(customer);
-            return new ResponseEntity<>(createdCustomer, HttpStatus.CREATED);
+            return new ResponseEntity<>(CustomerView.of(createdCustomer), HttpStatus.CREATED);
         } catch (IllegalArgumentException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
@@ -36,12 +53,34 @@ public class CustomerController {
         }
     }
     
+    // Bulk import customers: validated in bulk, written in batched chunks, one result per row
+    @PostMapping("/bulk")
+    public ResponseEntity<?> bulkImportCustomers(@RequestBody List<Customer> customers) {
+        try {
+            BulkImportResult result = bulkImportService.importCustomers(customers);
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error importing customers: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     // Get all customers
+    @CollectionETag({ CollectionVersions.CUSTOMERS, CollectionVersions.ORDERS })
     @GetMapping
-    public ResponseEntity<List<Customer>> getAllCustomers() {
+    public ResponseEntity<?> getAllCustomers(@RequestParam(required = false) String after,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) String include) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                CursorPage<Customer> page = customerService.getCustomersPage(after, limit);
+                return new ResponseEntity<>(customerService.toViews(page, includesOrders(include)), HttpStatus.OK);
+            }
             List<Customer> customers = customerService.getAllCustomers();
-            return new ResponseEntity<>(customers, HttpStatus.OK);
+            return new ResponseEntity<>(customerService.toViews(customers, includesOrders(include)), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -49,11 +88,27 @@ public class CustomerController {
     
     // Get customer by ID
     @GetMapping("/{id}")
-    public ResponseEntity<?> getCustomerById(@PathVariable Long id) {
+    public ResponseEntity<?> getCustomerById(@PathVariable Long id,
+                                             @RequestParam(required = false) String include,
+                                             WebRequest webRequest) {
         try {
+            // Embedded orders change without touching the customer row, so they add the orders collection
+            // to the validators; both are read before the customer is loaded
+            boolean withOrders = includesOrders(include);
+            String ordersTag = withOrders ? collectionVersions.etag(CollectionVersions.ORDERS) : null;
+            long ordersModified = withOrders ? collectionVersions.lastModified(CollectionVersions.ORDERS) : -1;
+            Optional<EntityVersion> version = customerService.getCustomerVersion(id);
+            if (version.isPresent() && webRequest.checkNotModified(
+                    customerETag(version.get().getVersion(), ordersTag),
+                    Math.max(ETags.lastModified(version.get().getUpdatedAt()), ordersModified))) {
+                return null;
+            }
             Optional<Customer> customer = customerService.getCustomerById(id);
             if (customer.isPresent()) {
-                return new ResponseEntity<>(customer.get(), HttpStatus.OK);
+                return ResponseEntity.ok()
+                        .eTag(customerETag(customer.get().getVersion(), ordersTag))
+                        .lastModified(Math.max(ETags.lastModified(customer.get().getUpdatedAt()), ordersModified))
+                        .body(customerService.toView(customer.get(), includesOrders(include)));
             } else {
                 return new ResponseEntity<>("Customer not found with id: " + id, HttpStatus.NOT_FOUND);
             }
@@ -63,12 +118,14 @@ public class CustomerController {
     }
     
     // Get customer by email
+    @CollectionETag({ CollectionVersions.CUSTOMERS, CollectionVersions.ORDERS })
     @GetMapping("/email/{email}")
-    public ResponseEntity<?> getCustomerByEmail(@PathVariable String email) {
+    public ResponseEntity<?> getCustomerByEmail(@PathVariable String email,
+                                                @RequestParam(required = false) String include) {
         try {
             Optional<Customer> customer = customerService.getCustomerByEmail(email);
             if (customer.isPresent()) {
-                return new ResponseEntity<>(customer.get(), HttpStatus.OK);
+                return new ResponseEntity<>(customerService.toView(customer.get(), includesOrders(include)), HttpStatus.OK);
             } else {
                 return new ResponseEntity<>("Customer not found with email: " + email, HttpStatus.NOT_FOUND);
             }
@@ -79,10 +136,17 @@ public class CustomerController {
     
     // Update customer
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateCustomer(@PathVariable Long id, @Valid @RequestBody Customer customerDetails) {
+    public ResponseEntity<?> updateCustomer(@PathVariable Long id, @Valid @RequestBody Customer customerDetails,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Customer updatedCustomer = customerService.updateCustomer(id, customerDetails);
-            return new ResponseEntity<>(updatedCustomer, HttpStatus.OK);
+            Customer updatedCustomer = customerService.updateCustomer(id, customerDetails, ETags.ifMatchVersion(ifMatch));
+            return new ResponseEntity<>(CustomerView.of(updatedCustomer), HttpStatus.OK);
+        } catch (StaleVersionException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>("Concurrent update conflict, please retry: " + e.getMessage(), HttpStatus.CONFLICT);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (Exception e) {
@@ -104,61 +168,123 @@ public class CustomerController {
     }
     
     // Search customers by name
+    @CollectionETag({ CollectionVersions.CUSTOMERS, CollectionVersions.ORDERS })
     @GetMapping("/search")
-    public ResponseEntity<List<Customer>> searchCustomers(@RequestParam String name) {
+    public ResponseEntity<?> searchCustomers(@RequestParam String name,
+                                             @RequestParam(required = false) String after,
+                                             @RequestParam(required = false) Integer limit,
+                                             @RequestParam(required = false) String include) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                CursorPage<Customer> page = customerService.searchCustomersByNamePage(name, after, limit);
+                return new ResponseEntity<>(customerService.toViews(page, includesOrders(include)), HttpStatus.OK);
+            }
             List<Customer> customers = customerService.searchCustomersByName(name);
-            return new ResponseEntity<>(customers, HttpStatus.OK);
+            return new ResponseEntity<>(customerService.toViews(customers, includesOrders(include)), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Search customers by first name
+    @CollectionETag({ CollectionVersions.CUSTOMERS, CollectionVersions.ORDERS })
     @GetMapping("/search/firstname")
-    public ResponseEntity<List<Customer>> searchCustomersByFirstName(@RequestParam String firstName) {
+    public ResponseEntity<?> searchCustomersByFirstName(@RequestParam String firstName,
+                                                        @RequestParam(required = false) String after,
+                                                        @RequestParam(required = false) Integer limit,
+                                                        @RequestParam(required = false) String include) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                CursorPage<Customer> page = customerService.searchCustomersByFirstNamePage(firstName, after, limit);
+                return new ResponseEntity<>(customerService.toViews(page, includesOrders(include)), HttpStatus.OK);
+            }
             List<Customer> customers = customerService.searchCustomersByFirstName(firstName);
-            return new ResponseEntity<>(customers, HttpStatus.OK);
+            return new ResponseEntity<>(customerService.toViews(customers, includesOrders(include)), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Search customers by last name
+    @CollectionETag({ CollectionVersions.CUSTOMERS, CollectionVersions.ORDERS })
     @GetMapping("/search/lastname")
-    public ResponseEntity<List<Customer>> searchCustomersByLastName(@RequestParam String lastName) {
+    public ResponseEntity<?> searchCustomersByLastName(@RequestParam String lastName,
+                                                       @RequestParam(required = false) String after,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       @RequestParam(required = false) String include) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                CursorPage<Customer> page = customerService.searchCustomersByLastNamePage(lastName, after, limit);
+                return new ResponseEntity<>(customerService.toViews(page, includesOrders(include)), HttpStatus.OK);
+            }
             List<Customer> customers = customerService.searchCustomersByLastName(lastName);
-            return new ResponseEntity<>(customers, HttpStatus.OK);
+            return new ResponseEntity<>(customerService.toViews(customers, includesOrders(include)), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Search customers by address
+    @CollectionETag({ CollectionVersions.CUSTOMERS, CollectionVersions.ORDERS })
+    @GetMapping("/search/address")
+    public ResponseEntity<List<CustomerView>> searchCustomersByAddress(@RequestParam String address,
+                                                                       @RequestParam(required = false) String include) {
+        try {
+            List<Customer> customers = customerService.searchCustomersByAddress(address);
+            return new ResponseEntity<>(customerService.toViews(customers, includesOrders(include)), HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get customers with orders
+    @CollectionETag({ CollectionVersions.CUSTOMERS, CollectionVersions.ORDERS })
     @GetMapping("/with-orders")
-    public ResponseEntity<List<Customer>> getCustomersWithOrders() {
+    public ResponseEntity<?> getCustomersWithOrders(@RequestParam(required = false) String after,
+                                                    @RequestParam(required = false) Integer limit,
+                                                    @RequestParam(required = false) String include) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                CursorPage<Customer> page = customerService.getCustomersWithOrdersPage(after, limit);
+                return new ResponseEntity<>(customerService.toViews(page, includesOrders(include)), HttpStatus.OK);
+            }
             List<Customer> customers = customerService.getCustomersWithOrders();
-            return new ResponseEntity<>(customers, HttpStatus.OK);
+            return new ResponseEntity<>(customerService.toViews(customers, includesOrders(include)), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get customers without orders
+    @CollectionETag({ CollectionVersions.CUSTOMERS, CollectionVersions.ORDERS })
     @GetMapping("/without-orders")
-    public ResponseEntity<List<Customer>> getCustomersWithoutOrders() {
+    public ResponseEntity<?> getCustomersWithoutOrders(@RequestParam(required = false) String after,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       @RequestParam(required = false) String include) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                CursorPage<Customer> page = customerService.getCustomersWithoutOrdersPage(after, limit);
+                return new ResponseEntity<>(customerService.toViews(page, includesOrders(include)), HttpStatus.OK);
+            }
             List<Customer> customers = customerService.getCustomersWithoutOrders();
-            return new ResponseEntity<>(customers, HttpStatus.OK);
+            return new ResponseEntity<>(customerService.toViews(customers, includesOrders(include)), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Check if email exists
+    @CollectionETag(CollectionVersions.CUSTOMERS)
     @GetMapping("/exists/email/{email}")
     public ResponseEntity<Boolean> checkEmailExists(@PathVariable String email) {
         try {
@@ -168,4 +294,13 @@ public class CustomerController {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
+    
+    private static String customerETag(long version, String ordersTag) {
+        return ordersTag != null ? ETags.entity(version, ordersTag) : ETags.entity(version);
+    }
+    
+    // "include=orders" adds each customer's orders, fetched for the whole response at once
+    private static boolean includesOrders(String include) {
+        return include != null && include.equalsIgnoreCase("orders");
+    }
 }
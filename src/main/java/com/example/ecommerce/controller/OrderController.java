@@ -1,18 +1,39 @@
 package com.example.ecommerce.controller;
 
+import com.example.ecommerce.dto.BulkImportResult;
+import com.example.ecommerce.dto.CursorPage;
+import com.example.ecommerce.dto.EntityVersion;
+import com.example.ecommerce.dto.OrderImportRequest;
 import com.example.ecommerce.entity.Order;
 import com.example.ecommerce.entity.OrderStatus;
+import com.example.ecommerce.push.OrderEventHub;
+import com.example.ecommerce.service.BulkImportService;
+import com.example.ecommerce.service.OrderExportService;
+import com.example.ecommerce.service.OrderIntakeFullException;
+import com.example.ecommerce.service.OrderIntakeQueue;
 import com.example.ecommerce.service.OrderService;
+import com.example.ecommerce.web.CollectionETag;
+import com.example.ecommerce.web.CollectionVersions;
+import com.example.ecommerce.web.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -20,33 +41,74 @@ import java.util.Optional;
 public class OrderController {
     
     private final OrderService orderService;
+    private final OrderExportService orderExportService;
+    private final BulkImportService bulkImportService;
+    private final OrderIntakeQueue orderIntakeQueue;
+    private final OrderEventHub orderEventHub;
     
     @Autowired
-    public OrderController(OrderService orderService) {
+    public OrderController(OrderService orderService, OrderExportService orderExportService,
+                           BulkImportService bulkImportService, OrderIntakeQueue orderIntakeQueue,
+                           OrderEventHub orderEventHub) {
         this.orderService = orderService;
+        this.orderExportService = orderExportService;
+        this.bulkImportService = bulkImportService;
+        this.orderIntakeQueue = orderIntakeQueue;
+        this.orderEventHub = orderEventHub;
     }
     
-    // Create a new order
+    // Create a new order. The order is group-committed with others arriving at the same time;
+    // the request thread is released while it waits and a full intake queue answers 503.
     @PostMapping
-    public ResponseEntity<?> createOrder(@RequestParam Long customerId,
-                                        @RequestParam(required = false) String shippingAddress,
-                                        @RequestParam(required = false) BigDecimal totalAmount) {
+    public CompletableFuture<ResponseEntity<?>> createOrder(@RequestParam Long customerId,
+                                                           @RequestParam(required = false) String shippingAddress,
+                                                           @RequestParam(required = false) BigDecimal totalAmount) {
+        CompletableFuture<Order> pending;
         try {
-            Order createdOrder = orderService.createOrder(customerId, shippingAddress, totalAmount);
-            return new ResponseEntity<>(createdOrder, HttpStatus.CREATED);
-        } catch (RuntimeException e) {
-            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+            pending = orderIntakeQueue.submit(customerId, shippingAddress, totalAmount);
+        } catch (OrderIntakeFullException e) {
+            return CompletableFuture.completedFuture(new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE));
+        }
+        return pending.<ResponseEntity<?>>handle((createdOrder, error) -> {
+            if (error == null) {
+                return new ResponseEntity<>(createdOrder, HttpStatus.CREATED);
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof OrderIntakeFullException) {
+                return new ResponseEntity<>(cause.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+            } else if (cause instanceof RuntimeException) {
+                return new ResponseEntity<>(cause.getMessage(), HttpStatus.NOT_FOUND);
+            }
+            return new ResponseEntity<>("Error creating order: " + cause.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        });
+    }
+    
+    // Bulk import orders: validated in bulk, written in batched chunks, one result per row
+    @PostMapping("/bulk")
+    public ResponseEntity<?> bulkImportOrders(@RequestBody List<OrderImportRequest> orders) {
+        try {
+            BulkImportResult result = bulkImportService.importOrders(orders);
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
-            return new ResponseEntity<>("Error creating order: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            return new ResponseEntity<>("Error importing orders: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get all orders
+    @CollectionETag(CollectionVersions.ORDERS)
     @GetMapping
-    public ResponseEntity<List<Order>> getAllOrders() {
+    public ResponseEntity<?> getAllOrders(@RequestParam(required = false) String after,
+                                          @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(orderService.getOrdersPage(after, limit), HttpStatus.OK);
+            }
             List<Order> orders = orderService.getAllOrders();
             return new ResponseEntity<>(orders, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -54,11 +116,20 @@ public class OrderController {
     
     // Get order by ID
     @GetMapping("/{id}")
-    public ResponseEntity<?> getOrderById(@PathVariable Long id) {
+    public ResponseEntity<?> getOrderById(@PathVariable Long id, WebRequest webRequest) {
         try {
+            // Revalidate against version and updated_at alone before loading the order
+            Optional<EntityVersion> version = orderService.getOrderVersion(id);
+            if (version.isPresent() && webRequest.checkNotModified(
+                    ETags.entity(version.get()), ETags.lastModified(version.get().getUpdatedAt()))) {
+                return null;
+            }
             Optional<Order> order = orderService.getOrderById(id);
             if (order.isPresent()) {
-                return new ResponseEntity<>(order.get(), HttpStatus.OK);
+                return ResponseEntity.ok()
+                        .eTag(ETags.entity(order.get().getVersion()))
+                        .lastModified(ETags.lastModified(order.get().getUpdatedAt()))
+                        .body(order.get());
             } else {
                 return new ResponseEntity<>("Order not found with id: " + id, HttpStatus.NOT_FOUND);
             }
@@ -67,23 +138,62 @@ public class OrderController {
         }
     }
     
+    // Server-sent status updates for one order; reconnects resume from Last-Event-ID
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToOrder(@PathVariable Long id,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (orderEventHub.isFull()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        if (orderService.getOrderVersion(id).isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+        return ResponseEntity.ok(orderEventHub.subscribeToOrder(id, lastEventId));
+    }
+    
+    // Server-sent updates for every new order and status change of one customer
+    @GetMapping(value = "/customer/{customerId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToCustomerOrders(@PathVariable Long customerId,
+                                                                @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        if (orderEventHub.isFull()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(orderEventHub.subscribeToCustomer(customerId, lastEventId));
+    }
+    
     // Get orders by customer ID
+    @CollectionETag(CollectionVersions.ORDERS)
     @GetMapping("/customer/{customerId}")
-    public ResponseEntity<List<Order>> getOrdersByCustomerId(@PathVariable Long customerId) {
+    public ResponseEntity<?> getOrdersByCustomerId(@PathVariable Long customerId,
+                                                   @RequestParam(required = false) String after,
+                                                   @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(orderService.getOrdersByCustomerIdPage(customerId, after, limit), HttpStatus.OK);
+            }
             List<Order> orders = orderService.getOrdersByCustomerId(customerId);
             return new ResponseEntity<>(orders, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get orders by status
+    @CollectionETag(CollectionVersions.ORDERS)
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<Order>> getOrdersByStatus(@PathVariable OrderStatus status) {
+    public ResponseEntity<?> getOrdersByStatus(@PathVariable OrderStatus status,
+                                               @RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(orderService.getOrdersByStatusPage(status, after, limit), HttpStatus.OK);
+            }
             List<Order> orders = orderService.getOrdersByStatus(status);
             return new ResponseEntity<>(orders, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -95,6 +205,8 @@ public class OrderController {
         try {
             Order updatedOrder = orderService.updateOrderStatus(id, status);
             return new ResponseEntity<>(updatedOrder, HttpStatus.OK);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>("Concurrent update conflict, please retry: " + e.getMessage(), HttpStatus.CONFLICT);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (Exception e) {
@@ -109,6 +221,8 @@ public class OrderController {
         try {
             Order updatedOrder = orderService.updateOrderTotal(orderId, totalAmount);
             return new ResponseEntity<>(updatedOrder, HttpStatus.OK);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>("Concurrent update conflict, please retry: " + e.getMessage(), HttpStatus.CONFLICT);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (Exception e) {
@@ -122,6 +236,8 @@ public class OrderController {
         try {
             Order cancelledOrder = orderService.cancelOrder(id);
             return new ResponseEntity<>(cancelledOrder, HttpStatus.OK);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>("Concurrent update conflict, please retry: " + e.getMessage(), HttpStatus.CONFLICT);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (Exception e) {
@@ -143,30 +259,70 @@ public class OrderController {
     }
     
     // Get orders by date range
+    @CollectionETag(CollectionVersions.ORDERS)
     @GetMapping("/date-range")
-    public ResponseEntity<List<Order>> getOrdersByDateRange(
+    public ResponseEntity<?> getOrdersByDateRange(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(orderService.getOrdersByDateRangePage(startDate, endDate, after, limit), HttpStatus.OK);
+            }
             List<Order> orders = orderService.getOrdersByDateRange(startDate, endDate);
             return new ResponseEntity<>(orders, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
+    // Export orders as NDJSON or CSV, streamed from the database cursor as rows arrive. Written on
+    // the request thread rather than as an async StreamingResponseBody, so a long export is not cut
+    // off by the async request timeout; returning null tells Spring the response is already written.
+    @GetMapping("/export")
+    public ResponseEntity<?> exportOrders(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            HttpServletResponse response) throws IOException {
+        OrderExportService.Format exportFormat;
+        try {
+            exportFormat = OrderExportService.Format.fromName(format);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+        if ((startDate == null) != (endDate == null)) {
+            return new ResponseEntity<>("Both startDate and endDate are required for a date range export", HttpStatus.BAD_REQUEST);
+        }
+        
+        response.setContentType(exportFormat.getMediaType().toString());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"orders." + exportFormat.getExtension() + "\"");
+        orderExportService.exportOrders(startDate, endDate, exportFormat, response.getOutputStream());
+        return null;
+    }
+    
     // Get recent orders (last 30 days)
     @GetMapping("/recent")
-    public ResponseEntity<List<Order>> getRecentOrders() {
+    public ResponseEntity<?> getRecentOrders(@RequestParam(required = false) String after,
+                                             @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(orderService.getRecentOrdersPage(after, limit), HttpStatus.OK);
+            }
             List<Order> orders = orderService.getRecentOrders();
             return new ResponseEntity<>(orders, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get total sales amount
+    @CollectionETag(CollectionVersions.ORDERS)
     @GetMapping("/total-sales")
     public ResponseEntity<BigDecimal> getTotalSalesAmount() {
         try {
@@ -178,6 +334,7 @@ public class OrderController {
     }
     
     // Get order count by status
+    @CollectionETag(CollectionVersions.ORDERS)
     @GetMapping("/count/status/{status}")
     public ResponseEntity<Long> getOrderCountByStatus(@PathVariable OrderStatus status) {
         try {
@@ -1,12 +1,23 @@
 package com.example.ecommerce.controller;
 
+import com.example.ecommerce.dto.BulkImportResult;
+import com.example.ecommerce.dto.CursorPage;
+import com.example.ecommerce.dto.SearchPage;
 import com.example.ecommerce.entity.Product;
+import com.example.ecommerce.service.BulkImportService;
 import com.example.ecommerce.service.ProductService;
+import com.example.ecommerce.service.StaleVersionException;
 import javax.validation.Valid;
+import com.example.ecommerce.web.CollectionETag;
+import com.example.ecommerce.web.CollectionVersions;
+import com.example.ecommerce.web.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.math.BigDecimal;
 import java.util.List;
@@ -18,10 +29,12 @@ import java.util.Optional;
 public class ProductController {
     
     private final ProductService productService;
+    private final BulkImportService bulkImportService;
     
     @Autowired
-    public ProductController(ProductService productService) {
+    public ProductController(ProductService productService, BulkImportService bulkImportService) {
         this.productService = productService;
+        this.bulkImportService = bulkImportService;
     }
     
     // Create a new product
@@ -35,12 +48,32 @@ public class ProductController {
         }
     }
     
+    // Bulk create (no id) or update (with id) products: validated in bulk, written in batched chunks, one result per row
+    @PostMapping("/bulk")
+    public ResponseEntity<?> bulkImportProducts(@RequestBody List<Product> products) {
+        try {
+            BulkImportResult result = bulkImportService.importProducts(products);
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error importing products: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     // Get all products
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping
-    public ResponseEntity<List<Product>> getAllProducts() {
+    public ResponseEntity<?> getAllProducts(@RequestParam(required = false) String after,
+                                            @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(productService.getProductsPage(after, limit), HttpStatus.OK);
+            }
             List<Product> products = productService.getAllProducts();
             return new ResponseEntity<>(products, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -48,11 +81,17 @@ public class ProductController {
     
     // Get product by ID
     @GetMapping("/{id}")
-    public ResponseEntity<?> getProductById(@PathVariable Long id) {
+    public ResponseEntity<?> getProductById(@PathVariable Long id, WebRequest webRequest) {
         try {
             Optional<Product> product = productService.getProductById(id);
             if (product.isPresent()) {
-                return new ResponseEntity<>(product.get(), HttpStatus.OK);
+                // The product usually comes from the cache, so the version check is free
+                String etag = ETags.entity(product.get().getVersion());
+                long lastModified = ETags.lastModified(product.get().getUpdatedAt());
+                if (webRequest.checkNotModified(etag, lastModified)) {
+                    return null;
+                }
+                return ResponseEntity.ok().eTag(etag).lastModified(lastModified).body(product.get());
             } else {
                 return new ResponseEntity<>("Product not found with id: " + id, HttpStatus.NOT_FOUND);
             }
@@ -63,10 +102,17 @@ public class ProductController {
     
     // Update product
     @PutMapping("/{id}")
-    public ResponseEntity<?> updateProduct(@PathVariable Long id, @Valid @RequestBody Product productDetails) {
+    public ResponseEntity<?> updateProduct(@PathVariable Long id, @Valid @RequestBody Product productDetails,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
         try {
-            Product updatedProduct = productService.updateProduct(id, productDetails);
+            Product updatedProduct = productService.updateProduct(id, productDetails, ETags.ifMatchVersion(ifMatch));
             return new ResponseEntity<>(updatedProduct, HttpStatus.OK);
+        } catch (StaleVersionException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>("Concurrent update conflict, please retry: " + e.getMessage(), HttpStatus.CONFLICT);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (Exception e) {
@@ -88,90 +134,171 @@ public class ProductController {
     }
     
     // Search products by name
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping("/search")
-    public ResponseEntity<List<Product>> searchProducts(@RequestParam String keyword) {
+    public ResponseEntity<?> searchProducts(@RequestParam String keyword,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(productService.searchProductsPage(keyword, after, limit), HttpStatus.OK);
+            }
             List<Product> products = productService.searchProducts(keyword);
             return new ResponseEntity<>(products, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
+    // Ranked, paged product search backed by the in-memory index
+    @CollectionETag(CollectionVersions.PRODUCTS)
+    @GetMapping("/search/ranked")
+    public ResponseEntity<?> searchProductsRanked(@RequestParam String q,
+                                                  @RequestParam(defaultValue = "0") int page,
+                                                  @RequestParam(defaultValue = "20") int size) {
+        try {
+            SearchPage<Product> results = productService.searchProductsRanked(q, page, size);
+            return new ResponseEntity<>(results, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error searching products: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
     // Search products by name
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping("/search/name")
-    public ResponseEntity<List<Product>> searchProductsByName(@RequestParam String name) {
+    public ResponseEntity<?> searchProductsByName(@RequestParam String name,
+                                                  @RequestParam(required = false) String after,
+                                                  @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(productService.searchProductsByNamePage(name, after, limit), HttpStatus.OK);
+            }
             List<Product> products = productService.searchProductsByName(name);
             return new ResponseEntity<>(products, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get products by category
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping("/category/{category}")
-    public ResponseEntity<List<Product>> getProductsByCategory(@PathVariable String category) {
+    public ResponseEntity<?> getProductsByCategory(@PathVariable String category,
+                                                   @RequestParam(required = false) String after,
+                                                   @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(productService.getProductsByCategoryPage(category, after, limit), HttpStatus.OK);
+            }
             List<Product> products = productService.getProductsByCategory(category);
             return new ResponseEntity<>(products, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get products by brand
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping("/brand/{brand}")
-    public ResponseEntity<List<Product>> getProductsByBrand(@PathVariable String brand) {
+    public ResponseEntity<?> getProductsByBrand(@PathVariable String brand,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(productService.getProductsByBrandPage(brand, after, limit), HttpStatus.OK);
+            }
             List<Product> products = productService.getProductsByBrand(brand);
             return new ResponseEntity<>(products, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get active products
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping("/active")
-    public ResponseEntity<List<Product>> getActiveProducts() {
+    public ResponseEntity<?> getActiveProducts(@RequestParam(required = false) String after,
+                                               @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(productService.getActiveProductsPage(after, limit), HttpStatus.OK);
+            }
             List<Product> products = productService.getActiveProducts();
             return new ResponseEntity<>(products, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get products in stock
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping("/in-stock")
-    public ResponseEntity<List<Product>> getProductsInStock() {
+    public ResponseEntity<?> getProductsInStock(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(productService.getProductsInStockPage(after, limit), HttpStatus.OK);
+            }
             List<Product> products = productService.getProductsInStock();
             return new ResponseEntity<>(products, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get products out of stock
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping("/out-of-stock")
-    public ResponseEntity<List<Product>> getProductsOutOfStock() {
+    public ResponseEntity<?> getProductsOutOfStock(@RequestParam(required = false) String after,
+                                                   @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(productService.getProductsOutOfStockPage(after, limit), HttpStatus.OK);
+            }
             List<Product> products = productService.getProductsOutOfStock();
             return new ResponseEntity<>(products, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
     
     // Get products by price range
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping("/price-range")
-    public ResponseEntity<List<Product>> getProductsByPriceRange(
+    public ResponseEntity<?> getProductsByPriceRange(
             @RequestParam BigDecimal minPrice, 
-            @RequestParam BigDecimal maxPrice) {
+            @RequestParam BigDecimal maxPrice,
+            @RequestParam(required = false) String after,
+            @RequestParam(required = false) Integer limit) {
         try {
+            if (CursorPage.isRequested(after, limit)) {
+                return new ResponseEntity<>(productService.getProductsByPriceRangePage(minPrice, maxPrice, after, limit), HttpStatus.OK);
+            }
             List<Product> products = productService.getProductsByPriceRange(minPrice, maxPrice);
             return new ResponseEntity<>(products, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
@@ -180,6 +307,7 @@ public class ProductController {
     // Note: Top selling products endpoint removed due to simplified order structure
     
     // Get distinct categories
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping("/categories")
     public ResponseEntity<List<String>> getDistinctCategories() {
         try {
@@ -191,6 +319,7 @@ public class ProductController {
     }
     
     // Get distinct brands
+    @CollectionETag(CollectionVersions.PRODUCTS)
     @GetMapping("/brands")
     public ResponseEntity<List<String>> getDistinctBrands() {
         try {
@@ -207,6 +336,8 @@ public class ProductController {
         try {
             Product updatedProduct = productService.updateStock(id, stockQuantity);
             return new ResponseEntity<>(updatedProduct, HttpStatus.OK);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>("Concurrent update conflict, please retry: " + e.getMessage(), HttpStatus.CONFLICT);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (Exception e) {
@@ -220,6 +351,8 @@ public class ProductController {
         try {
             Product product = productService.activateProduct(id);
             return new ResponseEntity<>(product, HttpStatus.OK);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>("Concurrent update conflict, please retry: " + e.getMessage(), HttpStatus.CONFLICT);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (Exception e) {
@@ -233,6 +366,8 @@ public class ProductController {
         try {
             Product product = productService.deactivateProduct(id);
             return new ResponseEntity<>(product, HttpStatus.OK);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>("Concurrent update conflict, please retry: " + e.getMessage(), HttpStatus.CONFLICT);
         } catch (RuntimeException e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         } catch (Exception e) {
@@ -0,0 +1,122 @@
+package com.example.ecommerce.controller;
+
+import com.example.ecommerce.dto.CustomerSpend;
+import com.example.ecommerce.dto.SalesBucket;
+import com.example.ecommerce.entity.OrderStatus;
+import com.example.ecommerce.rollup.SalesRollups;
+import com.example.ecommerce.web.CollectionETag;
+import com.example.ecommerce.web.CollectionVersions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+// Dashboard figures served from the sales rollup tables
+@RestController
+@RequestMapping("/api/reports")
+@CrossOrigin(origins = "*")
+public class ReportController {
+
+    private static final int MAX_TOP_CUSTOMERS = 100;
+
+    private final SalesRollups salesRollups;
+
+    @Autowired
+    public ReportController(SalesRollups salesRollups) {
+        this.salesRollups = salesRollups;
+    }
+
+    // Sales per day in a date range
+    @CollectionETag(CollectionVersions.ORDERS)
+    @GetMapping("/sales/daily")
+    public ResponseEntity<?> getDailySales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            List<SalesBucket> sales = salesRollups.getDailySales(startDate, endDate);
+            return new ResponseEntity<>(sales, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error retrieving daily sales: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Total sales in a date range
+    @CollectionETag(CollectionVersions.ORDERS)
+    @GetMapping("/sales/total")
+    public ResponseEntity<?> getSalesTotal(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        try {
+            BigDecimal total = salesRollups.getSalesBetween(startDate, endDate);
+            return new ResponseEntity<>(total, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error retrieving sales total: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Sales per month, newest first
+    @CollectionETag(CollectionVersions.ORDERS)
+    @GetMapping("/sales/monthly")
+    public ResponseEntity<?> getMonthlySales() {
+        try {
+            List<SalesBucket> sales = salesRollups.getMonthlySales();
+            return new ResponseEntity<>(sales, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error retrieving monthly sales: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Order count for every status
+    @CollectionETag(CollectionVersions.ORDERS)
+    @GetMapping("/orders/status-counts")
+    public ResponseEntity<?> getOrderStatusCounts() {
+        try {
+            Map<OrderStatus, Long> counts = salesRollups.getOrderCounts();
+            return new ResponseEntity<>(counts, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error retrieving status counts: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Top customers by lifetime spend (sortBy=spend) or by number of orders (sortBy=orders)
+    @CollectionETag(CollectionVersions.ORDERS)
+    @GetMapping("/customers/top")
+    public ResponseEntity<?> getTopCustomers(@RequestParam(defaultValue = "spend") String sortBy,
+                                             @RequestParam(defaultValue = "10") int limit) {
+        try {
+            if (limit < 1 || limit > MAX_TOP_CUSTOMERS) {
+                throw new IllegalArgumentException("limit must be between 1 and " + MAX_TOP_CUSTOMERS);
+            }
+            List<CustomerSpend> customers;
+            if ("spend".equalsIgnoreCase(sortBy)) {
+                customers = salesRollups.getTopCustomersBySpend(limit);
+            } else if ("orders".equalsIgnoreCase(sortBy)) {
+                customers = salesRollups.getTopCustomersByOrderCount(limit);
+            } else {
+                throw new IllegalArgumentException("sortBy must be 'spend' or 'orders'");
+            }
+            return new ResponseEntity<>(customers, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error retrieving top customers: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Recompute every rollup from the orders table
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<?> rebuildRollups() {
+        try {
+            salesRollups.rebuild();
+            return new ResponseEntity<>("Sales rollups rebuilt", HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error rebuilding rollups: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
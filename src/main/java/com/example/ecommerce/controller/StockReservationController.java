@@ -0,0 +1,106 @@
+package com.example.ecommerce.controller;
+
+import com.example.ecommerce.dto.ReservationLine;
+import com.example.ecommerce.entity.StockReservation;
+import com.example.ecommerce.service.InsufficientStockException;
+import com.example.ecommerce.service.StockReservationService;
+import javax.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/stock/reservations")
+@CrossOrigin(origins = "*")
+public class StockReservationController {
+    
+    private final StockReservationService reservationService;
+    
+    @Autowired
+    public StockReservationController(StockReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+    
+    // Reserve stock of a single product
+    @PostMapping
+    public ResponseEntity<?> reserve(@RequestParam Long productId, @RequestParam Integer quantity) {
+        try {
+            StockReservation reservation = reservationService.reserve(productId, quantity);
+            return new ResponseEntity<>(reservation, HttpStatus.CREATED);
+        } catch (InsufficientStockException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error reserving stock: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Reserve several products at once, all or nothing
+    @PostMapping("/batch")
+    public ResponseEntity<?> reserveAll(@Valid @RequestBody List<ReservationLine> lines) {
+        try {
+            List<StockReservation> reservations = reservationService.reserveAll(lines);
+            return new ResponseEntity<>(reservations, HttpStatus.CREATED);
+        } catch (InsufficientStockException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error reserving stock: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Get reservation by ID
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getReservationById(@PathVariable Long id) {
+        try {
+            Optional<StockReservation> reservation = reservationService.getReservationById(id);
+            if (reservation.isPresent()) {
+                return new ResponseEntity<>(reservation.get(), HttpStatus.OK);
+            } else {
+                return new ResponseEntity<>("Reservation not found with id: " + id, HttpStatus.NOT_FOUND);
+            }
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error retrieving reservation: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Confirm a reservation
+    @PutMapping("/{id}/confirm")
+    public ResponseEntity<?> confirm(@PathVariable Long id) {
+        try {
+            StockReservation reservation = reservationService.confirm(id);
+            return new ResponseEntity<>(reservation, HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error confirming reservation: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+    
+    // Release a reservation
+    @PutMapping("/{id}/release")
+    public ResponseEntity<?> release(@PathVariable Long id) {
+        try {
+            StockReservation reservation = reservationService.release(id);
+            return new ResponseEntity<>(reservation, HttpStatus.OK);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (RuntimeException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        } catch (Exception e) {
+            return new ResponseEntity<>("Error releasing reservation: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
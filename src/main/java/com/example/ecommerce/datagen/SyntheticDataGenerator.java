@@ -0,0 +1,342 @@
+package com.example.ecommerce.datagen;
+
+import com.example.ecommerce.rollup.SalesRollups;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Seeded bulk data for benchmarks and load tests: customers, products and orders with a realistic
+// shape. A few customers place most of the orders, order volume grows towards the end date, older
+// orders have reached DELIVERED or CANCELLED while recent ones are still in progress, and amounts
+// and prices are log-normal.
+//
+// Rows are generated in fixed-size chunks on a thread pool and written in order through multi-row
+// INSERTs, one transaction per chunk. SQLite has a single writer, so the parallelism is in building
+// the rows; the writer never waits for data. Each chunk draws from its own random stream derived
+// from the seed and the chunk number, so the output does not depend on the thread count: the same
+// seed, sizes and end date always produce the same database.
+@Component
+public class SyntheticDataGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+    private static final int CHUNK_ROWS = 10000;
+    // 11 columns * 500 rows stays far below SQLite's 32766 bound parameter limit
+    private static final int ROWS_PER_STATEMENT = 500;
+
+    private static final String[] FIRST_NAMES = { "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael",
+            "Linda", "David", "Elizabeth", "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas",
+            "Sarah", "Charles", "Karen", "Arun", "Priya", "Wei", "Mei", "Carlos", "Sofia", "Ahmed", "Fatima" };
+    private static final String[] LAST_NAMES = { "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+            "Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore",
+            "Jackson", "Martin", "Lee", "Kumar", "Sharma", "Chen", "Wang", "Nguyen", "Kim", "Mueller", "Rossi" };
+    private static final String[] CITIES = { "New York, NY 10001", "Los Angeles, CA 90001", "Chicago, IL 60601",
+            "Houston, TX 77001", "Phoenix, AZ 85001", "Seattle, WA 98101", "Boston, MA 02101", "Denver, CO 80201" };
+    private static final String[] STREETS = { "Main St", "Oak Ave", "Pine St", "Maple Dr", "Cedar Ln", "Elm St", "Park Rd" };
+
+    // Category, its share of the catalogue (percent), median price
+    private static final String[] CATEGORIES = { "Electronics", "Computers", "Audio", "Books", "Home", "Garden", "Toys", "Sports" };
+    private static final int[] CATEGORY_WEIGHTS = { 20, 10, 10, 20, 15, 8, 9, 8 };
+    private static final double[] CATEGORY_MEDIAN_PRICE = { 400, 1100, 150, 20, 60, 45, 30, 80 };
+    private static final String[] BRANDS = { "Apple", "Samsung", "Sony", "Lenovo", "Bosch", "Lego", "Nike", "Philips",
+            "Dell", "Penguin", "Ikea", "Adidas" };
+    private static final String[] PRODUCT_WORDS = { "Phone", "Laptop", "Speaker", "Lamp", "Chair", "Kettle", "Camera",
+            "Watch", "Drill", "Jacket", "Monitor", "Router", "Blender", "Headphones", "Tablet", "Keyboard", "Novel",
+            "Puzzle", "Tent", "Ball" };
+    private static final String[] ADJECTIVES = { "Pro", "Max", "Mini", "Ultra", "Classic", "Smart", "Wireless", "Compact" };
+
+    // A large prime: multiplying by it modulo the customer count shuffles which customers are heavy buyers
+    private static final long CUSTOMER_SHUFFLE = 2147483647L;
+    private static final int IN_PROGRESS_DAYS = 30;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final SalesRollups salesRollups;
+
+    private final long seed;
+    private final long customers;
+    private final long products;
+    private final long orders;
+    private final int historyDays;
+    private final String endDate;
+    private final int threads;
+    private final double customerSkew;
+
+    @Autowired
+    public SyntheticDataGenerator(JdbcTemplate jdbcTemplate,
+                                  TransactionTemplate transactionTemplate,
+                                  SalesRollups salesRollups,
+                                  @Value("${app.data.generator.seed:42}") long seed,
+                                  @Value("${app.data.generator.customers:100000}") long customers,
+                                  @Value("${app.data.generator.products:10000}") long products,
+                                  @Value("${app.data.generator.orders:1000000}") long orders,
+                                  @Value("${app.data.generator.history-days:1095}") int historyDays,
+                                  @Value("${app.data.generator.end-date:}") String endDate,
+                                  @Value("${app.data.generator.threads:0}") int threads,
+                                  @Value("${app.data.generator.customer-skew:2.5}") double customerSkew) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.salesRollups = salesRollups;
+        this.seed = seed;
+        this.customers = customers;
+        this.products = products;
+        this.orders = orders;
+        this.historyDays = historyDays;
+        this.endDate = endDate;
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.customerSkew = customerSkew;
+    }
+
+    // Append the configured number of customers, products and orders, then rebuild the sales rollups
+    public void generate() {
+        if (customers < 1 && orders > 0) {
+            throw new IllegalArgumentException("app.data.generator.customers must be positive to generate orders");
+        }
+        long started = System.currentTimeMillis();
+        log.info("Generating {} customers, {} products and {} orders (seed {}, {} threads)",
+                customers, products, orders, seed, threads);
+
+        LocalDateTime end = (endDate.isEmpty() ? LocalDate.now() : LocalDate.parse(endDate)).atStartOfDay();
+        long firstCustomerId = nextId("customers");
+        long firstProductId = nextId("products");
+        long firstOrderId = nextId("orders");
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            write(workers, "customers", new String[] { "id", "first_name", "last_name", "email", "phone", "address",
+                    "version", "created_at", "updated_at" }, customers, 1,
+                    (random, index) -> customer(random, firstCustomerId + index, end));
+            write(workers, "products", new String[] { "id", "name", "description", "price", "stock_quantity",
+                    "category", "brand", "is_active", "version", "created_at", "updated_at" }, products, 2,
+                    (random, index) -> product(random, firstProductId + index, end));
+            write(workers, "orders", new String[] { "id", "customer_id", "order_date", "status", "total_amount",
+                    "shipping_address", "version", "created_at", "updated_at" }, orders, 3,
+                    (random, index) -> order(random, firstOrderId + index, firstCustomerId, end));
+        } finally {
+            workers.shutdownNow();
+        }
+
+        salesRollups.rebuild();
+        log.info("Generated synthetic data in {} ms", System.currentTimeMillis() - started);
+    }
+
+    private Object[] customer(SplittableRandom random, long id, LocalDateTime end) {
+        String first = pick(random, FIRST_NAMES);
+        String last = pick(random, LAST_NAMES);
+        Timestamp created = Timestamp.valueOf(end.minusMinutes(random.nextLong((long) historyDays * 24 * 60 + 1)));
+        return new Object[] { id, first, last,
+                (first + "." + last + "." + id + "@example.com").toLowerCase(),
+                "+1" + (2000000000L + id % 8000000000L),
+                address(random), 0, created, created };
+    }
+
+    private Object[] product(SplittableRandom random, long id, LocalDateTime end) {
+        int category = weighted(random, CATEGORY_WEIGHTS);
+        String word = pick(random, PRODUCT_WORDS);
+        String brand = pick(random, BRANDS);
+        Timestamp created = Timestamp.valueOf(end.minusMinutes(random.nextLong((long) historyDays * 24 * 60 + 1)));
+        return new Object[] { id,
+                brand + " " + word + " " + pick(random, ADJECTIVES) + " " + id,
+                "The " + brand + " " + word.toLowerCase() + " for " + CATEGORIES[category].toLowerCase() + " lovers",
+                money(logNormal(random, CATEGORY_MEDIAN_PRICE[category], 0.6, 1, 9999)),
+                random.nextInt(10) == 0 ? 0 : random.nextInt(1, 1000),
+                CATEGORIES[category], brand, random.nextInt(20) != 0, 0, created, created };
+    }
+
+    private Object[] order(SplittableRandom random, long id, long firstCustomerId, LocalDateTime end) {
+        // Heavy-tailed customer choice: u^skew piles up near zero, the shuffle spreads the heavy buyers over all ids
+        long rank = (long) (customers * Math.pow(random.nextDouble(), customerSkew));
+        long customerId = firstCustomerId + Math.floorMod(rank * CUSTOMER_SHUFFLE, customers);
+
+        // sqrt(u) makes recent days more likely: volume grows linearly over the history
+        long historyMinutes = (long) historyDays * 24 * 60;
+        long ageMinutes = (long) (historyMinutes * (1 - Math.sqrt(random.nextDouble())));
+        LocalDateTime orderDate = end.minusMinutes(ageMinutes);
+        String status = status(random, ageMinutes / (24 * 60));
+        LocalDateTime updated = "PENDING".equals(status) ? orderDate : orderDate.plusHours(random.nextInt(1, 24 * 7));
+        if (updated.isAfter(end)) {
+            updated = end;
+        }
+        return new Object[] { id, customerId, Timestamp.valueOf(orderDate), status,
+                money(logNormal(random, 60, 0.9, 5, 5000)), address(random), 0,
+                Timestamp.valueOf(orderDate), Timestamp.valueOf(updated) };
+    }
+
+    // Old orders have finished; the last month is still moving through the pipeline
+    private static String status(SplittableRandom random, long ageDays) {
+        int roll = random.nextInt(100);
+        if (ageDays > IN_PROGRESS_DAYS) {
+            return roll < 88 ? "DELIVERED" : "CANCELLED";
+        }
+        if (roll < 25) {
+            return "PENDING";
+        }
+        if (roll < 45) {
+            return "CONFIRMED";
+        }
+        if (roll < 70) {
+            return "SHIPPED";
+        }
+        return roll < 92 ? "DELIVERED" : "CANCELLED";
+    }
+
+    private void write(ExecutorService workers, String table, String[] columns, long count, int stream, RowGenerator rows) {
+        if (count <= 0) {
+            return;
+        }
+        long started = System.currentTimeMillis();
+        long chunks = (count + CHUNK_ROWS - 1) / CHUNK_ROWS;
+        Deque<Future<List<Object[]>>> pending = new ArrayDeque<>();
+        long submitted = 0;
+        for (long chunk = 0; chunk < chunks; chunk++) {
+            // Keep a couple of chunks per worker ready so the writer never starves
+            while (submitted < chunks && pending.size() < threads * 2) {
+                long number = submitted++;
+                pending.add(workers.submit(() -> chunk(rows, count, stream, number)));
+            }
+            List<Object[]> batch = await(pending.poll());
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.execute(
+                    (ConnectionCallback<Void>) connection -> insert(connection, table, columns, batch)));
+        }
+        log.info("Inserted {} {} in {} ms", count, table, System.currentTimeMillis() - started);
+    }
+
+    private List<Object[]> chunk(RowGenerator rows, long count, int stream, long number) {
+        SplittableRandom random = new SplittableRandom(mix(seed, stream, number));
+        long from = number * CHUNK_ROWS;
+        long to = Math.min(count, from + CHUNK_ROWS);
+        List<Object[]> batch = new ArrayList<>((int) (to - from));
+        for (long index = from; index < to; index++) {
+            batch.add(rows.row(random, index));
+        }
+        return batch;
+    }
+
+    private static Void insert(Connection connection, String table, String[] columns, List<Object[]> rows)
+            throws SQLException {
+        int full = rows.size() / ROWS_PER_STATEMENT;
+        if (full > 0) {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql(table, columns, ROWS_PER_STATEMENT))) {
+                for (int i = 0; i < full; i++) {
+                    bind(statement, rows, i * ROWS_PER_STATEMENT, ROWS_PER_STATEMENT);
+                    statement.executeUpdate();
+                }
+            }
+        }
+        int rest = rows.size() - full * ROWS_PER_STATEMENT;
+        if (rest > 0) {
+            try (PreparedStatement statement = connection.prepareStatement(insertSql(table, columns, rest))) {
+                bind(statement, rows, full * ROWS_PER_STATEMENT, rest);
+                statement.executeUpdate();
+            }
+        }
+        return null;
+    }
+
+    private static void bind(PreparedStatement statement, List<Object[]> rows, int from, int count) throws SQLException {
+        int parameter = 1;
+        for (int i = from; i < from + count; i++) {
+            for (Object value : rows.get(i)) {
+                statement.setObject(parameter++, value);
+            }
+        }
+    }
+
+    // INSERT INTO table (a, b) VALUES (?, ?), (?, ?), ...
+    private static String insertSql(String table, String[] columns, int rows) {
+        String tuple = "(" + "?, ".repeat(columns.length - 1) + "?)";
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+                .append(" (").append(String.join(", ", columns)).append(") VALUES ");
+        for (int i = 0; i < rows; i++) {
+            sql.append(i == 0 ? "" : ", ").append(tuple);
+        }
+        return sql.toString();
+    }
+
+    private long nextId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max != null ? max + 1 : 1;
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating data", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Generating data failed", e.getCause());
+        }
+    }
+
+    private static String address(SplittableRandom random) {
+        return random.nextInt(1, 10000) + " " + pick(random, STREETS) + ", " + pick(random, CITIES);
+    }
+
+    private static double logNormal(SplittableRandom random, double median, double sigma, double min, double max) {
+        double value = median * Math.exp(sigma * gaussian(random));
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // Box-Muller; SplittableRandom has no nextGaussian
+    private static double gaussian(SplittableRandom random) {
+        double u = 1 - random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    // Amounts are stored as REAL; round to cents before they get there
+    private static double money(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static int weighted(SplittableRandom random, int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        int roll = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            roll -= weights[i];
+            if (roll < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private static String pick(SplittableRandom random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static long mix(long seed, int stream, long chunk) {
+        long z = seed * 0x9E3779B97F4A7C15L + stream * 0xBF58476D1CE4E5B9L + chunk * 0x94D049BB133111EBL;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private interface RowGenerator {
+        Object[] row(SplittableRandom random, long index);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.ecommerce.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of a bulk import: one entry per input row, in input order
+public class BulkImportResult {
+
+    public enum RowStatus {
+        CREATED,
+        UPDATED,
+        FAILED
+    }
+
+    public static class RowResult {
+        private final int index;
+        private final RowStatus status;
+        private final Long id;
+        private final List<String> errors;
+
+        public RowResult(int index, RowStatus status, Long id, List<String> errors) {
+            this.index = index;
+            this.status = status;
+            this.id = id;
+            this.errors = errors;
+        }
+
+        public static RowResult created(int index, Long id) {
+            return new RowResult(index, RowStatus.CREATED, id, new ArrayList<>());
+        }
+
+        public static RowResult updated(int index, Long id) {
+            return new RowResult(index, RowStatus.UPDATED, id, new ArrayList<>());
+        }
+
+        public static RowResult failed(int index, List<String> errors) {
+            return new RowResult(index, RowStatus.FAILED, null, errors);
+        }
+
+        public int getIndex() { return index; }
+
+        public RowStatus getStatus() { return status; }
+
+        public Long getId() { return id; }
+
+        public List<String> getErrors() { return errors; }
+    }
+
+    private final List<RowResult> rows;
+    private final int created;
+    private final int updated;
+    private final int failed;
+
+    public BulkImportResult(List<RowResult> rows) {
+        this.rows = rows;
+        int createdRows = 0;
+        int updatedRows = 0;
+        for (RowResult row : rows) {
+            if (row.getStatus() == RowStatus.CREATED) {
+                createdRows++;
+            } else if (row.getStatus() == RowStatus.UPDATED) {
+                updatedRows++;
+            }
+        }
+        this.created = createdRows;
+        this.updated = updatedRows;
+        this.failed = rows.size() - createdRows - updatedRows;
+    }
+
+    // Getters
+    public int getTotal() { return rows.size(); }
+
+    public int getCreated() { return created; }
+
+    public int getUpdated() { return updated; }
+
+    public int getFailed() { return failed; }
+
+    public List<RowResult> getRows() { return rows; }
+}
@@ -0,0 +1,25 @@
+package com.example.ecommerce.dto;
+
+import java.util.List;
+
+// A page of the change feed; "next" is the "since" for the next request and lastSeq its seq, both
+// unchanged when the page is empty
+public class ChangeBatch {
+
+    private final List<ChangeRecord> changes;
+    private final long lastSeq;
+    private final String next;
+
+    public ChangeBatch(List<ChangeRecord> changes, long lastSeq, String next) {
+        this.changes = changes;
+        this.lastSeq = lastSeq;
+        this.next = next;
+    }
+
+    // Getters
+    public List<ChangeRecord> getChanges() { return changes; }
+
+    public long getLastSeq() { return lastSeq; }
+
+    public String getNext() { return next; }
+}
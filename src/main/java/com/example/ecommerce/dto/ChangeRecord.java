@@ -0,0 +1,35 @@
+package com.example.ecommerce.dto;
+
+import com.example.ecommerce.event.ChangeType;
+
+import java.time.LocalDateTime;
+
+// One row of the change log: which entity changed, how, and when. Consumers fetch the current
+// state themselves (cheaply, with If-None-Match), deletes need no fetch.
+public class ChangeRecord {
+
+    private final long seq;
+    private final String entity;
+    private final Long entityId;
+    private final ChangeType type;
+    private final LocalDateTime changedAt;
+
+    public ChangeRecord(long seq, String entity, Long entityId, ChangeType type, LocalDateTime changedAt) {
+        this.seq = seq;
+        this.entity = entity;
+        this.entityId = entityId;
+        this.type = type;
+        this.changedAt = changedAt;
+    }
+
+    // Getters
+    public long getSeq() { return seq; }
+
+    public String getEntity() { return entity; }
+
+    public Long getEntityId() { return entityId; }
+
+    public ChangeType getType() { return type; }
+
+    public LocalDateTime getChangedAt() { return changedAt; }
+}
@@ -0,0 +1,24 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+
+// One queued order creation; the same fields POST /api/orders accepts
+public class CreateOrderRequest {
+
+    private final Long customerId;
+    private final String shippingAddress;
+    private final BigDecimal totalAmount;
+
+    public CreateOrderRequest(Long customerId, String shippingAddress, BigDecimal totalAmount) {
+        this.customerId = customerId;
+        this.shippingAddress = shippingAddress;
+        this.totalAmount = totalAmount;
+    }
+
+    // Getters
+    public Long getCustomerId() { return customerId; }
+
+    public String getShippingAddress() { return shippingAddress; }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+}
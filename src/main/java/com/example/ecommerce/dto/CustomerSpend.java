@@ -0,0 +1,24 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+
+// Lifetime totals of one customer: every order counts, only non-cancelled orders add to the spend
+public class CustomerSpend {
+
+    private final Long customerId;
+    private final long orderCount;
+    private final BigDecimal totalSpent;
+
+    public CustomerSpend(Long customerId, long orderCount, BigDecimal totalSpent) {
+        this.customerId = customerId;
+        this.orderCount = orderCount;
+        this.totalSpent = totalSpent;
+    }
+
+    // Getters
+    public Long getCustomerId() { return customerId; }
+
+    public long getOrderCount() { return orderCount; }
+
+    public BigDecimal getTotalSpent() { return totalSpent; }
+}
@@ -0,0 +1,69 @@
+package com.example.ecommerce.dto;
+
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.entity.Order;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Read model for customer responses. Built from the entity's own columns only, so serializing it
+// can never trigger a lazy load; orders are present only when the caller asked for them.
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CustomerView {
+
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    private final String phone;
+    private final String address;
+    private final long version;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+    private final List<Order> orders;
+
+    private CustomerView(Customer customer, List<Order> orders) {
+        this.id = customer.getId();
+        this.firstName = customer.getFirstName();
+        this.lastName = customer.getLastName();
+        this.email = customer.getEmail();
+        this.phone = customer.getPhone();
+        this.address = customer.getAddress();
+        this.version = customer.getVersion();
+        this.createdAt = customer.getCreatedAt();
+        this.updatedAt = customer.getUpdatedAt();
+        this.orders = orders;
+    }
+
+    public static CustomerView of(Customer customer) {
+        return new CustomerView(customer, null);
+    }
+
+    public static CustomerView withOrders(Customer customer, List<Order> orders) {
+        return new CustomerView(customer, orders);
+    }
+
+    // Getters
+    public Long getId() { return id; }
+
+    public String getFirstName() { return firstName; }
+
+    public String getLastName() { return lastName; }
+
+    public String getFullName() { return firstName + " " + lastName; }
+
+    public String getEmail() { return email; }
+
+    public String getPhone() { return phone; }
+
+    public String getAddress() { return address; }
+
+    public long getVersion() { return version; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+
+    public List<Order> getOrders() { return orders; }
+}
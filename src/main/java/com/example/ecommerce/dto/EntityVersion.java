@@ -0,0 +1,20 @@
+package com.example.ecommerce.dto;
+
+import java.time.LocalDateTime;
+
+// Optimistic lock version and last update of one row, enough to answer a conditional GET
+public class EntityVersion {
+
+    private final long version;
+    private final LocalDateTime updatedAt;
+
+    public EntityVersion(long version, LocalDateTime updatedAt) {
+        this.version = version;
+        this.updatedAt = updatedAt;
+    }
+
+    // Getters
+    public long getVersion() { return version; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+}
@@ -0,0 +1,72 @@
+package com.example.ecommerce.dto;
+
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.entity.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Flat, customer-id-carrying view of an order written by the export endpoint
+public class OrderExportRow {
+
+    public static final String CSV_HEADER =
+            "id,customerId,orderDate,status,totalAmount,shippingAddress,createdAt,updatedAt";
+
+    private final Long id;
+    private final Long customerId;
+    private final LocalDateTime orderDate;
+    private final OrderStatus status;
+    private final BigDecimal totalAmount;
+    private final String shippingAddress;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+
+    public OrderExportRow(Order order) {
+        this.id = order.getId();
+        // Reading the id of the lazy customer proxy does not initialize it
+        this.customerId = order.getCustomer() != null ? order.getCustomer().getId() : null;
+        this.orderDate = order.getOrderDate();
+        this.status = order.getStatus();
+        this.totalAmount = order.getTotalAmount();
+        this.shippingAddress = order.getShippingAddress();
+        this.createdAt = order.getCreatedAt();
+        this.updatedAt = order.getUpdatedAt();
+    }
+
+    public String toCsvLine() {
+        return id + "," + nullSafe(customerId) + "," + nullSafe(orderDate) + "," + nullSafe(status) + ","
+                + (totalAmount != null ? totalAmount.toPlainString() : "") + "," + csvEscape(shippingAddress) + ","
+                + nullSafe(createdAt) + "," + nullSafe(updatedAt);
+    }
+
+    private static String nullSafe(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    private static String csvEscape(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    // Getters
+    public Long getId() { return id; }
+
+    public Long getCustomerId() { return customerId; }
+
+    public LocalDateTime getOrderDate() { return orderDate; }
+
+    public OrderStatus getStatus() { return status; }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+
+    public String getShippingAddress() { return shippingAddress; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+}
@@ -0,0 +1,44 @@
+package com.example.ecommerce.dto;
+
+import com.example.ecommerce.entity.OrderStatus;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// One order of a bulk import; status and orderDate default to PENDING and now
+public class OrderImportRequest {
+
+    @NotNull(message = "Customer id is required")
+    private Long customerId;
+
+    @Size(max = 255, message = "Shipping address must not exceed 255 characters")
+    private String shippingAddress;
+
+    @DecimalMin(value = "0.0", message = "Total amount cannot be negative")
+    private BigDecimal totalAmount;
+
+    private OrderStatus status;
+
+    private LocalDateTime orderDate;
+
+    public OrderImportRequest() {}
+
+    // Getters and Setters
+    public Long getCustomerId() { return customerId; }
+    public void setCustomerId(Long customerId) { this.customerId = customerId; }
+
+    public String getShippingAddress() { return shippingAddress; }
+    public void setShippingAddress(String shippingAddress) { this.shippingAddress = shippingAddress; }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(BigDecimal totalAmount) { this.totalAmount = totalAmount; }
+
+    public OrderStatus getStatus() { return status; }
+    public void setStatus(OrderStatus status) { this.status = status; }
+
+    public LocalDateTime getOrderDate() { return orderDate; }
+    public void setOrderDate(LocalDateTime orderDate) { this.orderDate = orderDate; }
+}
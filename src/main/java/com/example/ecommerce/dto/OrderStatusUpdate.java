@@ -0,0 +1,41 @@
+package com.example.ecommerce.dto;
+
+import com.example.ecommerce.entity.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Pushed to order subscribers when an order is created or changes status; previousStatus is
+// null for a new order
+public class OrderStatusUpdate {
+
+    private final Long orderId;
+    private final Long customerId;
+    private final OrderStatus previousStatus;
+    private final OrderStatus status;
+    private final BigDecimal totalAmount;
+    private final LocalDateTime changedAt;
+
+    public OrderStatusUpdate(Long orderId, Long customerId, OrderStatus previousStatus, OrderStatus status,
+                             BigDecimal totalAmount, LocalDateTime changedAt) {
+        this.orderId = orderId;
+        this.customerId = customerId;
+        this.previousStatus = previousStatus;
+        this.status = status;
+        this.totalAmount = totalAmount;
+        this.changedAt = changedAt;
+    }
+
+    // Getters
+    public Long getOrderId() { return orderId; }
+
+    public Long getCustomerId() { return customerId; }
+
+    public OrderStatus getPreviousStatus() { return previousStatus; }
+
+    public OrderStatus getStatus() { return status; }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+
+    public LocalDateTime getChangedAt() { return changedAt; }
+}
@@ -0,0 +1,79 @@
+package com.example.ecommerce.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Opaque "after" token: either a bare id or an (orderDate, id) pair
+public final class PageCursor {
+
+    // Sentinels used when no cursor is given; far enough out to bound any stored timestamp
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final LocalDateTime orderDate;
+    private final long id;
+
+    private PageCursor(LocalDateTime orderDate, long id) {
+        this.orderDate = orderDate;
+        this.id = id;
+    }
+
+    public LocalDateTime getOrderDate() { return orderDate; }
+
+    public long getId() { return id; }
+
+    // Id-ordered listings
+    public static String encodeId(Long id) {
+        return encode("i:" + id);
+    }
+
+    public static long decodeId(String token) {
+        if (token == null) {
+            return 0L;
+        }
+        String raw = decode(token);
+        if (!raw.startsWith("i:")) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+        return Long.parseLong(raw.substring(2));
+    }
+
+    // (orderDate, id) ordered listings
+    public static String encodeDated(LocalDateTime orderDate, Long id) {
+        return encode("d:" + orderDate + "|" + id);
+    }
+
+    // Start of a newest-first walk
+    public static PageCursor decodeDescending(String token) {
+        return token == null ? new PageCursor(LATEST, Long.MAX_VALUE) : decodeDated(token);
+    }
+
+    // Start of an oldest-first walk
+    public static PageCursor decodeAscending(String token) {
+        return token == null ? new PageCursor(EARLIEST, 0L) : decodeDated(token);
+    }
+
+    private static PageCursor decodeDated(String token) {
+        String raw = decode(token);
+        int separator = raw.lastIndexOf('|');
+        if (!raw.startsWith("d:") || separator < 0) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+        try {
+            return new PageCursor(LocalDateTime.parse(raw.substring(2, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+    }
+
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String token) {
+        return new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    }
+}
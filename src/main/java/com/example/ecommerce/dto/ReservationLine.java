@@ -0,0 +1,29 @@
+package com.example.ecommerce.dto;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+// One SKU of a multi-product reservation request
+public class ReservationLine {
+
+    @NotNull(message = "Product id is required")
+    private Long productId;
+
+    @NotNull(message = "Quantity is required")
+    @Min(value = 1, message = "Quantity must be at least 1")
+    private Integer quantity;
+
+    public ReservationLine() {}
+
+    public ReservationLine(Long productId, Integer quantity) {
+        this.productId = productId;
+        this.quantity = quantity;
+    }
+
+    // Getters and Setters
+    public Long getProductId() { return productId; }
+    public void setProductId(Long productId) { this.productId = productId; }
+
+    public Integer getQuantity() { return quantity; }
+    public void setQuantity(Integer quantity) { this.quantity = quantity; }
+}
@@ -0,0 +1,24 @@
+package com.example.ecommerce.dto;
+
+import java.math.BigDecimal;
+
+// Sales of one day ("2024-05-17") or month ("2024-05"), cancelled orders excluded
+public class SalesBucket {
+
+    private final String period;
+    private final long orderCount;
+    private final BigDecimal revenue;
+
+    public SalesBucket(String period, long orderCount, BigDecimal revenue) {
+        this.period = period;
+        this.orderCount = orderCount;
+        this.revenue = revenue;
+    }
+
+    // Getters
+    public String getPeriod() { return period; }
+
+    public long getOrderCount() { return orderCount; }
+
+    public BigDecimal getRevenue() { return revenue; }
+}
@@ -0,0 +1,28 @@
+package com.example.ecommerce.dto;
+
+import java.util.List;
+
+// One page of ranked search results
+public class SearchPage<T> {
+
+    private final List<T> items;
+    private final int total;
+    private final int page;
+    private final int size;
+
+    public SearchPage(List<T> items, int total, int page, int size) {
+        this.items = items;
+        this.total = total;
+        this.page = page;
+        this.size = size;
+    }
+
+    // Getters
+    public List<T> getItems() { return items; }
+
+    public int getTotal() { return total; }
+
+    public int getPage() { return page; }
+
+    public int getSize() { return size; }
+}
@@ -41,6 +41,10 @@ public class Customer {
     @Column(name = "address")
     private String address;
     
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "integer default 0")
+    private long version;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -91,6 +95,9 @@ public class Customer {
     public String getAddress() { return address; }
     public void setAddress(String address) { this.address = address; }
     
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
@@ -47,6 +47,10 @@ public class Product {
     @Column(name = "is_active")
     private Boolean isActive = true;
     
+    @Version
+    @Column(name = "version", nullable = false, columnDefinition = "integer default 0")
+    private long version;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -101,6 +105,9 @@ public class Product {
     public Boolean getIsActive() { return isActive; }
     public void setIsActive(Boolean isActive) { this.isActive = isActive; }
     
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
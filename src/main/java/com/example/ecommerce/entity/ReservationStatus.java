@@ -0,0 +1,8 @@
+package com.example.ecommerce.entity;
+
+public enum ReservationStatus {
+    ACTIVE,
+    CONFIRMED,
+    RELEASED,
+    EXPIRED
+}
@@ -0,0 +1,7 @@
+package com.example.ecommerce.event;
+
+public enum ChangeType {
+    CREATED,
+    UPDATED,
+    DELETED
+}
@@ -0,0 +1,30 @@
+package com.example.ecommerce.event;
+
+// Published for every customer mutation; deleting a customer also publishes an
+// OrderChangedEvent for each of its orders
+public class CustomerChangedEvent {
+
+    private final ChangeType type;
+    private final Long customerId;
+
+    public CustomerChangedEvent(ChangeType type, Long customerId) {
+        this.type = type;
+        this.customerId = customerId;
+    }
+
+    public static CustomerChangedEvent created(Long customerId) {
+        return new CustomerChangedEvent(ChangeType.CREATED, customerId);
+    }
+
+    public static CustomerChangedEvent updated(Long customerId) {
+        return new CustomerChangedEvent(ChangeType.UPDATED, customerId);
+    }
+
+    public static CustomerChangedEvent deleted(Long customerId) {
+        return new CustomerChangedEvent(ChangeType.DELETED, customerId);
+    }
+
+    public ChangeType getType() { return type; }
+
+    public Long getCustomerId() { return customerId; }
+}
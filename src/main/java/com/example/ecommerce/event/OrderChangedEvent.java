@@ -0,0 +1,48 @@
+package com.example.ecommerce.event;
+
+import com.example.ecommerce.entity.Order;
+
+// Published for every order mutation with the order as it was before and after.
+// "before" is null for creates and "after" is null for deletes.
+public class OrderChangedEvent {
+
+    private final ChangeType type;
+    private final Long orderId;
+    private final OrderSnapshot before;
+    private final OrderSnapshot after;
+
+    public OrderChangedEvent(ChangeType type, Long orderId, OrderSnapshot before, OrderSnapshot after) {
+        this.type = type;
+        this.orderId = orderId;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static OrderChangedEvent created(OrderSnapshot order) {
+        return new OrderChangedEvent(ChangeType.CREATED, order.getOrderId(), null, order);
+    }
+
+    public static OrderChangedEvent created(Order order) {
+        return created(OrderSnapshot.of(order));
+    }
+
+    public static OrderChangedEvent updated(OrderSnapshot before, Order order) {
+        return new OrderChangedEvent(ChangeType.UPDATED, order.getId(), before, OrderSnapshot.of(order));
+    }
+
+    public static OrderChangedEvent deleted(OrderSnapshot order) {
+        return new OrderChangedEvent(ChangeType.DELETED, order.getOrderId(), order, null);
+    }
+
+    public static OrderChangedEvent deleted(Order order) {
+        return deleted(OrderSnapshot.of(order));
+    }
+
+    public ChangeType getType() { return type; }
+
+    public Long getOrderId() { return orderId; }
+
+    public OrderSnapshot getBefore() { return before; }
+
+    public OrderSnapshot getAfter() { return after; }
+}
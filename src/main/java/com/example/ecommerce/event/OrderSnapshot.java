@@ -0,0 +1,46 @@
+package com.example.ecommerce.event;
+
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.entity.OrderStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Immutable copy of the order fields that aggregates depend on, taken before or after a mutation
+public final class OrderSnapshot {
+
+    private final Long orderId;
+    private final Long customerId;
+    private final LocalDateTime orderDate;
+    private final OrderStatus status;
+    private final BigDecimal totalAmount;
+
+    public OrderSnapshot(Long orderId, Long customerId, LocalDateTime orderDate,
+                         OrderStatus status, BigDecimal totalAmount) {
+        this.orderId = orderId;
+        this.customerId = customerId;
+        this.orderDate = orderDate;
+        this.status = status;
+        this.totalAmount = totalAmount != null ? totalAmount : BigDecimal.ZERO;
+    }
+
+    public static OrderSnapshot of(Order order) {
+        return new OrderSnapshot(order.getId(), order.getCustomer().getId(), order.getOrderDate(),
+                order.getStatus(), order.getTotalAmount());
+    }
+
+    // Cancelled orders keep their status count but drop out of every sales figure
+    public boolean countsAsSale() {
+        return status != OrderStatus.CANCELLED;
+    }
+
+    public Long getOrderId() { return orderId; }
+
+    public Long getCustomerId() { return customerId; }
+
+    public LocalDateTime getOrderDate() { return orderDate; }
+
+    public OrderStatus getStatus() { return status; }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+}
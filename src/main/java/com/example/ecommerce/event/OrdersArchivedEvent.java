@@ -0,0 +1,18 @@
+package com.example.ecommerce.event;
+
+// Published when a batch of orders has moved from the orders table into an archive partition.
+// The orders themselves are unchanged, so aggregates ignore it; only views of the hot table care.
+public class OrdersArchivedEvent {
+
+    private final String partition;
+    private final int count;
+
+    public OrdersArchivedEvent(String partition, int count) {
+        this.partition = partition;
+        this.count = count;
+    }
+
+    public String getPartition() { return partition; }
+
+    public int getCount() { return count; }
+}
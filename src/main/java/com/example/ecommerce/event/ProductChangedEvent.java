@@ -0,0 +1,59 @@
+package com.example.ecommerce.event;
+
+import com.example.ecommerce.entity.Product;
+
+// Published for every product mutation.
+// For deletes the product is the removed entity; previous category/brand are only set for updates.
+// Stock-only changes made with atomic UPDATE statements carry no entity, only the product's category.
+public class ProductChangedEvent {
+
+    private final ChangeType type;
+    private final Long productId;
+    private final Product product;
+    private final String previousCategory;
+    private final String previousBrand;
+    private final String stockCategory;
+
+    public ProductChangedEvent(ChangeType type, Long productId, Product product,
+                               String previousCategory, String previousBrand) {
+        this(type, productId, product, previousCategory, previousBrand, null);
+    }
+
+    private ProductChangedEvent(ChangeType type, Long productId, Product product,
+                                String previousCategory, String previousBrand, String stockCategory) {
+        this.type = type;
+        this.productId = productId;
+        this.product = product;
+        this.previousCategory = previousCategory;
+        this.previousBrand = previousBrand;
+        this.stockCategory = stockCategory;
+    }
+
+    public static ProductChangedEvent created(Product product) {
+        return new ProductChangedEvent(ChangeType.CREATED, product.getId(), product, null, null);
+    }
+
+    public static ProductChangedEvent updated(Product product, String previousCategory, String previousBrand) {
+        return new ProductChangedEvent(ChangeType.UPDATED, product.getId(), product, previousCategory, previousBrand);
+    }
+
+    public static ProductChangedEvent stockChanged(Long productId, String category) {
+        return new ProductChangedEvent(ChangeType.UPDATED, productId, null, null, null, category);
+    }
+
+    public static ProductChangedEvent deleted(Product product) {
+        return new ProductChangedEvent(ChangeType.DELETED, product.getId(), product, null, null);
+    }
+
+    public ChangeType getType() { return type; }
+
+    public Long getProductId() { return productId; }
+
+    public Product getProduct() { return product; }
+
+    public String getPreviousCategory() { return previousCategory; }
+
+    public String getPreviousBrand() { return previousBrand; }
+
+    public String getStockCategory() { return stockCategory; }
+}
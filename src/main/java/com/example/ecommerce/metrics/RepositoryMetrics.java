@@ -0,0 +1,238 @@
+package com.example.ecommerce.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Per repository method metrics, recorded by RepositoryMetricsInterceptor:
+//   repository.invocations         latency histogram, tags repository, method, outcome
+//   repository.rows                rows returned per call (a scalar or Optional counts as one)
+//   repository.statements          SQL statements issued per call; more than one hints at N+1 loading
+// A call slower than app.metrics.repository.slow-threshold is kept in a slow query log together with
+// the SQL it ran and its EXPLAIN QUERY PLAN, taken on a background thread over a read-only connection.
+// Everything is served under /actuator/repositories; DELETE clears the slow query log.
+@Component
+@Endpoint(id = "repositories")
+public class RepositoryMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(RepositoryMetrics.class);
+
+    // Plans are cached per SQL text; the cache is bounded and simply starts over when full
+    private static final int MAX_CACHED_PLANS = 500;
+    private static final int EXPLAIN_QUEUE_SIZE = 100;
+
+    private final MeterRegistry meterRegistry;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Duration slowThreshold;
+    private final long slowThresholdNanos;
+
+    private final Map<String, MethodMeters> methods = new ConcurrentHashMap<>();
+    private final Map<String, SlowQuery> slowQueries = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> plans = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor explainer;
+
+    @Autowired
+    public RepositoryMetrics(MeterRegistry meterRegistry,
+                             JdbcTemplate jdbcTemplate,
+                             PlatformTransactionManager transactionManager,
+                             @Value("${app.metrics.repository.slow-threshold:200ms}") Duration slowThreshold) {
+        this.meterRegistry = meterRegistry;
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.slowThreshold = slowThreshold;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        // One thread, a short queue, and excess work dropped: explaining must never slow down requests
+        this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(EXPLAIN_QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainer.shutdownNow();
+    }
+
+    MethodMeters meters(String repository, String method) {
+        return methods.computeIfAbsent(repository + "." + method, key -> new MethodMeters(repository, method));
+    }
+
+    void recordSlow(MethodMeters meters, long nanos, List<String> statements) {
+        if (nanos < slowThresholdNanos) {
+            return;
+        }
+        SlowQuery slow = slowQueries.computeIfAbsent(meters.name, key -> new SlowQuery(meters.repository, meters.method));
+        slow.record(nanos, statements);
+        for (String sql : statements) {
+            if (!plans.containsKey(sql)) {
+                explainer.execute(() -> explain(sql));
+            }
+        }
+    }
+
+    private void explain(String sql) {
+        if (plans.containsKey(sql)) {
+            return;
+        }
+        List<String> plan = new ArrayList<>();
+        try {
+            readOnlyTransaction.executeWithoutResult(status ->
+                    jdbcTemplate.query("EXPLAIN QUERY PLAN " + sql, rs -> {
+                        plan.add(rs.getString("detail"));
+                    }));
+        } catch (RuntimeException e) {
+            plan.add("EXPLAIN failed: " + e.getMessage());
+        }
+        if (plans.size() >= MAX_CACHED_PLANS) {
+            plans.clear();
+        }
+        plans.put(sql, plan);
+        log.warn("Slow query plan for {}: {}", sql, plan);
+    }
+
+    @ReadOperation
+    public Map<String, Object> report() {
+        List<Map<String, Object>> invocations = new ArrayList<>();
+        for (MethodMeters meters : new TreeMap<>(methods).values()) {
+            invocations.add(meters.summary());
+        }
+        List<Map<String, Object>> slow = new ArrayList<>();
+        for (SlowQuery query : new TreeMap<>(slowQueries).values()) {
+            slow.add(query.summary(plans));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("slowThresholdMillis", slowThreshold.toMillis());
+        report.put("methods", invocations);
+        report.put("slowQueries", slow);
+        return report;
+    }
+
+    @DeleteOperation
+    public void clearSlowQueries() {
+        slowQueries.clear();
+    }
+
+    final class MethodMeters {
+        private final String repository;
+        private final String method;
+        private final String name;
+        final Timer success;
+        final Timer error;
+        final DistributionSummary rows;
+        final DistributionSummary statements;
+
+        MethodMeters(String repository, String method) {
+            this.repository = repository;
+            this.method = method;
+            this.name = repository + "." + method;
+            this.success = timer("success");
+            this.error = timer("error");
+            this.rows = DistributionSummary.builder("repository.rows")
+                    .tag("repository", repository).tag("method", method)
+                    .register(meterRegistry);
+            this.statements = DistributionSummary.builder("repository.statements")
+                    .tag("repository", repository).tag("method", method)
+                    .register(meterRegistry);
+        }
+
+        private Timer timer(String outcome) {
+            return Timer.builder("repository.invocations")
+                    .tag("repository", repository).tag("method", method).tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.99)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofMillis(1))
+                    .maximumExpectedValue(Duration.ofSeconds(30))
+                    .register(meterRegistry);
+        }
+
+        private Map<String, Object> summary() {
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("repository", repository);
+            summary.put("method", method);
+            summary.put("calls", success.count());
+            summary.put("errors", error.count());
+            summary.put("meanMillis", success.mean(TimeUnit.MILLISECONDS));
+            for (ValueAtPercentile percentile : success.takeSnapshot().percentileValues()) {
+                summary.put("p" + Math.round(percentile.percentile() * 100) + "Millis",
+                        percentile.value(TimeUnit.MILLISECONDS));
+            }
+            summary.put("maxMillis", success.max(TimeUnit.MILLISECONDS));
+            summary.put("meanRows", rows.mean());
+            summary.put("meanStatements", statements.mean());
+            return summary;
+        }
+    }
+
+    private static final class SlowQuery {
+        private final String repository;
+        private final String method;
+        private long count;
+        private long maxNanos;
+        private long lastNanos;
+        private LocalDateTime lastSeen;
+        private List<String> statements = List.of();
+
+        SlowQuery(String repository, String method) {
+            this.repository = repository;
+            this.method = method;
+        }
+
+        synchronized void record(long nanos, List<String> statements) {
+            count++;
+            maxNanos = Math.max(maxNanos, nanos);
+            lastNanos = nanos;
+            lastSeen = LocalDateTime.now();
+            if (!statements.isEmpty()) {
+                this.statements = statements;
+            }
+        }
+
+        synchronized Map<String, Object> summary(Map<String, List<String>> plans) {
+            List<Map<String, Object>> sql = new ArrayList<>();
+            for (String statement : statements) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("sql", statement);
+                entry.put("plan", plans.get(statement));
+                sql.add(entry);
+            }
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("repository", repository);
+            summary.put("method", method);
+            summary.put("count", count);
+            summary.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos));
+            summary.put("lastMillis", TimeUnit.NANOSECONDS.toMillis(lastNanos));
+            summary.put("lastSeen", lastSeen);
+            summary.put("statements", sql);
+            return summary;
+        }
+    }
+}
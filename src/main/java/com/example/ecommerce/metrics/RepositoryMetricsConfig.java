@@ -0,0 +1,29 @@
+package com.example.ecommerce.metrics;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+// Adds RepositoryMetricsInterceptor to every Spring Data repository proxy as it is created
+@Configuration
+public class RepositoryMetricsConfig {
+
+    // Static, so the post processor exists before the repository factory beans it customizes
+    @Bean
+    public static BeanPostProcessor repositoryMetricsPostProcessor(ObjectProvider<RepositoryMetrics> metrics) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport) {
+                    ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                            factory.addRepositoryProxyPostProcessor((proxyFactory, information) ->
+                                    proxyFactory.addAdvice(0, new RepositoryMetricsInterceptor(
+                                            information.getRepositoryInterface(), metrics))));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.ecommerce.metrics;
+
+import com.example.ecommerce.config.SqlStatementInspector;
+import com.example.ecommerce.config.StatementLog;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.Slice;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Outermost advice on one repository proxy; times each call including its transaction and feeds
+// RepositoryMetrics. Meters are looked up once per method and cached here.
+class RepositoryMetricsInterceptor implements MethodInterceptor {
+
+    private final String repository;
+    private final ObjectProvider<RepositoryMetrics> metricsProvider;
+    private final Map<Method, RepositoryMetrics.MethodMeters> meters = new ConcurrentHashMap<>();
+    private volatile RepositoryMetrics metrics;
+
+    RepositoryMetricsInterceptor(Class<?> repositoryInterface, ObjectProvider<RepositoryMetrics> metricsProvider) {
+        this.repository = repositoryInterface.getSimpleName();
+        this.metricsProvider = metricsProvider;
+    }
+
+    @Override
+    public Object invoke(MethodInvocation invocation) throws Throwable {
+        RepositoryMetrics metrics = metrics();
+        Method method = invocation.getMethod();
+        // toString, equals and friends are not queries; the startup plan check's dry runs are not calls
+        if (metrics == null || method.getDeclaringClass() == Object.class || SqlStatementInspector.isCapturing()) {
+            return invocation.proceed();
+        }
+        RepositoryMetrics.MethodMeters methodMeters =
+                meters.computeIfAbsent(method, key -> metrics.meters(repository, key.getName()));
+
+        StatementLog statementLog = StatementLog.current();
+        long mark = statementLog.count();
+        long started = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            long nanos = System.nanoTime() - started;
+            methodMeters.success.record(nanos, TimeUnit.NANOSECONDS);
+            long rows = rows(result);
+            if (rows >= 0) {
+                methodMeters.rows.record(rows);
+            }
+            finish(metrics, methodMeters, statementLog, mark, nanos);
+            return result;
+        } catch (Throwable e) {
+            long nanos = System.nanoTime() - started;
+            methodMeters.error.record(nanos, TimeUnit.NANOSECONDS);
+            finish(metrics, methodMeters, statementLog, mark, nanos);
+            throw e;
+        }
+    }
+
+    private static void finish(RepositoryMetrics metrics, RepositoryMetrics.MethodMeters methodMeters,
+                               StatementLog statementLog, long mark, long nanos) {
+        methodMeters.statements.record(statementLog.count() - mark);
+        metrics.recordSlow(methodMeters, nanos, statementLog.since(mark));
+    }
+
+    // Rows in the result; -1 when they cannot be counted without consuming it (streams)
+    private static long rows(Object result) {
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof Stream || result instanceof Iterable) {
+            return -1;
+        }
+        return 1;
+    }
+
+    // The metrics bean is resolved on first use; repositories are created before it exists
+    private RepositoryMetrics metrics() {
+        RepositoryMetrics current = metrics;
+        if (current == null) {
+            current = metricsProvider.getIfAvailable();
+            metrics = current;
+        }
+        return current;
+    }
+}
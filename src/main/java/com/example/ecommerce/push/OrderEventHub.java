@@ -0,0 +1,433 @@
+package com.example.ecommerce.push;
+
+import com.example.ecommerce.dto.OrderStatusUpdate;
+import com.example.ecommerce.event.OrderChangedEvent;
+import com.example.ecommerce.event.OrderSnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// In-process fan-out of committed order status changes to SSE subscribers, per order or per
+// customer. Subscribers are parked async requests and hold no thread. One hub thread owns the
+// subscription maps and decides, in event id order, what every stream gets next: updates,
+// replays and heartbeats go into the stream's outbox. The writes themselves (SseEmitter.send
+// blocks while a client's socket is full) run on a few sender threads, at most one per stream at
+// a time, so a slow client only delays itself. A stream that lets max-pending events pile up, or
+// whose write has not returned after send-timeout, is ended; the client reconnects and resumes.
+//
+// Event ids are "<epoch>-<n>". The last replay-size updates are kept, so a client reconnecting
+// with Last-Event-ID gets what it missed; when the id is older than that, or from before a
+// restart, it gets a "reset" event and should reload the order(s) with a GET.
+@Component
+public class OrderEventHub {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderEventHub.class);
+
+    private final int maxSubscribers;
+    private final int replaySize;
+    private final Duration heartbeat;
+    private final Duration streamTimeout;
+    private final int maxPending;
+    private final long sendTimeoutNanos;
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 16);
+    private final ScheduledExecutorService hub = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "order-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ExecutorService senders;
+    // Only touched by the hub thread
+    private final Map<Long, Set<Subscription>> byOrder = new HashMap<>();
+    private final Map<Long, Set<Subscription>> byCustomer = new HashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    // Replay buffer; guarded by its own lock since ids are assigned on committing threads. The
+    // fan-out is queued to the hub under the same lock, so the hub sees updates in id order.
+    private final Deque<Published> recent = new ArrayDeque<>();
+    private long nextId = 1;
+
+    @Autowired
+    public OrderEventHub(MeterRegistry meterRegistry,
+                         @Value("${app.orders.events.max-subscribers:4000}") int maxSubscribers,
+                         @Value("${app.orders.events.replay-size:10000}") int replaySize,
+                         @Value("${app.orders.events.heartbeat:30s}") Duration heartbeat,
+                         @Value("${app.orders.events.stream-timeout:30m}") Duration streamTimeout,
+                         @Value("${app.orders.events.send-threads:4}") int sendThreads,
+                         @Value("${app.orders.events.max-pending:1000}") int maxPending,
+                         @Value("${app.orders.events.send-timeout:10s}") Duration sendTimeout) {
+        this.maxSubscribers = maxSubscribers;
+        this.replaySize = replaySize;
+        this.heartbeat = heartbeat;
+        this.streamTimeout = streamTimeout;
+        this.maxPending = maxPending;
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        AtomicInteger threads = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(sendThreads, runnable -> {
+            Thread thread = new Thread(runnable, "order-events-send-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("orders.events.subscribers", subscriberCount, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        hub.scheduleWithFixedDelay(this::sendHeartbeats, heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    // Close every stream so clients reconnect (and resume) against the next instance
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        hub.execute(() -> {
+            List<Subscription> all = new ArrayList<>();
+            for (Map<Long, Set<Subscription>> index : List.of(byOrder, byCustomer)) {
+                index.values().forEach(all::addAll);
+                index.clear();
+            }
+            all.forEach(this::end);
+        });
+        hub.shutdown();
+        hub.awaitTermination(5, TimeUnit.SECONDS);
+        senders.shutdown();
+        senders.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    // New orders and status transitions (updateOrderStatus, cancelOrder, bulk imports); amount-only
+    // updates and deletes are not pushed
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        OrderSnapshot before = event.getBefore();
+        OrderSnapshot after = event.getAfter();
+        if (after == null || (before != null && before.getStatus() == after.getStatus())) {
+            return;
+        }
+        OrderStatusUpdate update = new OrderStatusUpdate(after.getOrderId(), after.getCustomerId(),
+                before != null ? before.getStatus() : null, after.getStatus(), after.getTotalAmount(), LocalDateTime.now());
+        synchronized (recent) {
+            Published published = new Published(nextId++, update);
+            recent.addLast(published);
+            if (recent.size() > replaySize) {
+                recent.removeFirst();
+            }
+            onHub(() -> fanOut(published));
+        }
+    }
+
+    public SseEmitter subscribeToOrder(Long orderId, String lastEventId) {
+        return subscribe(byOrder, orderId, lastEventId, update -> orderId.equals(update.getOrderId()),
+                new SseEmitter(streamTimeout.toMillis()));
+    }
+
+    public SseEmitter subscribeToCustomer(Long customerId, String lastEventId) {
+        return subscribeToCustomer(customerId, lastEventId, new SseEmitter(streamTimeout.toMillis()));
+    }
+
+    SseEmitter subscribeToCustomer(Long customerId, String lastEventId, SseEmitter emitter) {
+        return subscribe(byCustomer, customerId, lastEventId, update -> customerId.equals(update.getCustomerId()), emitter);
+    }
+
+    public boolean isFull() {
+        return subscriberCount.get() >= maxSubscribers;
+    }
+
+    private SseEmitter subscribe(Map<Long, Set<Subscription>> index, Long key, String lastEventId, Filter filter,
+                                 SseEmitter emitter) {
+        Subscription subscription = new Subscription(emitter, filter, index, key);
+        subscriberCount.incrementAndGet();
+        // Completion, timeout and error callbacks may all fire; the count drops once
+        Runnable unsubscribe = () -> {
+            if (subscription.closed.compareAndSet(false, true)) {
+                subscriberCount.decrementAndGet();
+                onHub(() -> remove(subscription));
+            }
+        };
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        // Replay and registration run on the hub thread, so no update falls between the two
+        onHub(() -> {
+            if (subscription.closed.get()) {
+                return;
+            }
+            if (lastEventId != null) {
+                replay(subscription, lastEventId);
+            }
+            if (!subscription.dropped) {
+                index.computeIfAbsent(key, k -> new HashSet<>()).add(subscription);
+            }
+        });
+        return emitter;
+    }
+
+    // Queues what the client missed, or a "reset" when that is gone or more than one outbox holds.
+    // Updates up to the current id are either in the replay or already past this stream, so their
+    // pending fan-outs are skipped for it.
+    private void replay(Subscription subscription, String lastEventId) {
+        long lastSeen = parseId(lastEventId);
+        List<Published> missed = new ArrayList<>();
+        boolean complete;
+        synchronized (recent) {
+            long oldest = recent.isEmpty() ? nextId : recent.getFirst().id;
+            complete = lastSeen >= oldest - 1 && lastSeen < nextId;
+            if (complete) {
+                for (Published published : recent) {
+                    if (published.id > lastSeen && subscription.filter.matches(published.update)) {
+                        missed.add(published);
+                    }
+                }
+            }
+            subscription.lastQueuedId = nextId - 1;
+        }
+        if (!complete || missed.size() > maxPending) {
+            enqueue(subscription, SseEmitter.event().name("reset").data("Missed updates are no longer available"));
+            return;
+        }
+        for (Published published : missed) {
+            enqueue(subscription, statusEvent(published));
+        }
+    }
+
+    private void fanOut(Published published) {
+        deliverAll(byOrder.get(published.update.getOrderId()), published);
+        deliverAll(byCustomer.get(published.update.getCustomerId()), published);
+    }
+
+    private void deliverAll(Set<Subscription> subscriptions, Published published) {
+        if (subscriptions != null) {
+            // Copied, since a stream whose outbox overflows leaves the set
+            for (Subscription subscription : new ArrayList<>(subscriptions)) {
+                deliver(subscription, published);
+            }
+        }
+    }
+
+    private void deliver(Subscription subscription, Published published) {
+        // Replayed on subscribe already, or not for this stream
+        if (published.id <= subscription.lastQueuedId || !subscription.filter.matches(published.update)) {
+            return;
+        }
+        subscription.lastQueuedId = published.id;
+        enqueue(subscription, statusEvent(published));
+    }
+
+    private SseEmitter.SseEventBuilder statusEvent(Published published) {
+        return SseEmitter.event()
+                .name("status")
+                .id(epoch + "-" + published.id)
+                .data(published.update);
+    }
+
+    // Comment lines keep proxies from closing idle streams and reveal dead connections. Streams
+    // with writes still pending get none; the check for stalled writes runs on the same beat.
+    private void sendHeartbeats() {
+        int sent = 0;
+        long now = System.nanoTime();
+        List<Subscription> stalled = new ArrayList<>();
+        for (Map<Long, Set<Subscription>> index : List.of(byOrder, byCustomer)) {
+            for (Set<Subscription> subscriptions : index.values()) {
+                for (Subscription subscription : subscriptions) {
+                    long sendStartedAt = subscription.sendStartedAt;
+                    if (sendStartedAt != 0 && now - sendStartedAt > sendTimeoutNanos) {
+                        stalled.add(subscription);
+                    } else if (subscription.isIdle()) {
+                        enqueue(subscription, SseEmitter.event().comment("heartbeat"));
+                        sent++;
+                    }
+                }
+            }
+        }
+        if (!stalled.isEmpty()) {
+            log.warn("Ending {} order event streams with a write pending for over {} ms",
+                    stalled.size(), TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            stalled.forEach(this::end);
+        }
+        log.debug("Sent {} order event heartbeats", sent);
+    }
+
+    // Hub thread; the sender for the stream picks the event up
+    private void enqueue(Subscription subscription, SseEmitter.SseEventBuilder event) {
+        boolean schedule;
+        synchronized (subscription) {
+            if (subscription.dropped) {
+                return;
+            }
+            if (subscription.outbox.size() >= maxPending) {
+                log.debug("Ending an order event stream with {} events pending", maxPending);
+                end(subscription);
+                return;
+            }
+            subscription.outbox.addLast(event);
+            schedule = !subscription.draining;
+            subscription.draining = true;
+        }
+        if (schedule) {
+            drainOnSender(subscription);
+        }
+    }
+
+    // Hub thread. The emitter is completed by the sender, after any write in progress returns:
+    // complete() waits on the same lock as a blocked send().
+    private void end(Subscription subscription) {
+        remove(subscription);
+        boolean schedule;
+        synchronized (subscription) {
+            subscription.dropped = true;
+            subscription.outbox.clear();
+            schedule = !subscription.draining;
+            subscription.draining = true;
+        }
+        if (schedule) {
+            drainOnSender(subscription);
+        }
+    }
+
+    private void drainOnSender(Subscription subscription) {
+        try {
+            senders.execute(() -> drain(subscription));
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the container closes the stream
+        }
+    }
+
+    // Sender thread; one drain per stream at a time, so its events go out in the order queued
+    private void drain(Subscription subscription) {
+        while (true) {
+            SseEmitter.SseEventBuilder event;
+            boolean dropped;
+            synchronized (subscription) {
+                dropped = subscription.dropped;
+                event = dropped ? null : subscription.outbox.pollFirst();
+                if (event == null) {
+                    subscription.draining = false;
+                }
+            }
+            if (event == null) {
+                if (dropped) {
+                    subscription.emitter.complete();
+                }
+                return;
+            }
+            subscription.sendStartedAt = System.nanoTime();
+            try {
+                if (!send(subscription.emitter, event)) {
+                    synchronized (subscription) {
+                        subscription.dropped = true;
+                        subscription.outbox.clear();
+                        subscription.draining = false;
+                    }
+                    onHub(() -> remove(subscription));
+                    return;
+                }
+            } finally {
+                subscription.sendStartedAt = 0;
+            }
+        }
+    }
+
+    private static void remove(Subscription subscription) {
+        Set<Subscription> subscriptions = subscription.index.get(subscription.key);
+        if (subscriptions != null && subscriptions.remove(subscription) && subscriptions.isEmpty()) {
+            subscription.index.remove(subscription.key);
+        }
+    }
+    private void onHub(Runnable task) {
+        try {
+            hub.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Shutting down; every stream is being closed anyway
+        }
+    }
+
+    private static boolean send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    // "-1" for ids from another epoch or that do not parse
+    private long parseId(String lastEventId) {
+        int dash = lastEventId.lastIndexOf('-');
+        if (dash < 0 || !lastEventId.substring(0, dash).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private interface Filter {
+        boolean matches(OrderStatusUpdate update);
+    }
+
+    private static final class Published {
+        private final long id;
+        private final OrderStatusUpdate update;
+
+        Published(long id, OrderStatusUpdate update) {
+            this.id = id;
+            this.update = update;
+        }
+    }
+
+    private static final class Subscription {
+        private final SseEmitter emitter;
+        private final Filter filter;
+        private final Map<Long, Set<Subscription>> index;
+        private final Long key;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // Only touched by the hub thread
+        private long lastQueuedId;
+        // Guarded by the subscription; draining while a sender owns the stream
+        private final Deque<SseEmitter.SseEventBuilder> outbox = new ArrayDeque<>();
+        private boolean draining;
+        private volatile boolean dropped;
+        // System.nanoTime() when the current write began, 0 between writes
+        private volatile long sendStartedAt;
+
+        Subscription(SseEmitter emitter, Filter filter, Map<Long, Set<Subscription>> index, Long key) {
+            this.emitter = emitter;
+            this.filter = filter;
+            this.index = index;
+            this.key = key;
+        }
+
+        synchronized boolean isIdle() {
+            return !draining && outbox.isEmpty();
+        }
+    }
+}
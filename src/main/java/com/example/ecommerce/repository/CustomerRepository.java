@@ -1,11 +1,14 @@
 package com.example.ecommerce.repository;
 
+import com.example.ecommerce.dto.EntityVersion;
 import com.example.ecommerce.entity.Customer;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -42,4 +45,41 @@ public interface CustomerRepository extends JpaRepository<Customer, Long> {
     // Find customers without orders
     @Query("SELECT c FROM Customer c WHERE c.orders IS EMPTY")
     List<Customer> findCustomersWithoutOrders();
+    
+    // Keyset pagination: each query walks the primary key from the cursor, Pageable only caps the row count
+    List<Customer> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+    
+    List<Customer> findByFirstNameContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String firstName, Long afterId, Pageable pageable);
+    
+    List<Customer> findByLastNameContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String lastName, Long afterId, Pageable pageable);
+    
+    @Query("SELECT c FROM Customer c WHERE " +
+           "LOWER(CONCAT(c.firstName, ' ', c.lastName)) LIKE LOWER(CONCAT('%', :fullName, '%')) " +
+           "AND c.id > :afterId ORDER BY c.id")
+    List<Customer> findByFullNameContainingIgnoreCaseAfter(@Param("fullName") String fullName,
+                                                           @Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT c FROM Customer c WHERE EXISTS (SELECT o.id FROM Order o WHERE o.customer = c) " +
+           "AND c.id > :afterId ORDER BY c.id")
+    List<Customer> findCustomersWithOrdersAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT c FROM Customer c WHERE c.orders IS EMPTY AND c.id > :afterId ORDER BY c.id")
+    List<Customer> findCustomersWithoutOrdersAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // Full-text lookups through the FTS5 shadow table
+    @Query(value = "SELECT c.* FROM customers_fts JOIN customers c ON c.id = customers_fts.rowid " +
+                   "WHERE customers_fts MATCH :query ORDER BY c.id",
+           nativeQuery = true)
+    List<Customer> searchCustomersFullText(@Param("query") String matchExpression);
+    
+    // Bulk existence checks used by imports
+    @Query("SELECT c.email FROM Customer c WHERE c.email IN :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
+    
+    @Query("SELECT c.id FROM Customer c WHERE c.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+    
+    // Version and last update only, for conditional GETs
+    @Query("SELECT new com.example.ecommerce.dto.EntityVersion(c.version, c.updatedAt) FROM Customer c WHERE c.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
 }
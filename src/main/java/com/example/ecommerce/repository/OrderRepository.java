@@ -1,7 +1,9 @@
 package com.example.ecommerce.repository;
 
+import com.example.ecommerce.dto.EntityVersion;
 import com.example.ecommerce.entity.Order;
 import com.example.ecommerce.entity.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -9,10 +11,13 @@ import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+// Date range queries, exports and sales totals also cover archived orders (OrderRepositoryCustom)
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderRepositoryCustom {
     
     // Find orders by customer ID
     List<Order> findByCustomerId(Long customerId);
@@ -26,9 +31,6 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // Find orders by status ordered by order date
     List<Order> findByStatusOrderByOrderDateDesc(OrderStatus status);
     
-    // Find orders by date range
-    List<Order> findByOrderDateBetween(LocalDateTime startDate, LocalDateTime endDate);
-    
     // Find orders by total amount range
     List<Order> findByTotalAmountBetween(BigDecimal minAmount, BigDecimal maxAmount);
     
@@ -48,14 +50,6 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     // Find orders by shipping address containing keyword
     List<Order> findByShippingAddressContainingIgnoreCase(String address);
     
-    // Get total sales amount
-    @Query("SELECT SUM(o.totalAmount) FROM Order o WHERE o.status != 'CANCELLED'")
-    BigDecimal getTotalSalesAmount();
-    
-    // Get total sales amount by date range
-    @Query("SELECT SUM(o.totalAmount) FROM Order o WHERE o.orderDate BETWEEN :startDate AND :endDate AND o.status != 'CANCELLED'")
-    BigDecimal getTotalSalesAmountByDateRange(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
-    
     // Get order count by status
     @Query("SELECT COUNT(o) FROM Order o WHERE o.status = :status")
     Long countOrdersByStatus(@Param("status") OrderStatus status);
@@ -71,10 +65,38 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
            "GROUP BY o.customer.id ORDER BY totalSpent DESC")
     List<Object[]> findTopCustomersByTotalSpent();
     
-    // Get monthly sales report
-    @Query("SELECT YEAR(o.orderDate), MONTH(o.orderDate), SUM(o.totalAmount), COUNT(o) " +
-           "FROM Order o WHERE o.status != 'CANCELLED' " +
-           "GROUP BY YEAR(o.orderDate), MONTH(o.orderDate) " +
-           "ORDER BY YEAR(o.orderDate) DESC, MONTH(o.orderDate) DESC")
-    List<Object[]> getMonthlySalesReport();
+    // Orders of a whole page of customers in one query; the customer id comes back alongside each
+    // order so grouping never has to touch the lazy customer association
+    @Query("SELECT o.customer.id, o FROM Order o WHERE o.customer.id IN :customerIds " +
+           "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Object[]> findByCustomerIdIn(@Param("customerIds") Collection<Long> customerIds);
+    
+    // Keyset pagination: Pageable only caps the row count, the cursor carries the position.
+    // The leading "orderDate <= :afterDate" keeps the predicate usable as an index range.
+    List<Order> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+    
+    @Query("SELECT o FROM Order o WHERE o.customer.id = :customerId " +
+           "AND o.orderDate <= :afterDate AND (o.orderDate < :afterDate OR o.id < :afterId) " +
+           "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findByCustomerIdBefore(@Param("customerId") Long customerId,
+                                       @Param("afterDate") LocalDateTime afterDate,
+                                       @Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT o FROM Order o WHERE o.status = :status " +
+           "AND o.orderDate <= :afterDate AND (o.orderDate < :afterDate OR o.id < :afterId) " +
+           "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findByStatusBefore(@Param("status") OrderStatus status,
+                                   @Param("afterDate") LocalDateTime afterDate,
+                                   @Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT o FROM Order o WHERE o.orderDate >= :since " +
+           "AND o.orderDate <= :afterDate AND (o.orderDate < :afterDate OR o.id < :afterId) " +
+           "ORDER BY o.orderDate DESC, o.id DESC")
+    List<Order> findRecentOrdersBefore(@Param("since") LocalDateTime since,
+                                       @Param("afterDate") LocalDateTime afterDate,
+                                       @Param("afterId") Long afterId, Pageable pageable);
+    
+    // Version and last update only, for conditional GETs
+    @Query("SELECT new com.example.ecommerce.dto.EntityVersion(o.version, o.updatedAt) FROM Order o WHERE o.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") Long id);
 }
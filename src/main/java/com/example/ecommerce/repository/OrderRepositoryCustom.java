@@ -0,0 +1,39 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.entity.Order;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Order queries that also read the monthly archive partitions (see OrderArchive).
+// Archived orders are read-only: load them in read-only transactions and never modify them.
+public interface OrderRepositoryCustom {
+
+    // Find orders by date range
+    List<Order> findByOrderDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    // Keyset page of a date range, oldest first
+    List<Order> findByOrderDateBetweenAfter(LocalDateTime startDate, LocalDateTime endDate,
+                                            LocalDateTime afterDate, Long afterId, Pageable pageable);
+
+    // Forward-only cursors for exports; callers must consume them inside a transaction and close them
+    Stream<Order> streamAllOrders();
+
+    Stream<Order> streamByOrderDateBetween(LocalDateTime startDate, LocalDateTime endDate);
+
+    // Get total sales amount
+    BigDecimal getTotalSalesAmount();
+
+    // Get total sales amount by date range
+    BigDecimal getTotalSalesAmountByDateRange(LocalDateTime startDate, LocalDateTime endDate);
+
+    // Get monthly sales report: year, month, sales amount, order count, newest month first
+    List<Object[]> getMonthlySalesReport();
+
+    // An archived order by id
+    Optional<Order> findArchivedById(Long id);
+}
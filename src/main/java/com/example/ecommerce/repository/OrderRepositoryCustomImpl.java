@@ -0,0 +1,284 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.archive.ArchivePartition;
+import com.example.ecommerce.archive.OrderArchive;
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.rollup.Cents;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
+// Hot orders through JPQL, archived ones through native queries on the partitions that can
+// match, merged in the order the caller asked for. Partition tables are created from the orders
+// DDL, so SELECT * maps straight onto the Order entity.
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    private static final int STREAM_FETCH_SIZE = 500;
+    private static final Comparator<Order> BY_DATE =
+            Comparator.comparing(Order::getOrderDate).thenComparing(Order::getId);
+    private static final Comparator<Order> BY_ID = Comparator.comparing(Order::getId);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final OrderArchive orderArchive;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public OrderRepositoryCustomImpl(OrderArchive orderArchive, JdbcTemplate jdbcTemplate) {
+        this.orderArchive = orderArchive;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<Order> findByOrderDateBetween(LocalDateTime startDate, LocalDateTime endDate) {
+        List<Order> orders = new ArrayList<>(entityManager.createQuery(
+                        "SELECT o FROM Order o WHERE o.orderDate BETWEEN :startDate AND :endDate", Order.class)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .getResultList());
+        List<ArchivePartition> partitions = orderArchive.getPartitionsBetween(startDate, endDate);
+        if (partitions.isEmpty()) {
+            return orders;
+        }
+        for (ArchivePartition partition : partitions) {
+            orders.addAll(list(archived(partition, "WHERE order_date BETWEEN ?1 AND ?2",
+                    Timestamp.valueOf(startDate), Timestamp.valueOf(endDate))));
+        }
+        orders.sort(BY_DATE);
+        return orders;
+    }
+
+    @Override
+    public List<Order> findByOrderDateBetweenAfter(LocalDateTime startDate, LocalDateTime endDate,
+                                                   LocalDateTime afterDate, Long afterId, Pageable pageable) {
+        int limit = pageable.getPageSize();
+        List<Order> orders = new ArrayList<>(entityManager.createQuery(
+                        "SELECT o FROM Order o WHERE o.orderDate BETWEEN :startDate AND :endDate " +
+                        "AND o.orderDate >= :afterDate AND (o.orderDate > :afterDate OR o.id > :afterId) " +
+                        "ORDER BY o.orderDate ASC, o.id ASC", Order.class)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .setParameter("afterDate", afterDate)
+                .setParameter("afterId", afterId)
+                .setMaxResults(limit)
+                .getResultList());
+
+        // Partitions are in date order, so once they have filled a page the later ones cannot contribute
+        LocalDateTime from = afterDate.isAfter(startDate) ? afterDate : startDate;
+        int fromArchive = 0;
+        for (ArchivePartition partition : orderArchive.getPartitionsBetween(from, endDate)) {
+            if (fromArchive >= limit) {
+                break;
+            }
+            List<Order> page = list(archived(partition,
+                    "WHERE order_date BETWEEN ?1 AND ?2 AND order_date >= ?3 AND (order_date > ?3 OR id > ?4) " +
+                    "ORDER BY order_date, id LIMIT " + (limit - fromArchive),
+                    Timestamp.valueOf(startDate), Timestamp.valueOf(endDate), Timestamp.valueOf(afterDate), afterId));
+            orders.addAll(page);
+            fromArchive += page.size();
+        }
+        if (fromArchive == 0) {
+            return orders;
+        }
+        orders.sort(BY_DATE);
+        return orders.size() > limit ? new ArrayList<>(orders.subList(0, limit)) : orders;
+    }
+
+    @Override
+    public Stream<Order> streamAllOrders() {
+        List<Stream<Order>> sources = new ArrayList<>();
+        sources.add(streaming(entityManager.createQuery("SELECT o FROM Order o ORDER BY o.id", Order.class)));
+        for (ArchivePartition partition : orderArchive.getPartitions()) {
+            sources.add(streaming(archived(partition, "ORDER BY id")));
+        }
+        return merge(sources, BY_ID);
+    }
+
+    @Override
+    public Stream<Order> streamByOrderDateBetween(LocalDateTime startDate, LocalDateTime endDate) {
+        List<Stream<Order>> sources = new ArrayList<>();
+        sources.add(streaming(entityManager.createQuery(
+                        "SELECT o FROM Order o WHERE o.orderDate BETWEEN :startDate AND :endDate " +
+                        "ORDER BY o.orderDate, o.id", Order.class)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)));
+        for (ArchivePartition partition : orderArchive.getPartitionsBetween(startDate, endDate)) {
+            sources.add(streaming(archived(partition, "WHERE order_date BETWEEN ?1 AND ?2 ORDER BY order_date, id",
+                    Timestamp.valueOf(startDate), Timestamp.valueOf(endDate))));
+        }
+        return merge(sources, BY_DATE);
+    }
+
+    @Override
+    public BigDecimal getTotalSalesAmount() {
+        BigDecimal hot = entityManager.createQuery(
+                        "SELECT SUM(o.totalAmount) FROM Order o WHERE o.status != 'CANCELLED'", BigDecimal.class)
+                .getSingleResult();
+        long archivedCents = 0;
+        for (long[] month : orderArchive.getSalesByMonth().values()) {
+            archivedCents += month[1];
+        }
+        return add(hot, archivedCents);
+    }
+
+    @Override
+    public BigDecimal getTotalSalesAmountByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
+        BigDecimal hot = entityManager.createQuery(
+                        "SELECT SUM(o.totalAmount) FROM Order o WHERE o.orderDate BETWEEN :startDate AND :endDate " +
+                        "AND o.status != 'CANCELLED'", BigDecimal.class)
+                .setParameter("startDate", startDate)
+                .setParameter("endDate", endDate)
+                .getSingleResult();
+        long archivedCents = 0;
+        for (ArchivePartition partition : orderArchive.getPartitionsBetween(startDate, endDate)) {
+            Long cents = jdbcTemplate.queryForObject(
+                    "SELECT SUM(CAST(ROUND(total_amount * 100) AS INTEGER)) FROM " + partition.getTable() +
+                    " WHERE order_date BETWEEN ? AND ? AND status != 'CANCELLED'",
+                    Long.class, Timestamp.valueOf(startDate), Timestamp.valueOf(endDate));
+            archivedCents += cents != null ? cents : 0;
+        }
+        return add(hot, archivedCents);
+    }
+
+    @Override
+    public List<Object[]> getMonthlySalesReport() {
+        List<Object[]> hot = entityManager.createQuery(
+                        "SELECT YEAR(o.orderDate), MONTH(o.orderDate), SUM(o.totalAmount), COUNT(o) " +
+                        "FROM Order o WHERE o.status != 'CANCELLED' " +
+                        "GROUP BY YEAR(o.orderDate), MONTH(o.orderDate)", Object[].class)
+                .getResultList();
+        Map<YearMonth, Object[]> months = new TreeMap<>(Comparator.reverseOrder());
+        for (Object[] row : hot) {
+            months.put(YearMonth.of(((Number) row[0]).intValue(), ((Number) row[1]).intValue()), row);
+        }
+        orderArchive.getSalesByMonth().forEach((month, sales) -> {
+            if (sales[0] == 0) {
+                return;
+            }
+            Object[] row = months.get(month);
+            BigDecimal amount = row != null ? (BigDecimal) row[2] : null;
+            long count = row != null ? ((Number) row[3]).longValue() : 0;
+            months.put(month, new Object[] {
+                    month.getYear(), month.getMonthValue(), add(amount, sales[1]), count + sales[0] });
+        });
+        return new ArrayList<>(months.values());
+    }
+
+    @Override
+    public Optional<Order> findArchivedById(Long id) {
+        List<ArchivePartition> partitions = orderArchive.getPartitions();
+        for (int i = partitions.size() - 1; i >= 0; i--) {
+            List<Order> found = list(archived(partitions.get(i), "WHERE id = ?1", id));
+            if (!found.isEmpty()) {
+                return Optional.of(found.get(0));
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Query archived(ArchivePartition partition, String clause, Object... parameters) {
+        Query query = entityManager.createNativeQuery(
+                "SELECT * FROM " + partition.getTable() + " " + clause, Order.class);
+        for (int i = 0; i < parameters.length; i++) {
+            query.setParameter(i + 1, parameters[i]);
+        }
+        return query;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Order> list(Query query) {
+        return query.getResultList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Stream<Order> streaming(Query query) {
+        return query.setHint(HINT_FETCH_SIZE, STREAM_FETCH_SIZE)
+                .setHint(HINT_READONLY, true)
+                .setHint(HINT_CACHEABLE, false)
+                .getResultStream();
+    }
+
+    private static BigDecimal add(BigDecimal amount, long cents) {
+        if (cents == 0) {
+            return amount;
+        }
+        BigDecimal archived = Cents.toAmount(cents);
+        return amount != null ? amount.add(archived) : archived;
+    }
+
+    // Lazy k-way merge of streams that are each sorted by the comparator; closing the result closes them all
+    private static Stream<Order> merge(List<Stream<Order>> sources, Comparator<Order> order) {
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+        List<Iterator<Order>> iterators = new ArrayList<>(sources.size());
+        for (Stream<Order> source : sources) {
+            iterators.add(source.iterator());
+        }
+        Iterator<Order> merged = new Iterator<Order>() {
+            private final Order[] heads = new Order[iterators.size()];
+            private boolean started;
+
+            @Override
+            public boolean hasNext() {
+                return pick() >= 0;
+            }
+
+            @Override
+            public Order next() {
+                int source = pick();
+                if (source < 0) {
+                    throw new NoSuchElementException();
+                }
+                Order next = heads[source];
+                Iterator<Order> iterator = iterators.get(source);
+                heads[source] = iterator.hasNext() ? iterator.next() : null;
+                return next;
+            }
+
+            // Partitions are few, a linear pick over the heads is cheaper than a heap
+            private int pick() {
+                if (!started) {
+                    for (int i = 0; i < heads.length; i++) {
+                        heads[i] = iterators.get(i).hasNext() ? iterators.get(i).next() : null;
+                    }
+                    started = true;
+                }
+                int best = -1;
+                for (int i = 0; i < heads.length; i++) {
+                    if (heads[i] != null && (best < 0 || order.compare(heads[i], heads[best]) < 0)) {
+                        best = i;
+                    }
+                }
+                return best;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(merged, Spliterator.ORDERED), false)
+                .onClose(() -> sources.forEach(Stream::close));
+    }
+}
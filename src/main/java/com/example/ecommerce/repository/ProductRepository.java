@@ -1,12 +1,15 @@
 package com.example.ecommerce.repository;
 
 import com.example.ecommerce.entity.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -67,4 +70,71 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     // Get distinct brands
     @Query("SELECT DISTINCT p.brand FROM Product p WHERE p.brand IS NOT NULL ORDER BY p.brand")
     List<String> findDistinctBrands();
+    
+    // Keyset pagination: each query walks the primary key from the cursor, Pageable only caps the row count
+    List<Product> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+    
+    List<Product> findByNameContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(String name, Long afterId, Pageable pageable);
+    
+    List<Product> findByCategoryIgnoreCaseAndIdGreaterThanOrderByIdAsc(String category, Long afterId, Pageable pageable);
+    
+    List<Product> findByBrandIgnoreCaseAndIdGreaterThanOrderByIdAsc(String brand, Long afterId, Pageable pageable);
+    
+    List<Product> findByIsActiveTrueAndIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+    
+    List<Product> findByPriceBetweenAndIdGreaterThanOrderByIdAsc(BigDecimal minPrice, BigDecimal maxPrice,
+                                                                 Long afterId, Pageable pageable);
+    
+    @Query("SELECT p FROM Product p WHERE p.stockQuantity > 0 AND p.id > :afterId ORDER BY p.id")
+    List<Product> findProductsInStockAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT p FROM Product p WHERE p.stockQuantity = 0 AND p.id > :afterId ORDER BY p.id")
+    List<Product> findProductsOutOfStockAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT p FROM Product p WHERE (" +
+           "LOWER(p.name) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(p.description) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(p.category) LIKE LOWER(CONCAT('%', :keyword, '%')) OR " +
+           "LOWER(p.brand) LIKE LOWER(CONCAT('%', :keyword, '%'))) " +
+           "AND p.id > :afterId ORDER BY p.id")
+    List<Product> searchProductsAfter(@Param("keyword") String keyword, @Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query(value = "SELECT p.* FROM products_fts JOIN products p ON p.id = products_fts.rowid " +
+                   "WHERE products_fts MATCH :query AND products_fts.rowid > :afterId ORDER BY p.id",
+           nativeQuery = true)
+    List<Product> searchProductsFullTextAfter(@Param("query") String matchExpression, @Param("afterId") Long afterId,
+                                              Pageable pageable);
+    
+    // Full-text search through the FTS5 shadow table, best matches first (column weights: name, description, brand, category)
+    @Query(value = "SELECT p.* FROM products_fts JOIN products p ON p.id = products_fts.rowid " +
+                   "WHERE products_fts MATCH :query ORDER BY bm25(products_fts, 3.0, 1.0, 2.0, 2.0), p.id",
+           nativeQuery = true)
+    List<Product> searchProductsFullText(@Param("query") String matchExpression);
+    
+    @Query(value = "SELECT p.* FROM products_fts JOIN products p ON p.id = products_fts.rowid " +
+                   "WHERE products_fts MATCH :query ORDER BY bm25(products_fts, 3.0, 1.0, 2.0, 2.0), p.id",
+           nativeQuery = true)
+    List<Product> searchProductsFullText(@Param("query") String matchExpression, Pageable pageable);
+    
+    @Query(value = "SELECT COUNT(*) FROM products_fts WHERE products_fts MATCH :query", nativeQuery = true)
+    long countProductsFullText(@Param("query") String matchExpression);
+    
+    // Atomic conditional decrement: a single UPDATE that only succeeds while enough stock is left.
+    // Returns 0 when the product does not exist or has too little stock.
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity - :quantity, p.updatedAt = :now, " +
+           "p.version = p.version + 1 " +
+           "WHERE p.id = :id AND p.stockQuantity >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity, @Param("now") LocalDateTime now);
+    
+    // Atomic increment, used to give reserved stock back. Both statements bump the version so that
+    // a concurrent optimistic update of the same product fails instead of overwriting the stock.
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.stockQuantity = p.stockQuantity + :quantity, p.updatedAt = :now, " +
+           "p.version = p.version + 1 WHERE p.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity, @Param("now") LocalDateTime now);
+    
+    // Category of a product whose stock was changed by the statements above, for cache eviction
+    @Query("SELECT p.category FROM Product p WHERE p.id = :id")
+    String findCategoryById(@Param("id") Long id);
 }
@@ -0,0 +1,27 @@
+package com.example.ecommerce.repository;
+
+import com.example.ecommerce.entity.ReservationStatus;
+import com.example.ecommerce.entity.StockReservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+    
+    // Find reservations that are still holding stock past their expiry
+    List<StockReservation> findByStatusAndExpiresAtBefore(ReservationStatus status, LocalDateTime now, Pageable pageable);
+    
+    // Move a reservation out of ACTIVE exactly once; returns 0 if someone else already did
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.status = :status, r.updatedAt = :now " +
+           "WHERE r.id = :id AND r.status = 'ACTIVE'")
+    int transitionFromActive(@Param("id") Long id, @Param("status") ReservationStatus status,
+                             @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,21 @@
+package com.example.ecommerce.rollup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Money as a scaled long (hundredths), so aggregates add exactly and cheaply
+public final class Cents {
+
+    private Cents() {}
+
+    public static long of(BigDecimal amount) {
+        if (amount == null) {
+            return 0L;
+        }
+        return amount.setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+    }
+
+    public static BigDecimal toAmount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
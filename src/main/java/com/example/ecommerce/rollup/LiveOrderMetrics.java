@@ -0,0 +1,132 @@
+package com.example.ecommerce.rollup;
+
+import com.example.ecommerce.entity.OrderStatus;
+import com.example.ecommerce.event.OrderChangedEvent;
+import com.example.ecommerce.event.OrderSnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+// In-process order counters: one LongAdder per status plus a running revenue sum in cents.
+// Writers only ever add, so committing orders never contend on a shared cell, and readers
+// answer count/revenue queries without touching SQLite.
+// The counters are seeded from the rollup tables at startup and reconciled against them periodically.
+@Component
+public class LiveOrderMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveOrderMetrics.class);
+
+    private final SalesRollups salesRollups;
+    private final Map<OrderStatus, LongAdder> counts = new EnumMap<>(OrderStatus.class);
+    private final LongAdder revenueCents = new LongAdder();
+    private volatile boolean seeded;
+
+    // Drift seen by the previous reconciliation; only touched under the reconcile lock
+    private final Map<OrderStatus, Long> lastCountDrift = new EnumMap<>(OrderStatus.class);
+    private long lastRevenueDrift;
+
+    @Autowired
+    public LiveOrderMetrics(SalesRollups salesRollups, MeterRegistry meterRegistry) {
+        this.salesRollups = salesRollups;
+        for (OrderStatus status : OrderStatus.values()) {
+            LongAdder counter = new LongAdder();
+            counts.put(status, counter);
+            lastCountDrift.put(status, 0L);
+            Gauge.builder("orders.live.count", counter, LongAdder::sum)
+                    .tag("status", status.name())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("orders.live.revenue", revenueCents, cents -> cents.sum() / 100.0)
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void seed() {
+        Map<OrderStatus, Long> stored = salesRollups.getOrderCounts();
+        for (OrderStatus status : OrderStatus.values()) {
+            LongAdder counter = counts.get(status);
+            counter.add(stored.get(status) - counter.sum());
+        }
+        revenueCents.add(salesRollups.getTotalSalesCents() - revenueCents.sum());
+        seeded = true;
+        log.info("Seeded live order metrics: {} orders, revenue {}", totalCount(), getTotalRevenue());
+    }
+
+    // Only committed changes count; a rolled back order never reaches the counters
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        apply(event.getBefore(), -1);
+        apply(event.getAfter(), 1);
+    }
+
+    private void apply(OrderSnapshot order, int sign) {
+        if (order == null) {
+            return;
+        }
+        counts.get(order.getStatus()).add(sign);
+        if (order.countsAsSale()) {
+            revenueCents.add(sign * Cents.of(order.getTotalAmount()));
+        }
+    }
+
+    public long getCount(OrderStatus status) {
+        return seeded ? counts.get(status).sum() : salesRollups.getOrderCount(status);
+    }
+
+    public BigDecimal getTotalRevenue() {
+        return seeded ? Cents.toAmount(revenueCents.sum()) : salesRollups.getTotalSales();
+    }
+
+    // An order that commits while we read can show up as drift for one round, so a correction is
+    // applied only when the same drift is measured twice in a row. Corrections are added rather
+    // than set, so increments racing with the reconciliation are never lost.
+    @Scheduled(fixedDelayString = "${app.metrics.live.reconcile-interval:60000}",
+               initialDelayString = "${app.metrics.live.reconcile-interval:60000}")
+    public synchronized void reconcile() {
+        if (!seeded) {
+            return;
+        }
+        Map<OrderStatus, Long> stored = salesRollups.getOrderCounts();
+        long storedRevenue = salesRollups.getTotalSalesCents();
+
+        for (OrderStatus status : OrderStatus.values()) {
+            LongAdder counter = counts.get(status);
+            long drift = stored.get(status) - counter.sum();
+            if (drift != 0 && drift == lastCountDrift.get(status)) {
+                counter.add(drift);
+                log.warn("Corrected live order count for {} by {}", status, drift);
+                drift = 0;
+            }
+            lastCountDrift.put(status, drift);
+        }
+
+        long drift = storedRevenue - revenueCents.sum();
+        if (drift != 0 && drift == lastRevenueDrift) {
+            revenueCents.add(drift);
+            log.warn("Corrected live revenue by {} cents", drift);
+            drift = 0;
+        }
+        lastRevenueDrift = drift;
+    }
+
+    private long totalCount() {
+        long total = 0;
+        for (LongAdder counter : counts.values()) {
+            total += counter.sum();
+        }
+        return total;
+    }
+}
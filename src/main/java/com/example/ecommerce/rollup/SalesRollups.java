@@ -0,0 +1,335 @@
+package com.example.ecommerce.rollup;
+
+import com.example.ecommerce.archive.ArchivePartition;
+import com.example.ecommerce.archive.OrderArchive;
+import com.example.ecommerce.dto.CustomerSpend;
+import com.example.ecommerce.dto.SalesBucket;
+import com.example.ecommerce.entity.OrderStatus;
+import com.example.ecommerce.event.OrderChangedEvent;
+import com.example.ecommerce.event.OrderSnapshot;
+import com.example.ecommerce.shard.Shards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Pre-aggregated sales figures kept next to the orders table: daily and monthly sales,
+// order counts per status and lifetime spend per customer.
+// Every order mutation is folded in as a delta (minus the old row, plus the new one) inside the
+// transaction that changed the order, so the rollups commit or roll back together with it.
+// Each shard keeps the rollups of its own orders; reads add the shards' figures up.
+@Component
+@DependsOn("schemaMigrations")
+@Transactional
+public class SalesRollups {
+
+    private static final Logger log = LoggerFactory.getLogger(SalesRollups.class);
+
+    private static final String UPSERT_DAILY =
+            "INSERT INTO sales_daily (day, order_count, revenue_cents) VALUES (?, ?, ?) " +
+            "ON CONFLICT(day) DO UPDATE SET order_count = order_count + excluded.order_count, " +
+            "revenue_cents = revenue_cents + excluded.revenue_cents";
+    private static final String UPSERT_MONTHLY =
+            "INSERT INTO sales_monthly (month, order_count, revenue_cents) VALUES (?, ?, ?) " +
+            "ON CONFLICT(month) DO UPDATE SET order_count = order_count + excluded.order_count, " +
+            "revenue_cents = revenue_cents + excluded.revenue_cents";
+    private static final String UPSERT_STATUS =
+            "INSERT INTO order_status_counts (status, order_count) VALUES (?, ?) " +
+            "ON CONFLICT(status) DO UPDATE SET order_count = order_count + excluded.order_count";
+    private static final String UPSERT_CUSTOMER =
+            "INSERT INTO customer_spend (customer_id, order_count, total_spent_cents) VALUES (?, ?, ?) " +
+            "ON CONFLICT(customer_id) DO UPDATE SET order_count = order_count + excluded.order_count, " +
+            "total_spent_cents = total_spent_cents + excluded.total_spent_cents";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final OrderArchive orderArchive;
+    private final Shards shards;
+    private volatile boolean rebuildOnStartup;
+
+    @Autowired
+    public SalesRollups(JdbcTemplate jdbcTemplate, OrderArchive orderArchive, Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.orderArchive = orderArchive;
+        this.shards = shards;
+    }
+
+    // The tables come from SchemaMigrations. Empty rollups next to existing orders (the tables were
+    // just created, or were cleared) are backfilled from the orders on disk once the app is up
+    @PostConstruct
+    public void checkBackfill() {
+        shards.forEachShard(shard -> {
+            Boolean missing = jdbcTemplate.queryForObject(
+                    "SELECT (EXISTS (SELECT 1 FROM orders) OR EXISTS (SELECT 1 FROM order_archive_partitions " +
+                    "WHERE order_count > 0)) AND NOT EXISTS (SELECT 1 FROM order_status_counts WHERE order_count > 0)",
+                    Boolean.class);
+            if (Boolean.TRUE.equals(missing)) {
+                rebuildOnStartup = true;
+            }
+        });
+    }
+
+    // Ordered first so anything seeded from the rollups at startup sees the backfilled figures
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void backfillIfNew() {
+        if (rebuildOnStartup) {
+            rebuildOnStartup = false;
+            rebuild();
+        }
+    }
+
+    // Runs synchronously in the publisher's transaction
+    @EventListener
+    public void onOrderChanged(OrderChangedEvent event) {
+        Delta delta = new Delta();
+        delta.add(event.getBefore(), -1);
+        delta.add(event.getAfter(), 1);
+        delta.upsert(jdbcTemplate);
+    }
+
+    // Orders moved to another shard leave the rollups of one shard for those of the other; runs in
+    // the transaction writing the orders on that shard
+    public void applyMoved(List<OrderSnapshot> orders, int sign) {
+        Delta delta = new Delta();
+        for (OrderSnapshot order : orders) {
+            delta.add(order, sign);
+        }
+        delta.upsert(jdbcTemplate);
+    }
+
+    // Recompute every rollup from the orders table and the archive partitions, one shard at a time
+    public void rebuild() {
+        // A rebuild before the app is up (e.g. after generating data) makes the startup backfill redundant
+        rebuildOnStartup = false;
+        for (int shard = 0; shard < shards.getCount(); shard++) {
+            shards.write(shard, this::rebuildShard);
+        }
+    }
+
+    // Clearing first takes SQLite's write lock, so no order can change between the scan and the
+    // insert of the fresh figures
+    private Void rebuildShard() {
+        long started = System.currentTimeMillis();
+        jdbcTemplate.update("DELETE FROM sales_daily");
+        jdbcTemplate.update("DELETE FROM sales_monthly");
+        jdbcTemplate.update("DELETE FROM order_status_counts");
+        jdbcTemplate.update("DELETE FROM customer_spend");
+
+        Delta totals = new Delta();
+        List<String> tables = new ArrayList<>();
+        tables.add("orders");
+        for (ArchivePartition partition : orderArchive.getPartitions()) {
+            tables.add(partition.getTable());
+        }
+        for (String table : tables) {
+            jdbcTemplate.query("SELECT id, customer_id, order_date, status, total_amount FROM " + table, rs -> {
+                Timestamp orderDate = rs.getTimestamp("order_date");
+                totals.add(new OrderSnapshot(rs.getLong("id"), rs.getLong("customer_id"),
+                        orderDate != null ? orderDate.toLocalDateTime() : null,
+                        OrderStatus.valueOf(rs.getString("status")), rs.getBigDecimal("total_amount")), 1);
+            });
+        }
+        totals.insert(jdbcTemplate);
+        log.info("Rebuilt sales rollups for {} customers and {} days in {} ms",
+                totals.customers.size(), totals.daily.size(), System.currentTimeMillis() - started);
+        return null;
+    }
+
+    // Reads: each is a primary key lookup or a scan over buckets, never over orders
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalSales() {
+        return Cents.toAmount(getTotalSalesCents());
+    }
+
+    @Transactional(readOnly = true)
+    public long getTotalSalesCents() {
+        return shards.sum(() -> {
+            Long cents = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(revenue_cents), 0) FROM sales_monthly", Long.class);
+            return cents != null ? cents : 0L;
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public BigDecimal getSalesBetween(LocalDate startDate, LocalDate endDate) {
+        return Cents.toAmount(shards.sum(() -> {
+            Long cents = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(SUM(revenue_cents), 0) FROM sales_daily WHERE day BETWEEN ? AND ?",
+                    Long.class, startDate.toString(), endDate.toString());
+            return cents != null ? cents : 0L;
+        }));
+    }
+
+    @Transactional(readOnly = true)
+    public List<SalesBucket> getDailySales(LocalDate startDate, LocalDate endDate) {
+        return merged(shards.gather(() -> jdbcTemplate.query(
+                "SELECT day, order_count, revenue_cents FROM sales_daily WHERE day BETWEEN ? AND ? ORDER BY day",
+                (rs, row) -> new SalesBucket(rs.getString("day"), rs.getLong("order_count"),
+                        Cents.toAmount(rs.getLong("revenue_cents"))),
+                startDate.toString(), endDate.toString())), Comparator.naturalOrder());
+    }
+
+    @Transactional(readOnly = true)
+    public List<SalesBucket> getMonthlySales() {
+        return merged(shards.gather(() -> jdbcTemplate.query(
+                "SELECT month, order_count, revenue_cents FROM sales_monthly ORDER BY month DESC",
+                (rs, row) -> new SalesBucket(rs.getString("month"), rs.getLong("order_count"),
+                        Cents.toAmount(rs.getLong("revenue_cents"))))), Comparator.reverseOrder());
+    }
+
+    // Buckets with the same key from different shards added up
+    private List<SalesBucket> merged(List<SalesBucket> buckets, Comparator<String> order) {
+        if (!shards.isSharded()) {
+            return buckets;
+        }
+        Map<String, SalesBucket> byKey = new TreeMap<>(order);
+        for (SalesBucket bucket : buckets) {
+            byKey.merge(bucket.getPeriod(), bucket, (a, b) -> new SalesBucket(a.getPeriod(),
+                    a.getOrderCount() + b.getOrderCount(), a.getRevenue().add(b.getRevenue())));
+        }
+        return new ArrayList<>(byKey.values());
+    }
+
+    @Transactional(readOnly = true)
+    public long getOrderCount(OrderStatus status) {
+        return shards.sum(() -> {
+            List<Long> counts = jdbcTemplate.queryForList(
+                    "SELECT order_count FROM order_status_counts WHERE status = ?", Long.class, status.name());
+            return counts.isEmpty() ? 0L : counts.get(0);
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public Map<OrderStatus, Long> getOrderCounts() {
+        Map<OrderStatus, Long> counts = new EnumMap<>(OrderStatus.class);
+        for (OrderStatus status : OrderStatus.values()) {
+            counts.put(status, 0L);
+        }
+        shards.gather(() -> jdbcTemplate.query("SELECT status, order_count FROM order_status_counts",
+                        (rs, row) -> Map.entry(OrderStatus.valueOf(rs.getString("status")), rs.getLong("order_count"))))
+                .forEach(entry -> counts.merge(entry.getKey(), entry.getValue(), Long::sum));
+        return counts;
+    }
+
+    @Transactional(readOnly = true)
+    public List<CustomerSpend> getTopCustomersBySpend(int limit) {
+        return topCustomers("total_spent_cents", Comparator.comparing(CustomerSpend::getTotalSpent), limit);
+    }
+
+    @Transactional(readOnly = true)
+    public List<CustomerSpend> getTopCustomersByOrderCount(int limit) {
+        return topCustomers("order_count", Comparator.comparingLong(CustomerSpend::getOrderCount), limit);
+    }
+
+    // A customer's orders all live on one shard, so the top N overall are among every shard's top N
+    private List<CustomerSpend> topCustomers(String column, Comparator<CustomerSpend> by, int limit) {
+        return shards.gather(() -> jdbcTemplate.query(
+                "SELECT customer_id, order_count, total_spent_cents FROM customer_spend " +
+                "ORDER BY " + column + " DESC, customer_id LIMIT ?",
+                (rs, row) -> new CustomerSpend(rs.getLong("customer_id"), rs.getLong("order_count"),
+                        Cents.toAmount(rs.getLong("total_spent_cents"))),
+                limit), by.reversed().thenComparing(CustomerSpend::getCustomerId), limit);
+    }
+
+    // Net change of every rollup row touched by one or more order snapshots
+    private static final class Delta {
+        private final Map<String, long[]> daily = new HashMap<>();
+        private final Map<String, long[]> monthly = new HashMap<>();
+        private final Map<OrderStatus, long[]> statuses = new EnumMap<>(OrderStatus.class);
+        private final Map<Long, long[]> customers = new HashMap<>();
+
+        void add(OrderSnapshot order, int sign) {
+            if (order == null) {
+                return;
+            }
+            long cents = order.countsAsSale() ? sign * Cents.of(order.getTotalAmount()) : 0L;
+            statuses.computeIfAbsent(order.getStatus(), k -> new long[1])[0] += sign;
+            long[] customer = customers.computeIfAbsent(order.getCustomerId(), k -> new long[2]);
+            customer[0] += sign;
+            customer[1] += cents;
+            if (order.countsAsSale() && order.getOrderDate() != null) {
+                LocalDateTime orderDate = order.getOrderDate();
+                addSale(daily, orderDate.toLocalDate().toString(), sign, cents);
+                addSale(monthly, YearMonth.from(orderDate).toString(), sign, cents);
+            }
+        }
+
+        private static void addSale(Map<String, long[]> buckets, String key, int sign, long cents) {
+            long[] bucket = buckets.computeIfAbsent(key, k -> new long[2]);
+            bucket[0] += sign;
+            bucket[1] += cents;
+        }
+
+        // Apply as increments; entries that cancel out (e.g. an address-only change) cost nothing
+        void upsert(JdbcTemplate jdbcTemplate) {
+            write(jdbcTemplate, UPSERT_DAILY, UPSERT_MONTHLY, UPSERT_STATUS, UPSERT_CUSTOMER, true);
+            for (Map.Entry<Long, long[]> entry : customers.entrySet()) {
+                if (entry.getValue()[0] < 0) {
+                    jdbcTemplate.update("DELETE FROM customer_spend WHERE customer_id = ? AND order_count <= 0",
+                            entry.getKey());
+                }
+            }
+        }
+
+        // Write into empty tables
+        void insert(JdbcTemplate jdbcTemplate) {
+            write(jdbcTemplate,
+                    "INSERT INTO sales_daily (day, order_count, revenue_cents) VALUES (?, ?, ?)",
+                    "INSERT INTO sales_monthly (month, order_count, revenue_cents) VALUES (?, ?, ?)",
+                    "INSERT INTO order_status_counts (status, order_count) VALUES (?, ?)",
+                    "INSERT INTO customer_spend (customer_id, order_count, total_spent_cents) VALUES (?, ?, ?)",
+                    false);
+        }
+
+        private void write(JdbcTemplate jdbcTemplate, String dailySql, String monthlySql,
+                           String statusSql, String customerSql, boolean skipZero) {
+            batch(jdbcTemplate, dailySql, rows(daily, skipZero));
+            batch(jdbcTemplate, monthlySql, rows(monthly, skipZero));
+            List<Object[]> statusRows = new ArrayList<>();
+            for (Map.Entry<OrderStatus, long[]> entry : statuses.entrySet()) {
+                if (!skipZero || entry.getValue()[0] != 0) {
+                    statusRows.add(new Object[] { entry.getKey().name(), entry.getValue()[0] });
+                }
+            }
+            batch(jdbcTemplate, statusSql, statusRows);
+            batch(jdbcTemplate, customerSql, rows(customers, skipZero));
+        }
+
+        private static void batch(JdbcTemplate jdbcTemplate, String sql, List<Object[]> rows) {
+            if (!rows.isEmpty()) {
+                jdbcTemplate.batchUpdate(sql, rows);
+            }
+        }
+
+        private static <K> List<Object[]> rows(Map<K, long[]> buckets, boolean skipZero) {
+            List<Object[]> rows = new ArrayList<>(buckets.size());
+            for (Map.Entry<K, long[]> entry : buckets.entrySet()) {
+                long[] values = entry.getValue();
+                if (!skipZero || values[0] != 0 || values[1] != 0) {
+                    rows.add(new Object[] { entry.getKey(), values[0], values[1] });
+                }
+            }
+            return rows;
+        }
+    }
+}
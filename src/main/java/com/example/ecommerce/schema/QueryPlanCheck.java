@@ -0,0 +1,258 @@
+package com.example.ecommerce.schema;
+
+import com.example.ecommerce.config.SqlStatementInspector;
+import com.example.ecommerce.search.SearchBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.repository.Repository;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Startup check that every query declared in our repositories can use an index.
+// Each query method is invoked once with placeholder arguments while SqlStatementInspector
+// captures the SQL (and rewrites it so no rows are read); the captured statements are run through
+// EXPLAIN QUERY PLAN and any full table scan is reported. Substring searches and whole-table
+// reports cannot avoid a scan and are listed in EXPECTED_SCANS. Queries on the FTS5 tables are
+// only checked while app.search.backend=fts5, the only time those tables exist.
+//
+// app.schema.plan-check: warn (log the scans), fail (refuse to start) or off.
+@Component
+public class QueryPlanCheck {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryPlanCheck.class);
+
+    private static final String REPOSITORY_PACKAGE = "com.example.ecommerce.repository";
+
+    private static final Set<String> EXPECTED_SCANS = Set.of(
+            "ProductRepository.findByNameContainingIgnoreCase",
+            "ProductRepository.findByNameContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc",
+            "ProductRepository.searchProducts",
+            "ProductRepository.findProductsInStock",
+            "ProductRepository.findDistinctCategories",
+            "ProductRepository.findDistinctBrands",
+            "CustomerRepository.findByFirstNameContainingIgnoreCase",
+            "CustomerRepository.findByLastNameContainingIgnoreCase",
+            "CustomerRepository.findByFullNameContainingIgnoreCase",
+            "CustomerRepository.findByAddressContainingIgnoreCase",
+            "CustomerRepository.findCustomersWithOrders",
+            "CustomerRepository.findCustomersWithoutOrders",
+            "OrderRepository.findByTotalAmountBetween",
+            "OrderRepository.findByTotalAmountGreaterThanEqual",
+            "OrderRepository.findByShippingAddressContainingIgnoreCase"
+    );
+
+    private static final Set<String> FTS5_QUERIES = Set.of(
+            "ProductRepository.searchProductsFullText",
+            "ProductRepository.countProductsFullText",
+            "ProductRepository.searchProductsFullTextAfter",
+            "CustomerRepository.searchCustomersFullText"
+    );
+
+    private static final Pattern VIRTUAL_TABLE_LOOKUP = Pattern.compile(" VIRTUAL TABLE INDEX \\d+:\\S");
+
+    private final ApplicationContext applicationContext;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final String mode;
+    private final boolean fts5;
+
+    @Autowired
+    public QueryPlanCheck(ApplicationContext applicationContext,
+                          JdbcTemplate jdbcTemplate,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.schema.plan-check:warn}") String mode,
+                          @Value("${app.search.backend:index}") String searchBackend) {
+        this.applicationContext = applicationContext;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.mode = mode.trim().toLowerCase(Locale.ROOT);
+        this.fts5 = SearchBackend.fromProperty(searchBackend) == SearchBackend.FTS5;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void checkOnStartup() {
+        if ("off".equals(mode)) {
+            return;
+        }
+        Map<String, List<String>> scans = findUnexpectedScans();
+        if (scans.isEmpty()) {
+            log.info("Query plan check: every repository query uses an index or an expected scan");
+            return;
+        }
+        StringBuilder report = new StringBuilder("Repository queries doing full table scans:");
+        scans.forEach((query, details) -> report.append("\n  ").append(query).append(": ").append(details));
+        if ("fail".equals(mode)) {
+            throw new IllegalStateException(report.toString());
+        }
+        log.warn(report.toString());
+    }
+
+    // Query method (Repository.method) -> scan details from its query plans
+    public Map<String, List<String>> findUnexpectedScans() {
+        Map<String, List<String>> scans = new TreeMap<>();
+        for (Class<?> repository : repositoryInterfaces()) {
+            Object bean = applicationContext.getBean(repository);
+            Method[] methods = repository.getDeclaredMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::getName));
+            for (Method method : methods) {
+                String name = repository.getSimpleName() + "." + method.getName();
+                if (EXPECTED_SCANS.contains(name) || (!fts5 && FTS5_QUERIES.contains(name)) || !isQuery(method)) {
+                    continue;
+                }
+                List<String> details = new ArrayList<>();
+                for (String sql : capture(bean, method)) {
+                    details.addAll(fullScans(sql));
+                }
+                if (!details.isEmpty()) {
+                    scans.merge(name, details, (a, b) -> { a.addAll(b); return a; });
+                }
+            }
+        }
+        return scans;
+    }
+
+    private List<Class<?>> repositoryInterfaces() {
+        List<Class<?>> interfaces = new ArrayList<>();
+        for (Object bean : applicationContext.getBeansOfType(Repository.class).values()) {
+            for (Class<?> type : bean.getClass().getInterfaces()) {
+                if (type.getPackageName().equals(REPOSITORY_PACKAGE)) {
+                    interfaces.add(type);
+                }
+            }
+        }
+        interfaces.sort(Comparator.comparing(Class::getSimpleName));
+        return interfaces;
+    }
+
+    private static boolean isQuery(Method method) {
+        return !method.isDefault() && !Modifier.isStatic(method.getModifiers())
+                && !method.isAnnotationPresent(Modifying.class)
+                && !method.getName().startsWith("delete") && !method.getName().startsWith("remove");
+    }
+
+    // Invoke the method with placeholder arguments and return the SQL it issued
+    private List<String> capture(Object repository, Method method) {
+        Object[] arguments = placeholders(method);
+        if (arguments == null) {
+            log.debug("Query plan check skips {}: unsupported parameter types", method);
+            return List.of();
+        }
+        SqlStatementInspector.startCapture();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                status.setRollbackOnly();
+                try {
+                    Object result = method.invoke(repository, arguments);
+                    if (result instanceof Stream) {
+                        ((Stream<?>) result).close();
+                    }
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e.getCause() != null ? e.getCause() : e);
+                }
+            });
+        } catch (RuntimeException e) {
+            // A query that cannot run cannot be explained either
+            log.debug("Query plan check skips {}: {}", method, e.getMessage());
+            SqlStatementInspector.stopCapture();
+            return List.of();
+        }
+        return SqlStatementInspector.stopCapture();
+    }
+
+    // Plain "SCAN <table>" is a full table scan; "SCAN ... USING [COVERING] INDEX" walks an index.
+    // A virtual table reports the plan its module chose as "VIRTUAL TABLE INDEX <n>:<constraints>";
+    // for FTS5 a non-empty constraint string (e.g. "M" for MATCH) is an index lookup, "0:" a scan.
+    private List<String> fullScans(String sql) {
+        List<String> scans = new ArrayList<>();
+        jdbcTemplate.query("EXPLAIN QUERY PLAN " + sql, rs -> {
+            String detail = rs.getString("detail");
+            if (detail.startsWith("SCAN ") && !detail.contains(" USING ")
+                    && !VIRTUAL_TABLE_LOOKUP.matcher(detail).find()
+                    && !detail.startsWith("SCAN (") && !detail.startsWith("SCAN CONSTANT ROW")) {
+                scans.add(detail);
+            }
+        });
+        return scans;
+    }
+
+    private static Object[] placeholders(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Type[] generic = method.getGenericParameterTypes();
+        Object[] arguments = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (Collection.class.isAssignableFrom(types[i])) {
+                Type element = generic[i] instanceof ParameterizedType
+                        ? ((ParameterizedType) generic[i]).getActualTypeArguments()[0] : null;
+                Object value = element instanceof Class ? placeholder((Class<?>) element) : null;
+                arguments[i] = value != null ? List.of(value) : null;
+            } else {
+                arguments[i] = placeholder(types[i]);
+            }
+            if (arguments[i] == null) {
+                return null;
+            }
+        }
+        return arguments;
+    }
+
+    private static Object placeholder(Class<?> type) {
+        if (type == Long.class || type == long.class) {
+            return 1L;
+        }
+        if (type == Integer.class || type == int.class) {
+            return 1;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return Boolean.TRUE;
+        }
+        if (type == String.class) {
+            return "x";
+        }
+        if (type == BigDecimal.class) {
+            return BigDecimal.ONE;
+        }
+        if (type == LocalDateTime.class) {
+            return LocalDateTime.now();
+        }
+        if (type == LocalDate.class) {
+            return LocalDate.now();
+        }
+        if (type == Pageable.class) {
+            return PageRequest.of(0, 20);
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0];
+        }
+        return null;
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.ecommerce.schema;
+
+import com.example.ecommerce.shard.Shards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// Versioned schema changes that ddl-auto=update cannot express, mainly secondary indexes:
+// Hibernate only creates primary keys and unique constraints. Runs after Hibernate has created
+// or updated the tables; every migration runs once, in its own transaction, and is recorded in
+// schema_migrations. Append new migrations with the next version number, never edit applied ones.
+// With app.sharding.shards > 1 every shard is migrated, each keeping its own schema_migrations.
+@Component
+@DependsOn({"entityManagerFactory", "shardSchema"})
+public class SchemaMigrations {
+
+    private static final Logger log = LoggerFactory.getLogger(SchemaMigrations.class);
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Orders by customer, newest first",
+                    "CREATE INDEX IF NOT EXISTS idx_orders_customer_date ON orders (customer_id, order_date DESC, id DESC)"),
+            new Migration(2, "Orders by status, newest first",
+                    "CREATE INDEX IF NOT EXISTS idx_orders_status_date ON orders (status, order_date DESC, id DESC)"),
+            new Migration(3, "Orders by date range",
+                    "CREATE INDEX IF NOT EXISTS idx_orders_date ON orders (order_date, id)"),
+            // Derived IgnoreCase queries compare upper(column) = upper(?), so the index is on upper()
+            new Migration(4, "Case-insensitive product category and brand lookups",
+                    "CREATE INDEX IF NOT EXISTS idx_products_category_ci ON products (upper(category), id)",
+                    "CREATE INDEX IF NOT EXISTS idx_products_brand_ci ON products (upper(brand), id)"),
+            new Migration(5, "Products by price range",
+                    "CREATE INDEX IF NOT EXISTS idx_products_price ON products (price, id)"),
+            new Migration(6, "Active and out-of-stock products",
+                    "CREATE INDEX IF NOT EXISTS idx_products_active ON products (is_active, id)",
+                    "CREATE INDEX IF NOT EXISTS idx_products_stock ON products (stock_quantity, id)"),
+            new Migration(7, "Customers by phone",
+                    "CREATE INDEX IF NOT EXISTS idx_customers_phone ON customers (phone)"),
+            new Migration(8, "Expired stock reservation sweep",
+                    "CREATE INDEX IF NOT EXISTS idx_stock_reservations_status_expiry ON stock_reservations (status, expires_at)"),
+            // AUTOINCREMENT so a sequence number is never handed out twice, even after pruning
+            new Migration(9, "Change log",
+                    "CREATE TABLE IF NOT EXISTS change_log (seq INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            "entity TEXT NOT NULL, entity_id INTEGER NOT NULL, change_type TEXT NOT NULL, " +
+                            "changed_at INTEGER NOT NULL)"),
+            // Registry of the monthly archive tables with running sales totals, kept by OrderArchive
+            new Migration(10, "Order archive partitions",
+                    "CREATE TABLE IF NOT EXISTS order_archive_partitions (month TEXT PRIMARY KEY, " +
+                            "table_name TEXT NOT NULL, order_count INTEGER NOT NULL DEFAULT 0, " +
+                            "sales_count INTEGER NOT NULL DEFAULT 0, sales_cents INTEGER NOT NULL DEFAULT 0)"),
+            // Customers a shard holds although their ids name another one, kept by ShardRebalancer
+            new Migration(11, "Customers moved between shards",
+                    "CREATE TABLE IF NOT EXISTS shard_moved_customers (customer_id INTEGER PRIMARY KEY)"),
+            // Responses kept for Idempotency-Key replays, see IdempotencyStore
+            new Migration(12, "Idempotency keys",
+                    "CREATE TABLE IF NOT EXISTS idempotency_keys (idempotency_key TEXT PRIMARY KEY, " +
+                            "fingerprint BLOB NOT NULL, status INTEGER NOT NULL, content_type TEXT, " +
+                            "body BLOB NOT NULL, expires_at INTEGER NOT NULL)",
+                    "CREATE INDEX IF NOT EXISTS idx_idempotency_keys_expiry ON idempotency_keys (expires_at)"),
+            // @Column(unique = true) never became an index in SQLite, so email lookups scanned the
+            // table and duplicates could slip in; those have to be resolved by hand first
+            new Migration(13, "Unique customer email",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS idx_customers_email ON customers (email)")
+                    .requireNone("SELECT email FROM customers WHERE email IS NOT NULL " +
+                                    "GROUP BY email HAVING COUNT(*) > 1 ORDER BY email LIMIT 10",
+                            "Customers share an email address, merge or change them before starting"),
+            // Kept by SalesRollups, which backfills them from the orders when they are empty
+            new Migration(14, "Sales rollups",
+                    "CREATE TABLE IF NOT EXISTS sales_daily (day TEXT PRIMARY KEY, " +
+                            "order_count INTEGER NOT NULL DEFAULT 0, revenue_cents INTEGER NOT NULL DEFAULT 0) WITHOUT ROWID",
+                    "CREATE TABLE IF NOT EXISTS sales_monthly (month TEXT PRIMARY KEY, " +
+                            "order_count INTEGER NOT NULL DEFAULT 0, revenue_cents INTEGER NOT NULL DEFAULT 0) WITHOUT ROWID",
+                    "CREATE TABLE IF NOT EXISTS order_status_counts (status TEXT PRIMARY KEY, " +
+                            "order_count INTEGER NOT NULL DEFAULT 0) WITHOUT ROWID",
+                    "CREATE TABLE IF NOT EXISTS customer_spend (customer_id INTEGER PRIMARY KEY, " +
+                            "order_count INTEGER NOT NULL DEFAULT 0, total_spent_cents INTEGER NOT NULL DEFAULT 0)",
+                    "CREATE INDEX IF NOT EXISTS idx_customer_spend_total ON customer_spend (total_spent_cents)",
+                    "CREATE INDEX IF NOT EXISTS idx_customer_spend_orders ON customer_spend (order_count)"),
+            // Tables created before the dialect declared ids as plain "integer" have "id bigint integer",
+            // which is not a rowid alias: Hibernate read the generated id back from last_insert_rowid(),
+            // so references hold the rowid while the id column itself stayed NULL
+            new Migration(15, "Identity columns as rowid aliases", SchemaMigrations::rebuildBigintIdentityTables)
+    );
+
+    private static final Pattern BIGINT_IDENTITY = Pattern.compile("\\bid\\s+bigint\\s+integer\\b", Pattern.CASE_INSENSITIVE);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Shards shards;
+
+    @Autowired
+    public SchemaMigrations(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.shards = shards;
+    }
+
+    @PostConstruct
+    public void migrate() {
+        shards.forEachShard(this::migrateShard);
+    }
+
+    private void migrateShard(int shard) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS schema_migrations (" +
+                "version INTEGER PRIMARY KEY, description TEXT NOT NULL, applied_at INTEGER NOT NULL)");
+        Set<Integer> applied = new HashSet<>(
+                jdbcTemplate.queryForList("SELECT version FROM schema_migrations", Integer.class));
+
+        int count = 0;
+        for (Migration migration : MIGRATIONS) {
+            if (applied.contains(migration.version)) {
+                continue;
+            }
+            if (migration.guard != null) {
+                List<String> offending = jdbcTemplate.queryForList(migration.guard, String.class);
+                if (!offending.isEmpty()) {
+                    throw new IllegalStateException("Schema migration " + migration.version + " (" +
+                            migration.description + ") on shard " + shard + ": " + migration.guardMessage +
+                            ": " + offending);
+                }
+            }
+            long started = System.currentTimeMillis();
+            transactionTemplate.executeWithoutResult(status -> {
+                for (String statement : migration.statements) {
+                    jdbcTemplate.execute(statement);
+                }
+                if (migration.step != null) {
+                    migration.step.accept(jdbcTemplate);
+                }
+                jdbcTemplate.update("INSERT INTO schema_migrations (version, description, applied_at) VALUES (?, ?, ?)",
+                        migration.version, migration.description, System.currentTimeMillis());
+            });
+            log.info("Applied schema migration {} ({}) on shard {} in {} ms",
+                    migration.version, migration.description, shard, System.currentTimeMillis() - started);
+            count++;
+        }
+        if (count > 0) {
+            // Let the planner gather statistics for the new indexes
+            jdbcTemplate.execute("PRAGMA optimize");
+        }
+    }
+
+    // SQLite cannot change a column's type, so each affected table is copied into a new one with the id
+    // taken from the rowid, then its indexes and triggers (dropped with the old table) are recreated
+    static void rebuildBigintIdentityTables(JdbcTemplate jdbcTemplate) {
+        List<Map<String, Object>> tables = jdbcTemplate.queryForList(
+                "SELECT name, sql FROM sqlite_master WHERE type = 'table' AND sql IS NOT NULL");
+        for (Map<String, Object> table : tables) {
+            String name = (String) table.get("name");
+            String sql = (String) table.get("sql");
+            if (!BIGINT_IDENTITY.matcher(sql).find()) {
+                continue;
+            }
+            String rebuilt = name + "_rebuilt";
+            int open = sql.indexOf('(');
+            List<String> columns = jdbcTemplate.queryForList(
+                    "SELECT name FROM pragma_table_info(?) ORDER BY cid", String.class, name);
+            List<String> values = new ArrayList<>();
+            for (String column : columns) {
+                values.add(column.equalsIgnoreCase("id") ? "COALESCE(id, rowid)" : column);
+            }
+            List<String> dependents = jdbcTemplate.queryForList(
+                    "SELECT sql FROM sqlite_master WHERE tbl_name = ? AND type IN ('index', 'trigger') AND sql IS NOT NULL",
+                    String.class, name);
+
+            jdbcTemplate.execute("CREATE TABLE " + rebuilt + " " +
+                    BIGINT_IDENTITY.matcher(sql.substring(open)).replaceFirst("id integer"));
+            int rows = jdbcTemplate.update("INSERT INTO " + rebuilt + " (" + String.join(", ", columns) + ") " +
+                    "SELECT " + String.join(", ", values) + " FROM " + name);
+            jdbcTemplate.execute("DROP TABLE " + name);
+            jdbcTemplate.execute("ALTER TABLE " + rebuilt + " RENAME TO " + name);
+            for (String statement : dependents) {
+                jdbcTemplate.execute(statement);
+            }
+            // An FTS5 index over the table points at the old, NULL ids
+            String ftsTable = name + "_fts";
+            Integer fts = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = ?", Integer.class, ftsTable);
+            if (fts != null && fts > 0) {
+                jdbcTemplate.execute("INSERT INTO " + ftsTable + "(" + ftsTable + ") VALUES ('rebuild')");
+            }
+            log.info("Rebuilt table {} with a rowid id column ({} rows)", name, rows);
+        }
+    }
+
+    private static final class Migration {
+        private final int version;
+        private final String description;
+        private final String[] statements;
+        private final Consumer<JdbcTemplate> step;
+        private String guard;
+        private String guardMessage;
+
+        Migration(int version, String description, String... statements) {
+            this.version = version;
+            this.description = description;
+            this.statements = statements;
+            this.step = null;
+        }
+
+        // A change that depends on what the shard's schema looks like, run in the migration's transaction
+        Migration(int version, String description, Consumer<JdbcTemplate> step) {
+            this.version = version;
+            this.description = description;
+            this.statements = new String[0];
+            this.step = step;
+        }
+
+        // The migration refuses to run while the query finds rows, naming them in the error
+        Migration requireNone(String query, String message) {
+            this.guard = query;
+            this.guardMessage = message;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.ecommerce.search;
+
+import java.util.List;
+
+// Builds FTS5 MATCH expressions from free text typed by users
+public final class FullTextQuery {
+
+    private FullTextQuery() {}
+
+    // Every term must match as a prefix, e.g. "mac pro" -> "mac"* "pro"*.
+    // Terms are quoted so FTS5 operators in user input are treated as plain text.
+    // Returns null when the text contains no searchable terms.
+    public static String toMatchExpression(String text) {
+        List<String> tokens = ProductSearchIndex.tokenize(text);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        StringBuilder expression = new StringBuilder();
+        for (String token : tokens) {
+            if (expression.length() > 0) {
+                expression.append(' ');
+            }
+            expression.append('"').append(token.replace("\"", "\"\"")).append("\"*");
+        }
+        return expression.toString();
+    }
+
+    // Same as above, restricted to the given FTS5 columns
+    public static String toMatchExpression(String text, String... columns) {
+        String expression = toMatchExpression(text);
+        if (expression == null || columns.length == 0) {
+            return expression;
+        }
+        return "{" + String.join(" ", columns) + "} : (" + expression + ")";
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.ecommerce.search;
+
+import com.example.ecommerce.entity.Product;
+import com.example.ecommerce.event.ChangeType;
+import com.example.ecommerce.event.ProductChangedEvent;
+import com.example.ecommerce.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// In-process inverted index over products with BM25 ranking and prefix matching.
+// Built from the database on startup and kept current from ProductChangedEvents after commit.
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // A hit in the name counts for more than one in the description
+    private static final int NAME_WEIGHT = 3;
+    private static final int BRAND_WEIGHT = 2;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int DESCRIPTION_WEIGHT = 1;
+
+    // Prefix matches are capped so a one-letter query cannot walk the whole dictionary
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final double PREFIX_DISCOUNT = 0.5;
+
+    private static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guarded by lock
+    private IndexData data = new IndexData();
+    private List<Change> changesDuringRebuild;
+
+    private volatile boolean ready;
+
+    @Autowired
+    public ProductSearchIndex(ProductRepository productRepository,
+                              @Value("${app.search.backend:index}") String searchBackend) {
+        this.productRepository = productRepository;
+        this.enabled = SearchBackend.fromProperty(searchBackend) == SearchBackend.INDEX;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return data.documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lower-cased letter/digit runs; shared with the other search backends so they agree on terms
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    // Rebuild the whole index from the database without blocking searches.
+    // Changes committed while the rebuild runs are replayed onto the new index before it is swapped in.
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        IndexData fresh = new IndexData();
+        try {
+            long afterId = 0;
+            List<Product> batch;
+            do {
+                batch = productRepository.findByIdGreaterThanOrderByIdAsc(afterId, PageRequest.of(0, REBUILD_BATCH_SIZE));
+                for (Product product : batch) {
+                    fresh.put(product.getId(), Document.of(product));
+                    afterId = product.getId();
+                }
+            } while (batch.size() == REBUILD_BATCH_SIZE);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.error("Product search index rebuild failed, keeping the previous index", e);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Change change : changesDuringRebuild) {
+                change.applyTo(fresh);
+            }
+            changesDuringRebuild = null;
+            data = fresh;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product search index rebuilt: {} products, {} terms in {} ms",
+                fresh.documents.size(), fresh.postings.size(), System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        // Stock-only changes do not touch any indexed text
+        if (!enabled || (event.getType() != ChangeType.DELETED && event.getProduct() == null)) {
+            return;
+        }
+        Change change = new Change(event.getProductId(),
+                event.getType() == ChangeType.DELETED ? null : Document.of(event.getProduct()));
+        lock.writeLock().lock();
+        try {
+            change.applyTo(data);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Every query term must match (exactly or as a prefix) somewhere in the product.
+    // Returns the ids in [offset, offset + limit) of the ranking, best first.
+    public SearchHits search(String query, int offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty()) {
+            return new SearchHits(new ArrayList<>(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            for (String term : terms) {
+                Map<Long, Double> termScores = scoreTerm(data, term);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    Map<Long, Double> combined = new HashMap<>();
+                    for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                        Double termScore = termScores.get(entry.getKey());
+                        if (termScore != null) {
+                            combined.put(entry.getKey(), entry.getValue() + termScore);
+                        }
+                    }
+                    scores = combined;
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+            return new SearchHits(topIds(scores, offset, limit), scores.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> scoreTerm(IndexData index, String term) {
+        Map<Long, Double> scores = new HashMap<>();
+        int documentCount = index.documents.size();
+        if (documentCount == 0) {
+            return scores;
+        }
+        double averageLength = (double) index.totalLength / documentCount;
+
+        Map<Long, Integer> exact = index.postings.get(term);
+        if (exact != null) {
+            accumulate(scores, index, exact, documentCount, averageLength, 1.0);
+        }
+        NavigableMap<String, Map<Long, Integer>> prefixed =
+                index.postings.subMap(term, false, term + Character.MAX_VALUE, false);
+        int expansions = 0;
+        for (Map<Long, Integer> postings : prefixed.values()) {
+            if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            accumulate(scores, index, postings, documentCount, averageLength, PREFIX_DISCOUNT);
+        }
+        return scores;
+    }
+
+    private void accumulate(Map<Long, Double> scores, IndexData index, Map<Long, Integer> postings,
+                            int documentCount, double averageLength, double factor) {
+        double idf = Math.log(1 + (documentCount - postings.size() + 0.5) / (postings.size() + 0.5));
+        for (Map.Entry<Long, Integer> posting : postings.entrySet()) {
+            int termFrequency = posting.getValue();
+            int length = index.documents.get(posting.getKey()).length;
+            double norm = K1 * (1 - B + B * length / averageLength);
+            double score = factor * idf * termFrequency * (K1 + 1) / (termFrequency + norm);
+            // A term contributes its best match (exact or prefix) once per product
+            scores.merge(posting.getKey(), score, Math::max);
+        }
+    }
+
+    private static List<Long> topIds(Map<Long, Double> scores, int offset, int limit) {
+        Comparator<Map.Entry<Long, Double>> ranking = Map.Entry.<Long, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+        List<Long> ids = new ArrayList<>();
+        long wanted = Math.min((long) offset + limit, scores.size());
+        if (offset >= wanted) {
+            return ids;
+        }
+
+        // Bounded heap holding the best "wanted" entries, worst on top
+        PriorityQueue<Map.Entry<Long, Double>> heap = new PriorityQueue<>((int) wanted + 1, ranking.reversed());
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            heap.offer(entry);
+            if (heap.size() > wanted) {
+                heap.poll();
+            }
+        }
+        List<Map.Entry<Long, Double>> best = new ArrayList<>(heap);
+        best.sort(ranking);
+        for (int i = offset; i < best.size(); i++) {
+            ids.add(best.get(i).getKey());
+        }
+        return ids;
+    }
+
+    // Weighted term frequencies of one product
+    private static final class Document {
+        final Map<String, Integer> terms = new HashMap<>();
+        int length;
+
+        static Document of(Product product) {
+            Document document = new Document();
+            document.add(product.getName(), NAME_WEIGHT);
+            document.add(product.getBrand(), BRAND_WEIGHT);
+            document.add(product.getCategory(), CATEGORY_WEIGHT);
+            document.add(product.getDescription(), DESCRIPTION_WEIGHT);
+            return document;
+        }
+
+        private void add(String text, int weight) {
+            for (String token : tokenize(text)) {
+                terms.merge(token, weight, Integer::sum);
+                length += weight;
+            }
+        }
+    }
+
+    private static final class IndexData {
+        final TreeMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+        final Map<Long, Document> documents = new HashMap<>();
+        long totalLength;
+
+        void put(Long id, Document document) {
+            remove(id);
+            documents.put(id, document);
+            totalLength += document.length;
+            for (Map.Entry<String, Integer> term : document.terms.entrySet()) {
+                postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(id, term.getValue());
+            }
+        }
+
+        void remove(Long id) {
+            Document old = documents.remove(id);
+            if (old == null) {
+                return;
+            }
+            totalLength -= old.length;
+            for (String term : old.terms.keySet()) {
+                Map<Long, Integer> termPostings = postings.get(term);
+                if (termPostings != null) {
+                    termPostings.remove(id);
+                    if (termPostings.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+        }
+    }
+
+    // A committed change, replayable onto an index being rebuilt
+    private static final class Change {
+        final Long productId;
+        final Document document;
+
+        Change(Long productId, Document document) {
+            this.productId = productId;
+            this.document = document;
+        }
+
+        void applyTo(IndexData index) {
+            if (document == null) {
+                index.remove(productId);
+            } else {
+                index.put(productId, document);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.ecommerce.search;
+
+import java.util.Locale;
+
+// Which engine answers product and customer text searches (app.search.backend)
+public enum SearchBackend {
+    // Plain LIKE predicates, always correct but scans the table
+    LIKE,
+    // ProductSearchIndex in the application heap
+    INDEX,
+    // SQLite FTS5 shadow tables kept in sync by triggers
+    FTS5;
+
+    public static SearchBackend fromProperty(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown app.search.backend: " + value);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.ecommerce.search;
+
+import java.util.List;
+
+// Ids of the requested slice of ranked matches, plus the total number of matches
+public class SearchHits {
+
+    private final List<Long> ids;
+    private final int total;
+
+    public SearchHits(List<Long> ids, int total) {
+        this.ids = ids;
+        this.total = total;
+    }
+
+    public List<Long> getIds() { return ids; }
+
+    public int getTotal() { return total; }
+}
@@ -0,0 +1,392 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.BulkImportResult;
+import com.example.ecommerce.dto.BulkImportResult.RowResult;
+import com.example.ecommerce.dto.OrderImportRequest;
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.entity.OrderStatus;
+import com.example.ecommerce.entity.Product;
+import com.example.ecommerce.event.CustomerChangedEvent;
+import com.example.ecommerce.event.OrderChangedEvent;
+import com.example.ecommerce.event.OrderSnapshot;
+import com.example.ecommerce.event.ProductChangedEvent;
+import com.example.ecommerce.repository.CustomerRepository;
+import com.example.ecommerce.shard.Shards;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// Bulk imports that bypass the per-row JPA save path. Rows are validated up front, then written
+// with JDBC batch statements, one transaction per chunk, so a bad chunk never rolls back the
+// chunks already written. Every input row gets its own result entry. Customers and orders are
+// written to the shard they belong on, products to shard 0.
+@Service
+public class BulkImportService {
+
+    public static final int MAX_ROWS = 50000;
+    private static final int CHUNK_SIZE = 1000;
+    private static final int LOOKUP_BATCH_SIZE = 500;
+
+    private static final String INSERT_PRODUCT =
+            "INSERT INTO products (name, description, price, stock_quantity, category, brand, is_active, " +
+            "version, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, 0, ?, ?)";
+    private static final String UPDATE_PRODUCT =
+            "UPDATE products SET name = ?, description = ?, price = ?, stock_quantity = ?, category = ?, " +
+            "brand = ?, is_active = ?, updated_at = ?, version = version + 1 WHERE id = ?";
+    private static final String INSERT_CUSTOMER =
+            "INSERT INTO customers (first_name, last_name, email, phone, address, version, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, 0, ?, ?)";
+    private static final String INSERT_ORDER =
+            "INSERT INTO orders (customer_id, order_date, status, total_amount, shipping_address, version, " +
+            "created_at, updated_at) VALUES (?, ?, ?, ?, ?, 0, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final Validator validator;
+    private final CustomerRepository customerRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Shards shards;
+
+    @Autowired
+    public BulkImportService(JdbcTemplate jdbcTemplate,
+                             Validator validator,
+                             CustomerRepository customerRepository,
+                             ApplicationEventPublisher eventPublisher,
+                             Shards shards) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.validator = validator;
+        this.customerRepository = customerRepository;
+        this.eventPublisher = eventPublisher;
+        this.shards = shards;
+    }
+
+    // Create products without an id, update products that carry one
+    public BulkImportResult importProducts(List<Product> products) {
+        checkSize(products);
+        RowResult[] results = new RowResult[products.size()];
+        List<Integer> inserts = new ArrayList<>();
+        List<Integer> updates = new ArrayList<>();
+        Set<Long> seenIds = new HashSet<>();
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            List<String> errors = validate(product);
+            if (errors.isEmpty() && product.getId() != null && !seenIds.add(product.getId())) {
+                errors.add("Duplicate product id in request: " + product.getId());
+            }
+            if (!errors.isEmpty()) {
+                results[i] = RowResult.failed(i, errors);
+            } else if (product.getId() == null) {
+                inserts.add(i);
+            } else {
+                updates.add(i);
+            }
+        }
+
+        writeInChunks(0, inserts, results, chunk -> insertProducts(products, chunk));
+        writeInChunks(0, updates, results, chunk -> updateProducts(products, chunk));
+        return new BulkImportResult(Arrays.asList(results));
+    }
+
+    // Create customers; emails must be unique within the request and against stored customers
+    public BulkImportResult importCustomers(List<Customer> customers) {
+        checkSize(customers);
+        RowResult[] results = new RowResult[customers.size()];
+        Set<String> emails = emailsOf(customers);
+        Set<String> existingEmails = new HashSet<>(shards.gather(() -> lookup(emails, customerRepository::findExistingEmails)));
+        Set<String> seenEmails = new HashSet<>();
+        List<Integer> inserts = new ArrayList<>();
+        for (int i = 0; i < customers.size(); i++) {
+            Customer customer = customers.get(i);
+            List<String> errors = validate(customer);
+            if (errors.isEmpty()) {
+                if (existingEmails.contains(customer.getEmail())) {
+                    errors.add("Customer with email " + customer.getEmail() + " already exists");
+                } else if (!seenEmails.add(customer.getEmail())) {
+                    errors.add("Duplicate email in request: " + customer.getEmail());
+                }
+            }
+            if (errors.isEmpty()) {
+                inserts.add(i);
+            } else {
+                results[i] = RowResult.failed(i, errors);
+            }
+        }
+
+        shards.groupByShard(inserts, index -> shards.shardForNewCustomer(customers.get(index).getEmail()))
+                .forEach((shard, indexes) -> writeInChunks(shard, indexes, results, chunk -> insertCustomers(customers, chunk)));
+        return new BulkImportResult(Arrays.asList(results));
+    }
+
+    // Create orders for existing customers
+    public BulkImportResult importOrders(List<OrderImportRequest> orders) {
+        checkSize(orders);
+        RowResult[] results = new RowResult[orders.size()];
+        Set<Long> customerIds = new HashSet<>();
+        for (OrderImportRequest order : orders) {
+            if (order != null && order.getCustomerId() != null) {
+                customerIds.add(order.getCustomerId());
+            }
+        }
+        Map<Integer, List<Long>> idsByShard = shards.groupByShard(customerIds, shards::shardOfCustomer);
+        Set<Long> existingCustomers = new HashSet<>();
+        idsByShard.forEach((shard, ids) -> existingCustomers.addAll(
+                shards.read(shard, () -> lookup(new HashSet<>(ids), customerRepository::findExistingIds))));
+        List<Integer> inserts = new ArrayList<>();
+        for (int i = 0; i < orders.size(); i++) {
+            OrderImportRequest order = orders.get(i);
+            List<String> errors = validate(order);
+            if (errors.isEmpty() && !existingCustomers.contains(order.getCustomerId())) {
+                errors.add("Customer not found with id: " + order.getCustomerId());
+            }
+            if (errors.isEmpty()) {
+                inserts.add(i);
+            } else {
+                results[i] = RowResult.failed(i, errors);
+            }
+        }
+
+        shards.groupByShard(inserts, index -> shards.shardOfCustomer(orders.get(index).getCustomerId()))
+                .forEach((shard, indexes) -> writeInChunks(shard, indexes, results, chunk -> insertOrders(orders, chunk)));
+        return new BulkImportResult(Arrays.asList(results));
+    }
+
+    private void checkSize(List<?> rows) {
+        if (rows == null || rows.isEmpty()) {
+            throw new IllegalArgumentException("At least one row is required");
+        }
+        if (rows.size() > MAX_ROWS) {
+            throw new IllegalArgumentException("A bulk request may contain at most " + MAX_ROWS + " rows");
+        }
+    }
+
+    private List<String> validate(Object row) {
+        List<String> errors = new ArrayList<>();
+        if (row == null) {
+            errors.add("Row is empty");
+            return errors;
+        }
+        for (ConstraintViolation<Object> violation : validator.validate(row)) {
+            errors.add(violation.getMessage());
+        }
+        Collections.sort(errors);
+        return errors;
+    }
+
+    // Run each chunk in its own transaction on the shard; a failing chunk marks all of its rows failed
+    private void writeInChunks(int shard, List<Integer> indexes, RowResult[] results,
+                               Function<List<Integer>, List<RowResult>> writer) {
+        for (int start = 0; start < indexes.size(); start += CHUNK_SIZE) {
+            List<Integer> chunk = indexes.subList(start, Math.min(start + CHUNK_SIZE, indexes.size()));
+            try {
+                List<RowResult> written = shards.write(shard, () -> writer.apply(chunk));
+                for (RowResult row : written) {
+                    results[row.getIndex()] = row;
+                }
+            } catch (DataAccessException | IllegalStateException e) {
+                List<String> errors = Collections.singletonList("Chunk rolled back: " + e.getMessage());
+                for (Integer index : chunk) {
+                    results[index] = RowResult.failed(index, errors);
+                }
+            }
+        }
+    }
+
+    private List<RowResult> insertProducts(List<Product> products, List<Integer> chunk) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp timestamp = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate(INSERT_PRODUCT, chunk, chunk.size(), (ps, index) -> {
+            Product product = products.get(index);
+            ps.setString(1, product.getName());
+            ps.setString(2, product.getDescription());
+            ps.setBigDecimal(3, product.getPrice());
+            ps.setInt(4, product.getStockQuantity());
+            ps.setString(5, product.getCategory());
+            ps.setString(6, product.getBrand());
+            ps.setBoolean(7, product.getIsActive() == null || product.getIsActive());
+            ps.setTimestamp(8, timestamp);
+            ps.setTimestamp(9, timestamp);
+        });
+
+        long id = firstInsertedId("products", chunk.size());
+        List<RowResult> written = new ArrayList<>(chunk.size());
+        for (Integer index : chunk) {
+            Product product = products.get(index);
+            product.setId(id);
+            product.setIsActive(product.getIsActive() == null || product.getIsActive());
+            product.setVersion(0);
+            product.setCreatedAt(now);
+            product.setUpdatedAt(now);
+            eventPublisher.publishEvent(ProductChangedEvent.created(product));
+            written.add(RowResult.created(index, id++));
+        }
+        return written;
+    }
+
+    private List<RowResult> updateProducts(List<Product> products, List<Integer> chunk) {
+        List<Long> ids = new ArrayList<>(chunk.size());
+        for (Integer index : chunk) {
+            ids.add(products.get(index).getId());
+        }
+        // Previous category/brand drive cache and index invalidation
+        Map<Long, String[]> previous = new HashMap<>();
+        namedJdbcTemplate.query("SELECT id, category, brand FROM products WHERE id IN (:ids)",
+                Collections.singletonMap("ids", ids),
+                rs -> {
+                    previous.put(rs.getLong("id"), new String[] { rs.getString("category"), rs.getString("brand") });
+                });
+
+        List<RowResult> written = new ArrayList<>(chunk.size());
+        List<Integer> found = new ArrayList<>(chunk.size());
+        for (Integer index : chunk) {
+            Long id = products.get(index).getId();
+            if (previous.containsKey(id)) {
+                found.add(index);
+            } else {
+                written.add(RowResult.failed(index, Collections.singletonList("Product not found with id: " + id)));
+            }
+        }
+
+        if (found.isEmpty()) {
+            return written;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp timestamp = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate(UPDATE_PRODUCT, found, found.size(), (ps, index) -> {
+            Product product = products.get(index);
+            ps.setString(1, product.getName());
+            ps.setString(2, product.getDescription());
+            ps.setBigDecimal(3, product.getPrice());
+            ps.setInt(4, product.getStockQuantity());
+            ps.setString(5, product.getCategory());
+            ps.setString(6, product.getBrand());
+            ps.setBoolean(7, product.getIsActive() == null || product.getIsActive());
+            ps.setTimestamp(8, timestamp);
+            ps.setLong(9, product.getId());
+        });
+
+        for (Integer index : found) {
+            Product product = products.get(index);
+            product.setUpdatedAt(now);
+            String[] before = previous.get(product.getId());
+            eventPublisher.publishEvent(ProductChangedEvent.updated(product, before[0], before[1]));
+            written.add(RowResult.updated(index, product.getId()));
+        }
+        return written;
+    }
+
+    private List<RowResult> insertCustomers(List<Customer> customers, List<Integer> chunk) {
+        Timestamp timestamp = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.batchUpdate(INSERT_CUSTOMER, chunk, chunk.size(), (ps, index) -> {
+            Customer customer = customers.get(index);
+            ps.setString(1, customer.getFirstName());
+            ps.setString(2, customer.getLastName());
+            ps.setString(3, customer.getEmail());
+            ps.setString(4, customer.getPhone());
+            ps.setString(5, customer.getAddress());
+            ps.setTimestamp(6, timestamp);
+            ps.setTimestamp(7, timestamp);
+        });
+
+        long id = firstInsertedId("customers", chunk.size());
+        List<RowResult> written = new ArrayList<>(chunk.size());
+        for (Integer index : chunk) {
+            eventPublisher.publishEvent(CustomerChangedEvent.created(id));
+            written.add(RowResult.created(index, id++));
+        }
+        return written;
+    }
+
+    private List<RowResult> insertOrders(List<OrderImportRequest> orders, List<Integer> chunk) {
+        LocalDateTime now = LocalDateTime.now();
+        Timestamp timestamp = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate(INSERT_ORDER, chunk, chunk.size(), (ps, index) -> {
+            OrderImportRequest order = orders.get(index);
+            ps.setLong(1, order.getCustomerId());
+            ps.setTimestamp(2, Timestamp.valueOf(orderDateOf(order, now)));
+            ps.setString(3, statusOf(order).name());
+            ps.setBigDecimal(4, totalOf(order));
+            ps.setString(5, order.getShippingAddress());
+            ps.setTimestamp(6, timestamp);
+            ps.setTimestamp(7, timestamp);
+        });
+
+        long id = firstInsertedId("orders", chunk.size());
+        List<RowResult> written = new ArrayList<>(chunk.size());
+        for (Integer index : chunk) {
+            OrderImportRequest order = orders.get(index);
+            eventPublisher.publishEvent(OrderChangedEvent.created(new OrderSnapshot(
+                    id, order.getCustomerId(), orderDateOf(order, now), statusOf(order), totalOf(order))));
+            written.add(RowResult.created(index, id++));
+        }
+        return written;
+    }
+
+    private static LocalDateTime orderDateOf(OrderImportRequest order, LocalDateTime now) {
+        return order.getOrderDate() != null ? order.getOrderDate() : now;
+    }
+
+    private static OrderStatus statusOf(OrderImportRequest order) {
+        return order.getStatus() != null ? order.getStatus() : OrderStatus.PENDING;
+    }
+
+    private static BigDecimal totalOf(OrderImportRequest order) {
+        return order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO;
+    }
+
+    // SQLite gives every insert max(rowid) + 1 (the next sequence value on AUTOINCREMENT shard
+    // tables) and the chunk transaction holds the write lock
+    // from its first insert, so the n rows just written own the n ids ending at last_insert_rowid().
+    // This keeps IDENTITY ids (and the single-row JPA path) while still batching the inserts.
+    private long firstInsertedId(String table, int rows) {
+        Long last = jdbcTemplate.queryForObject("SELECT last_insert_rowid()", Long.class);
+        if (last == null) {
+            throw new IllegalStateException("Could not read ids of imported " + table);
+        }
+        long first = last - rows + 1;
+        Long count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM " + table + " WHERE id BETWEEN ? AND ?", Long.class, first, last);
+        if (count == null || count != rows) {
+            throw new IllegalStateException("Ids of imported " + table + " are not contiguous");
+        }
+        return first;
+    }
+
+    private static Set<String> emailsOf(List<Customer> customers) {
+        Set<String> emails = new HashSet<>();
+        for (Customer customer : customers) {
+            if (customer != null && customer.getEmail() != null) {
+                emails.add(customer.getEmail());
+            }
+        }
+        return emails;
+    }
+
+    // Run an IN lookup in slices so large requests stay under SQLite's bound parameter limit
+    private static <T> List<T> lookup(Set<T> keys, Function<List<T>, List<T>> query) {
+        List<T> all = new ArrayList<>(keys);
+        List<T> found = new ArrayList<>();
+        for (int start = 0; start < all.size(); start += LOOKUP_BATCH_SIZE) {
+            found.addAll(query.apply(all.subList(start, Math.min(start + LOOKUP_BATCH_SIZE, all.size()))));
+        }
+        return found;
+    }
+}
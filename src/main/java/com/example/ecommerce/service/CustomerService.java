@@ -1,60 +1,143 @@
 package com.example.ecommerce.service;
 
+import com.example.ecommerce.archive.OrderArchive;
+import com.example.ecommerce.config.RetryOnOptimisticLock;
+import com.example.ecommerce.dto.CursorPage;
+import com.example.ecommerce.dto.CustomerView;
+import com.example.ecommerce.dto.EntityVersion;
+import com.example.ecommerce.dto.PageCursor;
 import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.event.CustomerChangedEvent;
+import com.example.ecommerce.event.OrderChangedEvent;
+import com.example.ecommerce.event.OrderSnapshot;
 import com.example.ecommerce.repository.CustomerRepository;
+import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.search.FullTextQuery;
+import com.example.ecommerce.search.SearchBackend;
+import com.example.ecommerce.shard.Shards;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
+// With app.sharding.shards > 1 work on one customer is bound to that customer's shard (Shards.use)
+// and listings, searches and pages are gathered from every shard.
 @Service
 @Transactional
 public class CustomerService {
     
+    // Customers whose orders are fetched per IN query, well below SQLite's bound parameter limit
+    private static final int ORDER_FETCH_BATCH_SIZE = 1000;
+    
+    private static final Comparator<Customer> BY_ID = Comparator.comparing(Customer::getId);
+    
     private final CustomerRepository customerRepository;
+    private final OrderRepository orderRepository;
+    private final OrderArchive orderArchive;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SearchBackend searchBackend;
+    private final Shards shards;
     
     @Autowired
-    public CustomerService(CustomerRepository customerRepository) {
+    public CustomerService(CustomerRepository customerRepository,
+                           OrderRepository orderRepository,
+                           OrderArchive orderArchive,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${app.search.backend:index}") String searchBackend,
+                           Shards shards) {
         this.customerRepository = customerRepository;
+        this.orderRepository = orderRepository;
+        this.orderArchive = orderArchive;
+        this.eventPublisher = eventPublisher;
+        this.searchBackend = SearchBackend.fromProperty(searchBackend);
+        this.shards = shards;
     }
     
     // Create a new customer
     public Customer createCustomer(Customer customer) {
         // Check if email already exists
-        if (customerRepository.existsByEmail(customer.getEmail())) {
+        if (existsByEmail(customer.getEmail())) {
             throw new IllegalArgumentException("Customer with email " + customer.getEmail() + " already exists");
         }
-        return customerRepository.save(customer);
+        shards.use(shards.shardForNewCustomer(customer.getEmail()));
+        Customer savedCustomer = customerRepository.save(customer);
+        eventPublisher.publishEvent(CustomerChangedEvent.created(savedCustomer.getId()));
+        return savedCustomer;
     }
     
     // Get all customers
     @Transactional(readOnly = true)
     public List<Customer> getAllCustomers() {
-        return customerRepository.findAll();
+        return shards.gather(customerRepository::findAll);
+    }
+    
+    // Count all customers
+    @Transactional(readOnly = true)
+    public long countCustomers() {
+        return shards.sum(customerRepository::count);
     }
     
     // Get customer by ID
     @Transactional(readOnly = true)
     public Optional<Customer> getCustomerById(Long id) {
+        shards.use(shards.shardOfCustomer(id));
         return customerRepository.findById(id);
     }
     
+    // Version and last update of a customer, without loading it
+    @Transactional(readOnly = true)
+    public Optional<EntityVersion> getCustomerVersion(Long id) {
+        shards.use(shards.shardOfCustomer(id));
+        return customerRepository.findVersionById(id);
+    }
+    
+    // Get several customers in one query (one per shard when they are spread over several)
+    @Transactional(readOnly = true)
+    public List<Customer> getCustomersByIds(Collection<Long> ids) {
+        Map<Integer, List<Long>> idsByShard = shards.groupByShard(ids, shards::shardOfCustomer);
+        if (idsByShard.size() <= 1) {
+            for (Integer shard : idsByShard.keySet()) {
+                shards.use(shard);
+            }
+            return customerRepository.findAllById(ids);
+        }
+        List<Customer> customers = new ArrayList<>();
+        idsByShard.forEach((shard, shardIds) ->
+                customers.addAll(shards.read(shard, () -> customerRepository.findAllById(shardIds))));
+        return customers;
+    }
+    
     // Get customer by email
     @Transactional(readOnly = true)
     public Optional<Customer> getCustomerByEmail(String email) {
-        return customerRepository.findByEmail(email);
+        return shards.findFirst(() -> customerRepository.findByEmail(email));
     }
     
-    // Update customer
-    public Customer updateCustomer(Long id, Customer customerDetails) {
+    // Update customer; an expected version (from If-Match) refuses a customer changed since
+    @RetryOnOptimisticLock
+    public Customer updateCustomer(Long id, Customer customerDetails, Long expectedVersion) {
+        shards.use(shards.shardOfCustomer(id));
         Customer customer = customerRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Customer not found with id: " + id));
+        if (expectedVersion != null && customer.getVersion() != expectedVersion) {
+            throw new StaleVersionException("Customer", id, expectedVersion, customer.getVersion());
+        }
         
         // Check if email is being changed and if new email already exists
         if (!customer.getEmail().equals(customerDetails.getEmail()) && 
-            customerRepository.existsByEmail(customerDetails.getEmail())) {
+            existsByEmail(customerDetails.getEmail())) {
             throw new IllegalArgumentException("Customer with email " + customerDetails.getEmail() + " already exists");
         }
         
@@ -64,61 +147,177 @@ public class CustomerService {
         customer.setPhone(customerDetails.getPhone());
         customer.setAddress(customerDetails.getAddress());
         
-        return customerRepository.save(customer);
+        Customer savedCustomer = customerRepository.save(customer);
+        eventPublisher.publishEvent(CustomerChangedEvent.updated(id));
+        return savedCustomer;
     }
     
     // Delete customer
     public void deleteCustomer(Long id) {
+        shards.use(shards.shardOfCustomer(id));
         Customer customer = customerRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Customer not found with id: " + id));
+        // The cascade removes the customer's orders as well; archived ones are removed here
+        for (Order order : customer.getOrders()) {
+            eventPublisher.publishEvent(OrderChangedEvent.deleted(order));
+        }
+        for (OrderSnapshot archived : orderArchive.deleteCustomerOrders(id)) {
+            eventPublisher.publishEvent(OrderChangedEvent.deleted(archived));
+        }
         customerRepository.delete(customer);
+        eventPublisher.publishEvent(CustomerChangedEvent.deleted(id));
     }
     
     // Search customers by name
     @Transactional(readOnly = true)
     public List<Customer> searchCustomersByName(String name) {
-        return customerRepository.findByFullNameContainingIgnoreCase(name);
+        if (searchBackend == SearchBackend.FTS5) {
+            return searchFullText(FullTextQuery.toMatchExpression(name, "first_name", "last_name"));
+        }
+        return shards.gather(() -> customerRepository.findByFullNameContainingIgnoreCase(name));
     }
     
     // Search customers by first name
     @Transactional(readOnly = true)
     public List<Customer> searchCustomersByFirstName(String firstName) {
-        return customerRepository.findByFirstNameContainingIgnoreCase(firstName);
+        return shards.gather(() -> customerRepository.findByFirstNameContainingIgnoreCase(firstName));
     }
     
     // Search customers by last name
     @Transactional(readOnly = true)
     public List<Customer> searchCustomersByLastName(String lastName) {
-        return customerRepository.findByLastNameContainingIgnoreCase(lastName);
+        return shards.gather(() -> customerRepository.findByLastNameContainingIgnoreCase(lastName));
     }
     
     // Get customers with orders
     @Transactional(readOnly = true)
     public List<Customer> getCustomersWithOrders() {
-        return customerRepository.findCustomersWithOrders();
+        return shards.gather(customerRepository::findCustomersWithOrders);
     }
     
     // Get customers without orders
     @Transactional(readOnly = true)
     public List<Customer> getCustomersWithoutOrders() {
-        return customerRepository.findCustomersWithoutOrders();
+        return shards.gather(customerRepository::findCustomersWithoutOrders);
     }
     
     // Check if customer exists by email
     @Transactional(readOnly = true)
     public boolean existsByEmail(String email) {
-        return customerRepository.existsByEmail(email);
+        return shards.anyMatch(() -> customerRepository.existsByEmail(email));
     }
     
     // Get customer by phone
     @Transactional(readOnly = true)
     public Optional<Customer> getCustomerByPhone(String phone) {
-        return customerRepository.findByPhone(phone);
+        return shards.findFirst(() -> customerRepository.findByPhone(phone));
     }
     
     // Search customers by address
     @Transactional(readOnly = true)
     public List<Customer> searchCustomersByAddress(String address) {
-        return customerRepository.findByAddressContainingIgnoreCase(address);
+        if (searchBackend == SearchBackend.FTS5) {
+            return searchFullText(FullTextQuery.toMatchExpression(address, "address"));
+        }
+        return shards.gather(() -> customerRepository.findByAddressContainingIgnoreCase(address));
+    }
+    
+    private List<Customer> searchFullText(String matchExpression) {
+        return matchExpression != null
+                ? shards.gather(() -> customerRepository.searchCustomersFullText(matchExpression)) : new ArrayList<>();
+    }
+    
+    // Cursor-paginated listings; across shards the first rows by id of every shard are merged
+    @Transactional(readOnly = true)
+    public CursorPage<Customer> getCustomersPage(String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(() -> customerRepository.findByIdGreaterThanOrderByIdAsc(
+                PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Customer> searchCustomersByNamePage(String name, String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(() -> customerRepository.findByFullNameContainingIgnoreCaseAfter(
+                name, PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Customer> searchCustomersByFirstNamePage(String firstName, String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(() -> customerRepository.findByFirstNameContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(
+                firstName, PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Customer> searchCustomersByLastNamePage(String lastName, String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(() -> customerRepository.findByLastNameContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(
+                lastName, PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Customer> getCustomersWithOrdersPage(String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(() -> customerRepository.findCustomersWithOrdersAfter(
+                PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Customer> getCustomersWithoutOrdersPage(String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(() -> customerRepository.findCustomersWithoutOrdersAfter(
+                PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    // Response views. With includeOrders the orders of every listed customer are loaded together,
+    // so a page costs one customer query plus one order query instead of one query per customer.
+    @Transactional(readOnly = true)
+    public List<CustomerView> toViews(List<Customer> customers, boolean includeOrders) {
+        List<CustomerView> views = new ArrayList<>(customers.size());
+        if (!includeOrders) {
+            for (Customer customer : customers) {
+                views.add(CustomerView.of(customer));
+            }
+            return views;
+        }
+        
+        List<Long> customerIds = new ArrayList<>(customers.size());
+        for (Customer customer : customers) {
+            customerIds.add(customer.getId());
+        }
+        Map<Long, List<Order>> ordersByCustomer = new HashMap<>();
+        shards.groupByShard(customerIds, shards::shardOfCustomer).forEach((shard, ids) ->
+                shards.read(shard, () -> loadOrders(ids, ordersByCustomer)));
+        for (Customer customer : customers) {
+            views.add(CustomerView.withOrders(customer,
+                    ordersByCustomer.getOrDefault(customer.getId(), Collections.emptyList())));
+        }
+        return views;
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<CustomerView> toViews(CursorPage<Customer> page, boolean includeOrders) {
+        return new CursorPage<>(toViews(page.getItems(), includeOrders), page.getNextCursor(), page.getLimit());
+    }
+    
+    @Transactional(readOnly = true)
+    public CustomerView toView(Customer customer, boolean includeOrders) {
+        return toViews(Collections.singletonList(customer), includeOrders).get(0);
+    }
+    
+    private Map<Long, List<Order>> loadOrders(List<Long> customerIds, Map<Long, List<Order>> ordersByCustomer) {
+        for (int start = 0; start < customerIds.size(); start += ORDER_FETCH_BATCH_SIZE) {
+            List<Long> ids = customerIds.subList(start, Math.min(start + ORDER_FETCH_BATCH_SIZE, customerIds.size()));
+            for (Object[] row : orderRepository.findByCustomerIdIn(ids)) {
+                ordersByCustomer.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add((Order) row[1]);
+            }
+        }
+        return ordersByCustomer;
+    }
+    
+    private CursorPage<Customer> page(Supplier<List<Customer>> query, int size) {
+        List<Customer> rows = shards.gather(query, BY_ID, size + 1);
+        return CursorPage.of(rows, size, customer -> PageCursor.encodeId(customer.getId()));
     }
 }
@@ -0,0 +1,18 @@
+package com.example.ecommerce.service;
+
+// Thrown when a reservation cannot be satisfied; nothing has been reserved when this propagates
+public class InsufficientStockException extends RuntimeException {
+
+    private final Long productId;
+    private final int requested;
+
+    public InsufficientStockException(Long productId, int requested) {
+        super("Insufficient stock for product " + productId + " (requested " + requested + ")");
+        this.productId = productId;
+        this.requested = requested;
+    }
+
+    public Long getProductId() { return productId; }
+
+    public int getRequested() { return requested; }
+}
@@ -0,0 +1,139 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.OrderExportRow;
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.shard.Shards;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+@Service
+public class OrderExportService {
+
+    // Rows written between explicit flushes once the first row has gone out
+    private static final int FLUSH_INTERVAL = 1000;
+
+    public enum Format {
+        NDJSON(MediaType.parseMediaType("application/x-ndjson"), "ndjson"),
+        CSV(MediaType.parseMediaType("text/csv"), "csv");
+
+        private final MediaType mediaType;
+        private final String extension;
+
+        Format(MediaType mediaType, String extension) {
+            this.mediaType = mediaType;
+            this.extension = extension;
+        }
+
+        public MediaType getMediaType() { return mediaType; }
+
+        public String getExtension() { return extension; }
+
+        public static Format fromName(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + name);
+            }
+        }
+    }
+
+    private final OrderRepository orderRepository;
+    private final ObjectWriter rowWriter;
+    private final Shards shards;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public OrderExportService(OrderRepository orderRepository, ObjectMapper objectMapper, Shards shards) {
+        this.orderRepository = orderRepository;
+        this.rowWriter = objectMapper.writerFor(OrderExportRow.class);
+        this.shards = shards;
+    }
+
+    // Stream orders (optionally limited to a date range) to the given output, one row at a time.
+    // Each entity is detached as soon as it is written so the persistence context never grows.
+    // With several shards the shards are exported one after the other, each in its own order.
+    @Transactional(readOnly = true)
+    public long exportOrders(LocalDateTime startDate, LocalDateTime endDate, Format format,
+                             OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        long written = 0;
+        if (format == Format.CSV) {
+            writer.write(OrderExportRow.CSV_HEADER);
+            writer.write('\n');
+        }
+        for (int shard = 0; shard < shards.getCount(); shard++) {
+            long writtenBefore = written;
+            try {
+                written = shards.read(shard, () -> {
+                    try {
+                        return writeRows(startDate, endDate, format, writer, writtenBefore);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        writer.flush();
+        return written;
+    }
+
+    // Writes one shard's rows and returns the running total
+    private long writeRows(LocalDateTime startDate, LocalDateTime endDate, Format format,
+                           Writer writer, long written) throws IOException {
+        try (Stream<Order> orders = openStream(startDate, endDate)) {
+            Iterator<Order> iterator = orders.iterator();
+            while (iterator.hasNext()) {
+                Order order = iterator.next();
+                OrderExportRow row = new OrderExportRow(order);
+                entityManager.detach(order);
+
+                if (format == Format.CSV) {
+                    writer.write(row.toCsvLine());
+                } else {
+                    writer.write(rowWriter.writeValueAsString(row));
+                }
+                writer.write('\n');
+
+                written++;
+                // Push the first row out immediately, then flush in chunks
+                if (written == 1 || written % FLUSH_INTERVAL == 0) {
+                    writer.flush();
+                }
+            }
+        }
+        return written;
+    }
+
+    private Stream<Order> openStream(LocalDateTime startDate, LocalDateTime endDate) {
+        if (startDate == null && endDate == null) {
+            return orderRepository.streamAllOrders();
+        }
+        if (startDate == null || endDate == null) {
+            throw new IllegalArgumentException("Both startDate and endDate are required for a date range export");
+        }
+        return orderRepository.streamByOrderDateBetween(startDate, endDate);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.ecommerce.service;
+
+// Thrown when the order intake queue cannot take another order; nothing has been queued
+public class OrderIntakeFullException extends RuntimeException {
+
+    public OrderIntakeFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.shard.Shards;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Group commit for order creation. Callers enqueue into a bounded queue and get a future back;
+// a single flusher thread takes whatever has arrived, waits at most max-delay for the batch to
+// fill up to max-batch-size, and inserts the whole batch in one transaction, so one commit (and
+// one fsync) is shared by many orders. A full queue is rejected straight away instead of
+// letting waiting requests pile up. With several shards a batch is committed per shard.
+@Component
+public class OrderIntakeQueue implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderIntakeQueue.class);
+
+    private static final long IDLE_POLL_MILLIS = 100;
+    private static final long SHUTDOWN_WAIT_MILLIS = 10000;
+
+    private final OrderService orderService;
+    private final Shards shards;
+    private final BlockingQueue<PendingOrder> queue;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    @Autowired
+    public OrderIntakeQueue(OrderService orderService,
+                            Shards shards,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.orders.intake.queue-capacity:10000}") int queueCapacity,
+                            @Value("${app.orders.intake.max-batch-size:200}") int maxBatchSize,
+                            @Value("${app.orders.intake.max-delay:2ms}") Duration maxDelay) {
+        this.orderService = orderService;
+        this.shards = shards;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.batchSizes = DistributionSummary.builder("orders.intake.batch.size")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("orders.intake.queue.size", queue, BlockingQueue::size).register(meterRegistry);
+    }
+
+    // Queue an order; the future completes with the saved order once its batch has committed
+    public CompletableFuture<Order> submit(Long customerId, String shippingAddress, BigDecimal totalAmount) {
+        if (!running) {
+            throw new OrderIntakeFullException("Order intake is not accepting orders");
+        }
+        PendingOrder pending = new PendingOrder(new CreateOrderRequest(customerId, shippingAddress, totalAmount));
+        if (!queue.offer(pending)) {
+            throw new OrderIntakeFullException("Order intake queue is full, please retry");
+        }
+        // stop() may have drained the queue for the last time since the check above. Whoever takes
+        // the order out first answers it: stop()'s drain or the flusher complete the future, a
+        // successful remove here refuses the order.
+        if (!running && queue.remove(pending)) {
+            throw new OrderIntakeFullException("Order intake is not accepting orders");
+        }
+        return pending.future;
+    }
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        flusher = new Thread(this::drainLoop, "order-intake");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Stop taking new orders, then let the flusher commit everything already queued
+    @Override
+    public synchronized void stop() {
+        running = false;
+        try {
+            flusher.join(SHUTDOWN_WAIT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingOrder leftover;
+        while ((leftover = queue.poll()) != null) {
+            leftover.future.completeExceptionally(new OrderIntakeFullException("Order intake shut down"));
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void drainLoop() {
+        List<PendingOrder> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingOrder first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                collect(batch, System.nanoTime() + maxDelayNanos);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Fill the batch until it is full or the deadline set by its first order has passed
+    private void collect(List<PendingOrder> batch, long deadline) throws InterruptedException {
+        while (batch.size() < maxBatchSize) {
+            if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            PendingOrder next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<PendingOrder> batch) {
+        batchSizes.record(batch.size());
+        shards.groupByShard(batch, pending -> shards.shardOfCustomer(pending.request.getCustomerId()))
+                .values().forEach(this::flushShard);
+    }
+
+    private void flushShard(List<PendingOrder> batch) {
+        List<CreateOrderRequest> requests = new ArrayList<>(batch.size());
+        for (PendingOrder pending : batch) {
+            requests.add(pending.request);
+        }
+
+        List<Order> orders;
+        try {
+            orders = orderService.createOrders(requests);
+        } catch (RuntimeException e) {
+            log.warn("Order intake batch of {} failed: {}", batch.size(), e.getMessage());
+            for (PendingOrder pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            PendingOrder pending = batch.get(i);
+            Order order = orders.get(i);
+            if (order != null) {
+                pending.future.complete(order);
+            } else {
+                pending.future.completeExceptionally(
+                        new RuntimeException("Customer not found with id: " + pending.request.getCustomerId()));
+            }
+        }
+    }
+
+    private static final class PendingOrder {
+        private final CreateOrderRequest request;
+        private final CompletableFuture<Order> future = new CompletableFuture<>();
+
+        PendingOrder(CreateOrderRequest request) {
+            this.request = request;
+        }
+    }
+}
@@ -1,87 +1,183 @@
 package com.example.ecommerce.service;
 
+import com.example.ecommerce.config.RetryOnOptimisticLock;
+import com.example.ecommerce.dto.CreateOrderRequest;
+import com.example.ecommerce.dto.CursorPage;
+import com.example.ecommerce.dto.EntityVersion;
+import com.example.ecommerce.dto.PageCursor;
 import com.example.ecommerce.entity.Order;
 import com.example.ecommerce.entity.OrderStatus;
 import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.event.OrderChangedEvent;
+import com.example.ecommerce.event.OrderSnapshot;
 import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.rollup.LiveOrderMetrics;
+import com.example.ecommerce.shard.Shards;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
+// Orders live on their customer's shard (see Shards); listings across customers are gathered
+// from every shard and merged in the order the single-shard query returns them.
 @Service
 @Transactional
 public class OrderService {
     
+    private static final Comparator<Order> BY_ID = Comparator.comparing(Order::getId);
+    private static final Comparator<Order> OLDEST_FIRST =
+            Comparator.comparing(Order::getOrderDate).thenComparing(Order::getId);
+    private static final Comparator<Order> NEWEST_FIRST = OLDEST_FIRST.reversed();
+    
     private final OrderRepository orderRepository;
     private final CustomerService customerService;
+    private final LiveOrderMetrics liveOrderMetrics;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Shards shards;
 
     @Autowired
     public OrderService(OrderRepository orderRepository,
-                       CustomerService customerService) {
+                       CustomerService customerService,
+                       LiveOrderMetrics liveOrderMetrics,
+                       ApplicationEventPublisher eventPublisher,
+                       Shards shards) {
         this.orderRepository = orderRepository;
         this.customerService = customerService;
+        this.liveOrderMetrics = liveOrderMetrics;
+        this.eventPublisher = eventPublisher;
+        this.shards = shards;
     }
     
     // Create a new order
     public Order createOrder(Long customerId, String shippingAddress, BigDecimal totalAmount) {
+        shards.use(shards.shardOfCustomer(customerId));
         Customer customer = customerService.getCustomerById(customerId)
                 .orElseThrow(() -> new RuntimeException("Customer not found with id: " + customerId));
 
         Order order = new Order(customer);
         order.setShippingAddress(shippingAddress);
         order.setTotalAmount(totalAmount != null ? totalAmount : BigDecimal.ZERO);
-        return orderRepository.save(order);
+        Order savedOrder = orderRepository.save(order);
+        eventPublisher.publishEvent(OrderChangedEvent.created(savedOrder));
+        return savedOrder;
+    }
+    
+    // Create a batch of orders in one transaction (group commit). The result lines up with the
+    // requests; an entry whose customer does not exist is null and nothing is inserted for it.
+    // All customers of a batch must be on the same shard.
+    public List<Order> createOrders(List<CreateOrderRequest> requests) {
+        Set<Long> customerIds = new HashSet<>();
+        for (CreateOrderRequest request : requests) {
+            customerIds.add(request.getCustomerId());
+        }
+        Set<Integer> batchShards = shards.groupByShard(customerIds, shards::shardOfCustomer).keySet();
+        if (batchShards.size() > 1) {
+            throw new IllegalArgumentException("A batch of orders must belong to customers on one shard");
+        }
+        for (Integer shard : batchShards) {
+            shards.use(shard);
+        }
+        Map<Long, Customer> customers = new HashMap<>();
+        for (Customer customer : customerService.getCustomersByIds(customerIds)) {
+            customers.put(customer.getId(), customer);
+        }
+        
+        List<Order> orders = new ArrayList<>(requests.size());
+        List<Order> newOrders = new ArrayList<>(requests.size());
+        for (CreateOrderRequest request : requests) {
+            Customer customer = customers.get(request.getCustomerId());
+            if (customer == null) {
+                orders.add(null);
+                continue;
+            }
+            Order order = new Order(customer);
+            order.setShippingAddress(request.getShippingAddress());
+            order.setTotalAmount(request.getTotalAmount() != null ? request.getTotalAmount() : BigDecimal.ZERO);
+            orders.add(order);
+            newOrders.add(order);
+        }
+        orderRepository.saveAll(newOrders);
+        for (Order order : newOrders) {
+            eventPublisher.publishEvent(OrderChangedEvent.created(order));
+        }
+        return orders;
     }
     
     // Get all orders
     @Transactional(readOnly = true)
     public List<Order> getAllOrders() {
-        return orderRepository.findAll();
+        return shards.gather(orderRepository::findAll);
     }
     
-    // Get order by ID
+    // Get order by ID, falling back to the archive for old delivered and cancelled orders
     @Transactional(readOnly = true)
     public Optional<Order> getOrderById(Long id) {
-        return orderRepository.findById(id);
+        shards.use(shards.shardOfOrder(id));
+        Optional<Order> order = orderRepository.findById(id);
+        return order.isPresent() ? order : orderRepository.findArchivedById(id);
+    }
+    
+    // Version and last update of an order, without loading it
+    @Transactional(readOnly = true)
+    public Optional<EntityVersion> getOrderVersion(Long id) {
+        shards.use(shards.shardOfOrder(id));
+        return orderRepository.findVersionById(id);
     }
     
     // Get orders by customer ID
     @Transactional(readOnly = true)
     public List<Order> getOrdersByCustomerId(Long customerId) {
+        shards.use(shards.shardOfCustomer(customerId));
         return orderRepository.findByCustomerIdOrderByOrderDateDesc(customerId);
     }
     
     // Get orders by status
     @Transactional(readOnly = true)
     public List<Order> getOrdersByStatus(OrderStatus status) {
-        return orderRepository.findByStatusOrderByOrderDateDesc(status);
+        return shards.gather(() -> orderRepository.findByStatusOrderByOrderDateDesc(status), NEWEST_FIRST);
     }
     
     // Update order status
+    @RetryOnOptimisticLock
     public Order updateOrderStatus(Long id, OrderStatus status) {
+        shards.use(shards.shardOfOrder(id));
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + id));
         
+        OrderSnapshot before = OrderSnapshot.of(order);
         order.setStatus(status);
-        return orderRepository.save(order);
+        return saveUpdated(order, before);
     }
     
     // Update order total amount
+    @RetryOnOptimisticLock
     public Order updateOrderTotal(Long orderId, BigDecimal totalAmount) {
+        shards.use(shards.shardOfOrder(orderId));
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
 
+        OrderSnapshot before = OrderSnapshot.of(order);
         order.setTotalAmount(totalAmount);
-        return orderRepository.save(order);
+        return saveUpdated(order, before);
     }
     
     // Cancel order
+    @RetryOnOptimisticLock
     public Order cancelOrder(Long id) {
+        shards.use(shards.shardOfOrder(id));
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + id));
 
@@ -89,40 +185,101 @@ public class OrderService {
             throw new IllegalArgumentException("Cannot cancel a delivered order");
         }
 
+        OrderSnapshot before = OrderSnapshot.of(order);
         order.setStatus(OrderStatus.CANCELLED);
-        return orderRepository.save(order);
+        return saveUpdated(order, before);
     }
     
     // Delete order
     public void deleteOrder(Long id) {
+        shards.use(shards.shardOfOrder(id));
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Order not found with id: " + id));
 
         orderRepository.delete(order);
+        eventPublisher.publishEvent(OrderChangedEvent.deleted(order));
+    }
+    
+    private Order saveUpdated(Order order, OrderSnapshot before) {
+        Order savedOrder = orderRepository.save(order);
+        eventPublisher.publishEvent(OrderChangedEvent.updated(before, savedOrder));
+        return savedOrder;
     }
     
     // Get orders by date range
     @Transactional(readOnly = true)
     public List<Order> getOrdersByDateRange(LocalDateTime startDate, LocalDateTime endDate) {
-        return orderRepository.findByOrderDateBetween(startDate, endDate);
+        return shards.gather(() -> orderRepository.findByOrderDateBetween(startDate, endDate), OLDEST_FIRST);
     }
     
     // Get recent orders
     @Transactional(readOnly = true)
     public List<Order> getRecentOrders() {
         LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-        return orderRepository.findRecentOrders(thirtyDaysAgo);
+        return shards.gather(() -> orderRepository.findRecentOrders(thirtyDaysAgo), NEWEST_FIRST);
     }
     
-    // Get total sales amount
-    @Transactional(readOnly = true)
+    // Get total sales amount (answered from memory, no connection is taken)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public BigDecimal getTotalSalesAmount() {
-        return orderRepository.getTotalSalesAmount();
+        return liveOrderMetrics.getTotalRevenue();
     }
     
-    // Get order count by status
-    @Transactional(readOnly = true)
+    // Get order count by status (answered from memory, no connection is taken)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Long getOrderCountByStatus(OrderStatus status) {
-        return orderRepository.countOrdersByStatus(status);
+        return liveOrderMetrics.getCount(status);
+    }
+    
+    // Cursor-paginated listings; across shards the first rows of every shard are merged
+    @Transactional(readOnly = true)
+    public CursorPage<Order> getOrdersPage(String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        List<Order> rows = shards.gather(() -> orderRepository.findByIdGreaterThanOrderByIdAsc(
+                PageCursor.decodeId(after), CursorPage.fetchWindow(size)), BY_ID, size + 1);
+        return CursorPage.of(rows, size, order -> PageCursor.encodeId(order.getId()));
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Order> getOrdersByCustomerIdPage(Long customerId, String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        PageCursor cursor = PageCursor.decodeDescending(after);
+        shards.use(shards.shardOfCustomer(customerId));
+        return datedPage(orderRepository.findByCustomerIdBefore(
+                customerId, cursor.getOrderDate(), cursor.getId(), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Order> getOrdersByStatusPage(OrderStatus status, String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        PageCursor cursor = PageCursor.decodeDescending(after);
+        return datedPage(() -> orderRepository.findByStatusBefore(
+                status, cursor.getOrderDate(), cursor.getId(), CursorPage.fetchWindow(size)), NEWEST_FIRST, size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Order> getRecentOrdersPage(String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        PageCursor cursor = PageCursor.decodeDescending(after);
+        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
+        return datedPage(() -> orderRepository.findRecentOrdersBefore(
+                thirtyDaysAgo, cursor.getOrderDate(), cursor.getId(), CursorPage.fetchWindow(size)), NEWEST_FIRST, size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Order> getOrdersByDateRangePage(LocalDateTime startDate, LocalDateTime endDate,
+                                                      String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        PageCursor cursor = PageCursor.decodeAscending(after);
+        return datedPage(() -> orderRepository.findByOrderDateBetweenAfter(
+                startDate, endDate, cursor.getOrderDate(), cursor.getId(), CursorPage.fetchWindow(size)), OLDEST_FIRST, size);
+    }
+    
+    private CursorPage<Order> datedPage(Supplier<List<Order>> query, Comparator<Order> order, int size) {
+        return datedPage(shards.gather(query, order, size + 1), size);
+    }
+    
+    private CursorPage<Order> datedPage(List<Order> rows, int size) {
+        return CursorPage.of(rows, size, order -> PageCursor.encodeDated(order.getOrderDate(), order.getId()));
     }
 }
@@ -1,29 +1,62 @@
 package com.example.ecommerce.service;
 
+import com.example.ecommerce.cache.CacheNames;
+import com.example.ecommerce.config.RetryOnOptimisticLock;
+import com.example.ecommerce.dto.CursorPage;
+import com.example.ecommerce.dto.PageCursor;
+import com.example.ecommerce.dto.SearchPage;
 import com.example.ecommerce.entity.Product;
+import com.example.ecommerce.event.ProductChangedEvent;
 import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.search.FullTextQuery;
+import com.example.ecommerce.search.ProductSearchIndex;
+import com.example.ecommerce.search.SearchBackend;
+import com.example.ecommerce.search.SearchHits;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class ProductService {
     
+    // Upper bound on a ranked search page and on ids loaded per IN query
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int ID_BATCH_SIZE = 500;
+    
     private final ProductRepository productRepository;
+    private final ProductSearchIndex searchIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SearchBackend searchBackend;
     
     @Autowired
-    public ProductService(ProductRepository productRepository) {
+    public ProductService(ProductRepository productRepository,
+                          ProductSearchIndex searchIndex,
+                          ApplicationEventPublisher eventPublisher,
+                          @Value("${app.search.backend:index}") String searchBackend) {
         this.productRepository = productRepository;
+        this.searchIndex = searchIndex;
+        this.eventPublisher = eventPublisher;
+        this.searchBackend = SearchBackend.fromProperty(searchBackend);
     }
     
     // Create a new product
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.created(savedProduct));
+        return savedProduct;
     }
     
     // Get all products
@@ -34,14 +67,22 @@ public class ProductService {
     
     // Get product by ID
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheNames.PRODUCTS, key = "#id")
     public Optional<Product> getProductById(Long id) {
         return productRepository.findById(id);
     }
     
-    // Update product
-    public Product updateProduct(Long id, Product productDetails) {
+    // Update product. With an expected version (from If-Match) a product changed since is refused;
+    // without one the update replaces whatever is current.
+    @RetryOnOptimisticLock
+    public Product updateProduct(Long id, Product productDetails, Long expectedVersion) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+        if (expectedVersion != null && product.getVersion() != expectedVersion) {
+            throw new StaleVersionException("Product", id, expectedVersion, product.getVersion());
+        }
+        String previousCategory = product.getCategory();
+        String previousBrand = product.getBrand();
         
         product.setName(productDetails.getName());
         product.setDescription(productDetails.getDescription());
@@ -51,7 +92,7 @@ public class ProductService {
         product.setBrand(productDetails.getBrand());
         product.setIsActive(productDetails.getIsActive());
         
-        return productRepository.save(product);
+        return saveUpdated(product, previousCategory, previousBrand);
     }
     
     // Delete product
@@ -59,6 +100,7 @@ public class ProductService {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
         productRepository.delete(product);
+        eventPublisher.publishEvent(ProductChangedEvent.deleted(product));
     }
     
     // Search products by name
@@ -69,6 +111,7 @@ public class ProductService {
     
     // Get products by category
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheNames.PRODUCTS_BY_CATEGORY, key = "#category.toLowerCase(T(java.util.Locale).ROOT)")
     public List<Product> getProductsByCategory(String category) {
         return productRepository.findByCategoryIgnoreCase(category);
     }
@@ -109,52 +152,209 @@ public class ProductService {
         return productRepository.findByPriceBetween(minPrice, maxPrice);
     }
     
-    // Search products
+    // Search products with the configured backend (app.search.backend). The index and FTS5 match
+    // whole words and word prefixes only ("phone" finds "Phone Case", not "Smartphone"); there is
+    // no substring fallback, which would scan the table and answer by other rules.
     @Transactional(readOnly = true)
     public List<Product> searchProducts(String keyword) {
+        if (searchBackend == SearchBackend.FTS5) {
+            String match = FullTextQuery.toMatchExpression(keyword);
+            return match != null ? productRepository.searchProductsFullText(match) : new ArrayList<>();
+        }
+        if (searchBackend == SearchBackend.INDEX) {
+            return findAllInOrder(indexHits(keyword).getIds());
+        }
         return productRepository.searchProducts(keyword);
     }
     
+    // Ranked, paged search for the storefront search box (in-memory index or FTS5)
+    @Transactional(readOnly = true)
+    public SearchPage<Product> searchProductsRanked(String query, int page, int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("page must not be negative");
+        }
+        if (size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new IllegalArgumentException("size must be between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+        if (searchBackend == SearchBackend.FTS5) {
+            String match = FullTextQuery.toMatchExpression(query);
+            if (match == null) {
+                return new SearchPage<>(new ArrayList<>(), 0, page, size);
+            }
+            List<Product> products = productRepository.searchProductsFullText(match, PageRequest.of(page, size));
+            return new SearchPage<>(products, (int) productRepository.countProductsFullText(match), page, size);
+        }
+        if (searchBackend != SearchBackend.INDEX) {
+            throw new IllegalStateException("Ranked search needs app.search.backend=index or fts5");
+        }
+        SearchHits hits = indexHits(query, page * size, size);
+        return new SearchPage<>(findAllInOrder(hits.getIds()), hits.getTotal(), page, size);
+    }
+
+    private SearchHits indexHits(String query) {
+        return indexHits(query, 0, Integer.MAX_VALUE);
+    }
+
+    private SearchHits indexHits(String query, int offset, int limit) {
+        if (!searchIndex.isReady()) {
+            throw new IllegalStateException("Product search index is still being built");
+        }
+        return searchIndex.search(query, offset, limit);
+    }
+    
     // Note: Top selling products functionality removed due to simplified order structure
     
     // Get distinct categories
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheNames.PRODUCT_CATEGORIES, key = "'all'")
     public List<String> getDistinctCategories() {
         return productRepository.findDistinctCategories();
     }
     
     // Get distinct brands
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheNames.PRODUCT_BRANDS, key = "'all'")
     public List<String> getDistinctBrands() {
         return productRepository.findDistinctBrands();
     }
     
     // Update stock quantity
+    @RetryOnOptimisticLock
     public Product updateStock(Long id, Integer newStockQuantity) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
         
         product.setStockQuantity(newStockQuantity);
-        return productRepository.save(product);
+        return saveUpdated(product, product.getCategory(), product.getBrand());
     }
     
 
     
     // Activate product
+    @RetryOnOptimisticLock
     public Product activateProduct(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
         
         product.setIsActive(true);
-        return productRepository.save(product);
+        return saveUpdated(product, product.getCategory(), product.getBrand());
     }
     
     // Deactivate product
+    @RetryOnOptimisticLock
     public Product deactivateProduct(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
         
         product.setIsActive(false);
-        return productRepository.save(product);
+        return saveUpdated(product, product.getCategory(), product.getBrand());
+    }
+    
+    // Cursor-paginated listings
+    @Transactional(readOnly = true)
+    public CursorPage<Product> getProductsPage(String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(productRepository.findByIdGreaterThanOrderByIdAsc(
+                PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Product> searchProductsPage(String keyword, String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        Long afterId = PageCursor.decodeId(after);
+        if (searchBackend == SearchBackend.FTS5) {
+            String match = FullTextQuery.toMatchExpression(keyword);
+            return page(match != null ? productRepository.searchProductsFullTextAfter(
+                    match, afterId, CursorPage.fetchWindow(size)) : new ArrayList<>(), size);
+        }
+        if (searchBackend == SearchBackend.INDEX) {
+            // The same matches as searchProducts, walked in id order instead of by rank
+            List<Long> ids = indexHits(keyword).getIds().stream()
+                    .filter(id -> id > afterId)
+                    .sorted()
+                    .limit(size + 1)
+                    .collect(Collectors.toList());
+            return page(findAllInOrder(ids), size);
+        }
+        return page(productRepository.searchProductsAfter(keyword, afterId, CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Product> searchProductsByNamePage(String name, String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(productRepository.findByNameContainingIgnoreCaseAndIdGreaterThanOrderByIdAsc(
+                name, PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Product> getProductsByCategoryPage(String category, String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(productRepository.findByCategoryIgnoreCaseAndIdGreaterThanOrderByIdAsc(
+                category, PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Product> getProductsByBrandPage(String brand, String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(productRepository.findByBrandIgnoreCaseAndIdGreaterThanOrderByIdAsc(
+                brand, PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Product> getActiveProductsPage(String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(productRepository.findByIsActiveTrueAndIdGreaterThanOrderByIdAsc(
+                PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Product> getProductsInStockPage(String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(productRepository.findProductsInStockAfter(
+                PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Product> getProductsOutOfStockPage(String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(productRepository.findProductsOutOfStockAfter(
+                PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    @Transactional(readOnly = true)
+    public CursorPage<Product> getProductsByPriceRangePage(BigDecimal minPrice, BigDecimal maxPrice,
+                                                           String after, Integer limit) {
+        int size = CursorPage.resolveLimit(limit);
+        return page(productRepository.findByPriceBetweenAndIdGreaterThanOrderByIdAsc(
+                minPrice, maxPrice, PageCursor.decodeId(after), CursorPage.fetchWindow(size)), size);
+    }
+    
+    private Product saveUpdated(Product product, String previousCategory, String previousBrand) {
+        Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductChangedEvent.updated(savedProduct, previousCategory, previousBrand));
+        return savedProduct;
+    }
+    
+    // Load products by id in batches, preserving the order of the given ids
+    private List<Product> findAllInOrder(List<Long> ids) {
+        Map<Long, Product> byId = new HashMap<>();
+        for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size()));
+            for (Product product : productRepository.findAllById(batch)) {
+                byId.put(product.getId(), product);
+            }
+        }
+        List<Product> products = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Product product = byId.get(id);
+            if (product != null) {
+                products.add(product);
+            }
+        }
+        return products;
+    }
+    
+    private CursorPage<Product> page(List<Product> rows, int size) {
+        return CursorPage.of(rows, size, product -> PageCursor.encodeId(product.getId()));
     }
 }
@@ -0,0 +1,21 @@
+package com.example.ecommerce.service;
+
+// Thrown when an update names the version it was based on (If-Match) and the row has moved on
+// since. Not an OptimisticLockingFailureException on purpose: re-running the update cannot help,
+// the client has to reload and merge its change.
+public class StaleVersionException extends RuntimeException {
+
+    private final long expectedVersion;
+    private final long currentVersion;
+
+    public StaleVersionException(String entity, Long id, long expectedVersion, long currentVersion) {
+        super(entity + " " + id + " has been modified (version " + currentVersion + ", If-Match version "
+                + expectedVersion + "); reload it and retry");
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public long getExpectedVersion() { return expectedVersion; }
+
+    public long getCurrentVersion() { return currentVersion; }
+}
@@ -0,0 +1,144 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.dto.ReservationLine;
+import com.example.ecommerce.entity.ReservationStatus;
+import com.example.ecommerce.entity.StockReservation;
+import com.example.ecommerce.event.ProductChangedEvent;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.repository.StockReservationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+// Stock reservations built on conditional atomic UPDATEs, so concurrent buyers of the same SKU
+// can never drive stock below zero and no read-modify-write of the product row is needed.
+@Service
+@Transactional
+public class StockReservationService {
+    
+    private final ProductRepository productRepository;
+    private final StockReservationRepository reservationRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Duration reservationTtl;
+    
+    @Autowired
+    public StockReservationService(ProductRepository productRepository,
+                                   StockReservationRepository reservationRepository,
+                                   ApplicationEventPublisher eventPublisher,
+                                   @Value("${app.stock.reservation.ttl:15m}") Duration reservationTtl) {
+        this.productRepository = productRepository;
+        this.reservationRepository = reservationRepository;
+        this.eventPublisher = eventPublisher;
+        this.reservationTtl = reservationTtl;
+    }
+    
+    // Reserve stock of one product
+    public StockReservation reserve(Long productId, int quantity) {
+        if (quantity < 1) {
+            throw new IllegalArgumentException("Quantity must be at least 1");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        takeStock(productId, quantity, now);
+        return reservationRepository.save(new StockReservation(productId, quantity, now.plus(reservationTtl)));
+    }
+    
+    // Reserve several products all-or-nothing: if any line cannot be satisfied the whole
+    // transaction rolls back, returning the stock already taken for earlier lines.
+    public List<StockReservation> reserveAll(List<ReservationLine> lines) {
+        if (lines == null || lines.isEmpty()) {
+            throw new IllegalArgumentException("At least one reservation line is required");
+        }
+        // Merge duplicate SKUs and take them in id order so concurrent batches never interleave badly
+        Map<Long, Integer> quantities = new TreeMap<>();
+        for (ReservationLine line : lines) {
+            if (line.getProductId() == null || line.getQuantity() == null || line.getQuantity() < 1) {
+                throw new IllegalArgumentException("Every line needs a product id and a quantity of at least 1");
+            }
+            quantities.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<StockReservation> reservations = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            takeStock(entry.getKey(), entry.getValue(), now);
+            reservations.add(new StockReservation(entry.getKey(), entry.getValue(), now.plus(reservationTtl)));
+        }
+        return reservationRepository.saveAll(reservations);
+    }
+    
+    // Turn a reservation into a sale; the stock stays deducted
+    public StockReservation confirm(Long reservationId) {
+        StockReservation reservation = reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new RuntimeException("Reservation not found with id: " + reservationId));
+        if (reservationRepository.transitionFromActive(reservationId, ReservationStatus.CONFIRMED, LocalDateTime.now()) == 0) {
+            throw new IllegalStateException("Reservation " + reservationId + " is no longer active");
+        }
+        reservation.setStatus(ReservationStatus.CONFIRMED);
+        return reservation;
+    }
+    
+    // Give the reserved stock back
+    public StockReservation release(Long reservationId) {
+        StockReservation reservation = reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new RuntimeException("Reservation not found with id: " + reservationId));
+        if (!returnStock(reservation, ReservationStatus.RELEASED)) {
+            throw new IllegalStateException("Reservation " + reservationId + " is no longer active");
+        }
+        reservation.setStatus(ReservationStatus.RELEASED);
+        return reservation;
+    }
+    
+    // Expire up to batchSize overdue reservations; returns how many were expired
+    public int expireOverdue(int batchSize) {
+        List<StockReservation> overdue = reservationRepository.findByStatusAndExpiresAtBefore(
+                ReservationStatus.ACTIVE, LocalDateTime.now(), PageRequest.of(0, batchSize));
+        int expired = 0;
+        for (StockReservation reservation : overdue) {
+            if (returnStock(reservation, ReservationStatus.EXPIRED)) {
+                expired++;
+            }
+        }
+        return expired;
+    }
+    
+    // Get reservation by ID
+    @Transactional(readOnly = true)
+    public Optional<StockReservation> getReservationById(Long id) {
+        return reservationRepository.findById(id);
+    }
+    
+    private void takeStock(Long productId, int quantity, LocalDateTime now) {
+        if (productRepository.decrementStock(productId, quantity, now) == 0) {
+            if (!productRepository.existsById(productId)) {
+                throw new RuntimeException("Product not found with id: " + productId);
+            }
+            throw new InsufficientStockException(productId, quantity);
+        }
+        eventPublisher.publishEvent(ProductChangedEvent.stockChanged(productId,
+                productRepository.findCategoryById(productId)));
+    }
+    
+    // The status guard makes release and expiry race-free: only the caller that moves the
+    // reservation out of ACTIVE puts the stock back
+    private boolean returnStock(StockReservation reservation, ReservationStatus newStatus) {
+        LocalDateTime now = LocalDateTime.now();
+        if (reservationRepository.transitionFromActive(reservation.getId(), newStatus, now) == 0) {
+            return false;
+        }
+        productRepository.incrementStock(reservation.getProductId(), reservation.getQuantity(), now);
+        eventPublisher.publishEvent(ProductChangedEvent.stockChanged(reservation.getProductId(),
+                productRepository.findCategoryById(reservation.getProductId())));
+        return true;
+    }
+}
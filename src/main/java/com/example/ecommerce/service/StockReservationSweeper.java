@@ -0,0 +1,37 @@
+package com.example.ecommerce.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+// Periodically returns the stock of reservations that were neither confirmed nor released in time
+@Component
+public class StockReservationSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(StockReservationSweeper.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final StockReservationService reservationService;
+
+    @Autowired
+    public StockReservationSweeper(StockReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock.reservation.sweep-interval:30000}")
+    public void expireOverdueReservations() {
+        int total = 0;
+        int expired;
+        // One short transaction per batch keeps the write lock free for buyers
+        do {
+            expired = reservationService.expireOverdue(BATCH_SIZE);
+            total += expired;
+        } while (expired == BATCH_SIZE);
+        if (total > 0) {
+            log.info("Expired {} overdue stock reservations", total);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.ecommerce.shard;
+
+// The shard the current thread's next connection goes to. Nothing bound means shard 0, which
+// also holds everything that is not sharded (products, stock reservations).
+// A binding remembers whether a connection has been routed with it: from then on the transaction
+// is pinned to that shard and cannot be moved to another one.
+public final class ShardContext {
+
+    private static final ThreadLocal<Binding> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {}
+
+    // Called by the routing DataSource when a connection is actually opened
+    public static int route() {
+        Binding binding = CURRENT.get();
+        if (binding == null) {
+            return 0;
+        }
+        binding.routed = true;
+        return binding.shard;
+    }
+
+    static Binding current() {
+        return CURRENT.get();
+    }
+
+    // Returns the binding it replaces, to be handed back to restore()
+    static Binding bind(int shard) {
+        Binding previous = CURRENT.get();
+        CURRENT.set(new Binding(shard));
+        return previous;
+    }
+
+    static void restore(Binding previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    static final class Binding {
+        final int shard;
+        boolean routed;
+
+        Binding(int shard) {
+            this.shard = shard;
+        }
+    }
+}
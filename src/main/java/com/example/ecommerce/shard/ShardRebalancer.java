@@ -0,0 +1,355 @@
+package com.example.ecommerce.shard;
+
+import com.example.ecommerce.entity.OrderStatus;
+import com.example.ecommerce.event.OrderSnapshot;
+import com.example.ecommerce.rollup.SalesRollups;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeSet;
+
+// Evens out the order count of the shards by moving whole customers, with all their orders, from
+// the fullest shard to the emptiest one (POST /actuator/shards). Moved customers and orders keep
+// their ids; the target shard records them in shard_moved_customers so the directory in Shards
+// can be rebuilt at startup.
+//
+// Shard 0 is never a target: its tables hand out max(id) + 1, so a moved-in id from another
+// shard's range would drag its own ids into that range. The other shards' AUTOINCREMENT sequences
+// are put back after every batch for the same reason.
+//
+// A batch is copied in a transaction on the target shard that runs inside one on the source
+// shard. Holding the source's only writer connection means nothing can change the batch while it
+// is copied; requests for a moved customer that were already waiting for that connection find
+// the customer gone once the move commits. Readers may briefly see a batch on both shards.
+//
+// The two commits are not atomic. The directory only points at the target once the source has
+// committed; should the source roll back instead, the copy is deleted from the target again. A
+// batch left on both shards all the same (the process died in between, or the undo failed) is
+// listed under duplicateCustomers by GET /actuator/shards.
+@Component
+@DependsOn("schemaMigrations")
+@Endpoint(id = "shards")
+public class ShardRebalancer {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private static final int BATCH_SIZE = 100;
+    private static final int ID_CHUNK_SIZE = 500;
+    private static final int DEFAULT_MAX_CUSTOMERS = 10000;
+
+    private final Shards shards;
+    private final JdbcTemplate jdbcTemplate;
+    private final SalesRollups salesRollups;
+
+    @Autowired
+    public ShardRebalancer(Shards shards, JdbcTemplate jdbcTemplate, SalesRollups salesRollups) {
+        this.shards = shards;
+        this.jdbcTemplate = jdbcTemplate;
+        this.salesRollups = salesRollups;
+    }
+
+    @PostConstruct
+    public void loadDirectory() {
+        if (!shards.isSharded()) {
+            return;
+        }
+        for (int shard = 0; shard < shards.getCount(); shard++) {
+            List<Long> moved = shards.read(shard, () -> jdbcTemplate.queryForList(
+                    "SELECT customer_id FROM shard_moved_customers", Long.class));
+            for (Long customerId : moved) {
+                shards.recordMove(customerId, shard);
+            }
+        }
+        log.info("Loaded {} customers moved between shards", shards.getMovedCount());
+    }
+
+    @ReadOperation
+    public Map<String, Object> report() {
+        List<Map<String, Object>> perShard = new ArrayList<>();
+        for (int shard = 0; shard < shards.getCount(); shard++) {
+            int current = shard;
+            perShard.add(shards.read(shard, () -> {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("shard", current);
+                stats.put("customers", count("SELECT COUNT(*) FROM customers"));
+                stats.put("orders", count("SELECT COUNT(*) FROM orders"));
+                stats.put("movedIn", count("SELECT COUNT(*) FROM shard_moved_customers"));
+                return stats;
+            }));
+        }
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("shards", shards.getCount());
+        report.put("movedCustomers", shards.getMovedCount());
+        report.put("duplicateCustomers", duplicates());
+        report.put("perShard", perShard);
+        return report;
+    }
+
+    // Customers found on more than one shard. Every customer but one copy lives off its home
+    // shard, so only customers outside a shard's own id range are looked for elsewhere.
+    private List<Long> duplicates() {
+        if (!shards.isSharded()) {
+            return List.of();
+        }
+        TreeSet<Long> candidates = new TreeSet<>();
+        for (int shard = 0; shard < shards.getCount(); shard++) {
+            long low = shard == 0 ? 1 : Shards.idBase(shard);
+            long high = Shards.idBase(shard + 1);
+            candidates.addAll(shards.read(shard, () -> jdbcTemplate.queryForList(
+                    "SELECT id FROM customers WHERE id < ? OR id >= ?", Long.class, low, high)));
+        }
+        Map<Long, Integer> copies = new HashMap<>();
+        List<Long> chunk = new ArrayList<>(ID_CHUNK_SIZE);
+        for (Long candidate : candidates) {
+            chunk.add(candidate);
+            if (chunk.size() == ID_CHUNK_SIZE || candidate.equals(candidates.last())) {
+                String ids = idList(chunk);
+                for (Long found : shards.gather(() -> jdbcTemplate.queryForList(
+                        "SELECT id FROM customers WHERE id IN (" + ids + ")", Long.class))) {
+                    copies.merge(found, 1, Integer::sum);
+                }
+                chunk.clear();
+            }
+        }
+        List<Long> duplicates = new ArrayList<>();
+        for (Long candidate : candidates) {
+            if (copies.getOrDefault(candidate, 0) > 1) {
+                duplicates.add(candidate);
+            }
+        }
+        if (!duplicates.isEmpty()) {
+            log.warn("{} customers are stored on more than one shard: {}", duplicates.size(), duplicates);
+        }
+        return duplicates;
+    }
+
+    // Move customers until the order counts are as even as whole customers allow, or maxCustomers
+    // have moved
+    @WriteOperation
+    public synchronized Map<String, Object> rebalance(@Nullable Integer maxCustomers) {
+        if (!shards.isSharded()) {
+            throw new IllegalStateException("Rebalancing needs app.sharding.shards > 1");
+        }
+        long started = System.currentTimeMillis();
+        int limit = maxCustomers != null ? maxCustomers : DEFAULT_MAX_CUSTOMERS;
+        long[] orders = new long[shards.getCount()];
+        for (int shard = 0; shard < orders.length; shard++) {
+            orders[shard] = shards.read(shard, () -> count("SELECT COUNT(*) FROM orders"));
+        }
+
+        int movedCustomers = 0;
+        long movedOrders = 0;
+        while (movedCustomers < limit) {
+            int from = 0;
+            int to = 1;
+            for (int shard = 1; shard < orders.length; shard++) {
+                if (orders[shard] > orders[from]) {
+                    from = shard;
+                }
+                if (orders[shard] < orders[to]) {
+                    to = shard;
+                }
+            }
+            if (from == to) {
+                break;
+            }
+            // Moving more than half the gap would only swap the two shards' roles
+            long budget = (orders[from] - orders[to]) / 2;
+            List<Long> batch = new ArrayList<>();
+            long batchOrders = pickBatch(from, budget, Math.min(BATCH_SIZE, limit - movedCustomers), batch);
+            if (batch.isEmpty()) {
+                break;
+            }
+            move(batch, from, to);
+            orders[from] -= batchOrders;
+            orders[to] += batchOrders;
+            movedCustomers += batch.size();
+            movedOrders += batchOrders;
+        }
+
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("movedCustomers", movedCustomers);
+        run.put("movedOrders", movedOrders);
+        run.put("millis", System.currentTimeMillis() - started);
+        if (movedCustomers > 0) {
+            log.info("Moved {} customers with {} orders between shards in {} ms",
+                    movedCustomers, movedOrders, run.get("millis"));
+        }
+        run.putAll(report());
+        return run;
+    }
+
+    // Customers on the shard, lowest ids first, whose orders fit into the budget; returns their
+    // order count. The newest customer and the owner of the newest order stay: on shard 0 SQLite
+    // hands out max(id) + 1, so moving them away would let their ids be given out again.
+    private long pickBatch(int shard, long budget, int size, List<Long> batch) {
+        return shards.read(shard, () -> {
+            long total = 0;
+            List<Map<String, Object>> candidates = jdbcTemplate.queryForList(
+                    "SELECT c.id AS id, COUNT(o.id) AS orders FROM customers c JOIN orders o ON o.customer_id = c.id " +
+                    "WHERE c.id < (SELECT MAX(id) FROM customers) " +
+                    "AND c.id <> (SELECT customer_id FROM orders WHERE id = (SELECT MAX(id) FROM orders)) " +
+                    "GROUP BY c.id ORDER BY c.id LIMIT ?", size * 4);
+            for (Map<String, Object> candidate : candidates) {
+                long customerOrders = ((Number) candidate.get("orders")).longValue();
+                if (total + customerOrders > budget) {
+                    continue;
+                }
+                batch.add(((Number) candidate.get("id")).longValue());
+                total += customerOrders;
+                if (batch.size() == size) {
+                    break;
+                }
+            }
+            return total;
+        });
+    }
+
+    private void move(List<Long> customerIds, int from, int to) {
+        String ids = idList(customerIds);
+        shards.write(from, () -> {
+            Rows customers = rows("SELECT * FROM customers WHERE id IN (" + ids + ")", false);
+            Rows orders = rows("SELECT * FROM orders WHERE customer_id IN (" + ids + ")", true);
+
+            shards.write(to, () -> {
+                List<Map<String, Object>> sequences = jdbcTemplate.queryForList(
+                        "SELECT name, seq FROM sqlite_sequence WHERE name IN ('customers', 'orders')");
+                customers.insertInto("customers");
+                orders.insertInto("orders");
+                for (Map<String, Object> sequence : sequences) {
+                    jdbcTemplate.update("UPDATE sqlite_sequence SET seq = ? WHERE name = ?",
+                            sequence.get("seq"), sequence.get("name"));
+                }
+                List<Object[]> movedIn = new ArrayList<>();
+                for (Long customerId : customerIds) {
+                    if (shards.homeShard(customerId) != to) {
+                        movedIn.add(new Object[] { customerId });
+                    }
+                }
+                if (!movedIn.isEmpty()) {
+                    jdbcTemplate.batchUpdate("INSERT OR IGNORE INTO shard_moved_customers (customer_id) VALUES (?)", movedIn);
+                }
+                salesRollups.applyMoved(orders.snapshots, 1);
+                return null;
+            });
+            // New requests go to the target once the source rows are gone for good
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    for (Long customerId : customerIds) {
+                        shards.recordMove(customerId, to);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_ROLLED_BACK) {
+                        undoCopy(customerIds, orders.snapshots, to);
+                    } else if (status == STATUS_UNKNOWN) {
+                        log.error("Moving customers {} off shard {} may not have committed; they may be on shards {} and {}",
+                                ids, from, from, to);
+                    }
+                }
+            });
+
+            jdbcTemplate.update("DELETE FROM orders WHERE customer_id IN (" + ids + ")");
+            jdbcTemplate.update("DELETE FROM customers WHERE id IN (" + ids + ")");
+            jdbcTemplate.update("DELETE FROM shard_moved_customers WHERE customer_id IN (" + ids + ")");
+            salesRollups.applyMoved(orders.snapshots, -1);
+            return null;
+        });
+    }
+
+    // The source kept the batch, so the target's copy goes. Runs after the source transaction has
+    // completed, hence in a new transaction of its own.
+    private void undoCopy(List<Long> customerIds, List<OrderSnapshot> snapshots, int to) {
+        String ids = idList(customerIds);
+        try {
+            shards.write(to, () -> {
+                jdbcTemplate.update("DELETE FROM orders WHERE customer_id IN (" + ids + ")");
+                jdbcTemplate.update("DELETE FROM customers WHERE id IN (" + ids + ")");
+                jdbcTemplate.update("DELETE FROM shard_moved_customers WHERE customer_id IN (" + ids + ")");
+                salesRollups.applyMoved(snapshots, -1);
+                return null;
+            });
+            log.warn("Moving customers {} to shard {} was rolled back", ids, to);
+        } catch (RuntimeException e) {
+            log.error("Could not remove customers {} copied to shard {} after the move was rolled back: {}",
+                    ids, to, e.getMessage());
+        }
+    }
+
+    private Rows rows(String sql, boolean orders) {
+        Rows rows = new Rows();
+        jdbcTemplate.query(sql, rs -> {
+            if (rows.columns.isEmpty()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                for (int i = 1; i <= meta.getColumnCount(); i++) {
+                    rows.columns.add(meta.getColumnName(i));
+                }
+            }
+            Object[] values = new Object[rows.columns.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = rs.getObject(i + 1);
+            }
+            rows.values.add(values);
+            if (orders) {
+                Timestamp orderDate = rs.getTimestamp("order_date");
+                LocalDateTime date = orderDate != null ? orderDate.toLocalDateTime() : null;
+                rows.snapshots.add(new OrderSnapshot(rs.getLong("id"), rs.getLong("customer_id"), date,
+                        OrderStatus.valueOf(rs.getString("status")), rs.getBigDecimal("total_amount")));
+            }
+        });
+        return rows;
+    }
+
+    private long count(String sql) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class);
+        return count != null ? count : 0L;
+    }
+
+    private static String idList(List<Long> ids) {
+        StringJoiner list = new StringJoiner(",");
+        for (Long id : ids) {
+            list.add(Long.toString(id));
+        }
+        return list.toString();
+    }
+
+    // Raw column values, copied as stored so no type conversion can change them on the way
+    private final class Rows {
+        private final List<String> columns = new ArrayList<>();
+        private final List<Object[]> values = new ArrayList<>();
+        private final List<OrderSnapshot> snapshots = new ArrayList<>();
+
+        void insertInto(String table) {
+            if (values.isEmpty()) {
+                return;
+            }
+            String placeholders = String.join(", ", Collections.nCopies(columns.size(), "?"));
+            jdbcTemplate.batchUpdate("INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES (" +
+                    placeholders + ")", values);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.ecommerce.shard;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Table;
+import javax.persistence.metamodel.EntityType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Hibernate (ddl-auto=update) only manages shard 0. This copies the entity tables and their
+// indexes to every other shard, adding columns shard 0 has gained since, before SchemaMigrations
+// and the other schema initializers run on each shard.
+//
+// On shards after the first, customers and orders get AUTOINCREMENT ids whose sequence starts at
+// the shard's id base, so every id names the shard it was created on (see Shards).
+@Component
+@DependsOn("entityManagerFactory")
+public class ShardSchema {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardSchema.class);
+
+    private static final Set<String> SHARD_KEYED_TABLES = Set.of("customers", "orders");
+
+    // Hibernate's "id integer, ..., primary key (id)" made into "id integer primary key autoincrement"
+    private static final Pattern ID_COLUMN = Pattern.compile("\\(\\s*id\\s+integer\\s*,", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ID_PRIMARY_KEY = Pattern.compile(",\\s*primary\\s+key\\s*\\(\\s*id\\s*\\)", Pattern.CASE_INSENSITIVE);
+
+    private final Shards shards;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    public ShardSchema(Shards shards, JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.shards = shards;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @PostConstruct
+    public void copyToShards() {
+        if (!shards.isSharded()) {
+            return;
+        }
+        // Archived orders would have to be split by customer first; see OrderArchive
+        Integer partitions = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' AND name = 'order_archive_partitions'",
+                Integer.class);
+        if (partitions != null && partitions > 0) {
+            Long archived = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_archive_partitions", Long.class);
+            if (archived != null && archived > 0) {
+                throw new IllegalStateException("app.sharding.shards > 1 cannot be used with archived orders");
+            }
+        }
+
+        Map<String, String> tables = new LinkedHashMap<>();
+        Map<String, Map<String, String>> columns = new LinkedHashMap<>();
+        List<String> indexes = new ArrayList<>();
+        for (String table : entityTables()) {
+            tables.put(table, jdbcTemplate.queryForObject(
+                    "SELECT sql FROM sqlite_master WHERE type = 'table' AND name = ?", String.class, table));
+            columns.put(table, columnTypes(table));
+            indexes.addAll(jdbcTemplate.queryForList(
+                    "SELECT sql FROM sqlite_master WHERE type = 'index' AND tbl_name = ? AND sql IS NOT NULL",
+                    String.class, table));
+        }
+
+        for (int shard = 1; shard < shards.getCount(); shard++) {
+            int current = shard;
+            shards.onShard(shard, () -> copyTo(current, tables, columns, indexes));
+        }
+    }
+
+    private void copyTo(int shard, Map<String, String> tables, Map<String, Map<String, String>> columns,
+                        List<String> indexes) {
+        tables.forEach((table, ddl) -> {
+            Map<String, String> existing = columnTypes(table);
+            if (existing.isEmpty()) {
+                jdbcTemplate.execute(SHARD_KEYED_TABLES.contains(table) ? autoincrement(ddl) : ddl);
+                log.info("Created table {} on shard {}", table, shard);
+            } else {
+                columns.get(table).forEach((column, type) -> {
+                    if (!existing.containsKey(column)) {
+                        jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+                    }
+                });
+            }
+        });
+        for (String index : indexes) {
+            jdbcTemplate.execute(index.replaceFirst("(?i)^\\s*create\\s+(unique\\s+)?index\\s+(if\\s+not\\s+exists\\s+)?",
+                    "CREATE $1INDEX IF NOT EXISTS "));
+        }
+        // Ids continue from the shard's base; sqlite_sequence has no unique name, hence insert-if-missing
+        for (String table : SHARD_KEYED_TABLES) {
+            jdbcTemplate.update("INSERT INTO sqlite_sequence (name, seq) SELECT ?, ? " +
+                    "WHERE NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = ?)",
+                    table, Shards.idBase(shard), table);
+        }
+    }
+
+    private static String autoincrement(String ddl) {
+        String withId = ID_COLUMN.matcher(ddl).replaceFirst("(id integer primary key autoincrement,");
+        String result = ID_PRIMARY_KEY.matcher(withId).replaceFirst("");
+        if (result.equals(ddl) || withId.equals(ddl) || result.equals(withId)) {
+            throw new IllegalStateException("Unexpected id column in " + ddl);
+        }
+        return result;
+    }
+
+    private List<String> entityTables() {
+        List<String> tables = new ArrayList<>();
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            Table table = entity.getJavaType().getAnnotation(Table.class);
+            tables.add(table != null && !table.name().isEmpty() ? table.name() : entity.getName());
+        }
+        tables.sort(null);
+        return tables;
+    }
+
+    private Map<String, String> columnTypes(String table) {
+        Map<String, String> columns = new LinkedHashMap<>();
+        jdbcTemplate.query("PRAGMA table_info(" + table + ")", rs -> {
+            columns.put(rs.getString("name"), rs.getString("type"));
+        });
+        return columns;
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.ecommerce.shard;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+// Customers and their orders spread over app.sharding.shards SQLite files, each with its own
+// single writer, so writes for customers on different shards never wait for each other.
+//
+// Placement: shard k (k > 0) hands out customer and order ids from k << ID_BITS upwards, so an id
+// names its shard; shard 0 keeps the plain ids it always had. A new customer is placed by a hash
+// of the email (the id does not exist yet). Customers moved by the ShardRebalancer keep their ids
+// and are looked up in an in-memory directory instead.
+//
+// Writes for one customer run in one transaction on that customer's shard: a service binds the
+// shard with use() at the top of its @Transactional method, before the first statement, and the
+// routing DataSource opens the connection there. Queries across customers are scattered over every
+// shard in their own read-only transactions (gather, sum, ...) and merged here.
+//
+// With a single shard (the default) every method falls through to plain, unrouted execution.
+@Component
+public class Shards {
+
+    public static final int ID_BITS = 40;
+
+    private final int count;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTemplate;
+    private final TransactionTemplate writeTemplate;
+
+    // Customers moved off the shard their id names, with the shard they live on now
+    private final Map<Long, Integer> moved = new ConcurrentHashMap<>();
+
+    @Autowired
+    public Shards(@Value("${app.sharding.shards:1}") int count,
+                  JdbcTemplate jdbcTemplate,
+                  TransactionTemplate transactionTemplate,
+                  PlatformTransactionManager transactionManager) {
+        if (count < 1 || count > 1024) {
+            throw new IllegalArgumentException("app.sharding.shards must be between 1 and 1024");
+        }
+        this.count = count;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTemplate.setReadOnly(true);
+        this.writeTemplate = new TransactionTemplate(transactionManager);
+        this.writeTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    // First id handed out by a shard's own tables (exclusive)
+    public static long idBase(int shard) {
+        return (long) shard << ID_BITS;
+    }
+
+    // Placement
+
+    public int shardForNewCustomer(String email) {
+        if (count == 1 || email == null) {
+            return 0;
+        }
+        int hash = email.toLowerCase(Locale.ROOT).hashCode();
+        // Spread the bits; String.hashCode of similar emails differs mostly in the low bits
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        return Math.floorMod(hash, count);
+    }
+
+    public int shardOfCustomer(Long customerId) {
+        if (count == 1 || customerId == null) {
+            return 0;
+        }
+        Integer shard = moved.get(customerId);
+        return shard != null ? shard : homeShard(customerId);
+    }
+
+    // Orders of moved customers keep ids naming their old shard; those are found by probing
+    public int shardOfOrder(Long orderId) {
+        if (count == 1 || orderId == null) {
+            return 0;
+        }
+        int home = homeShard(orderId);
+        if (moved.isEmpty()) {
+            return home;
+        }
+        for (int i = 0; i < count; i++) {
+            int shard = (home + i) % count;
+            boolean found = read(shard, () -> !jdbcTemplate.queryForList(
+                    "SELECT id FROM orders WHERE id = ?", Long.class, orderId).isEmpty());
+            if (found) {
+                return shard;
+            }
+        }
+        return home;
+    }
+
+    // The shard an id was created on. Ids beyond the configured shards cannot exist; they go to
+    // shard 0 to be reported as not found.
+    int homeShard(long id) {
+        long shard = id >>> ID_BITS;
+        return id > 0 && shard < count ? (int) shard : 0;
+    }
+
+    void recordMove(Long customerId, int shard) {
+        if (shard == homeShard(customerId)) {
+            moved.remove(customerId);
+        } else {
+            moved.put(customerId, shard);
+        }
+    }
+
+    public int getMovedCount() {
+        return moved.size();
+    }
+
+    // Group keys (customer ids, order ids) by the shard they live on, shards in ascending order
+    public <K> Map<Integer, List<K>> groupByShard(Collection<K> keys, Function<K, Integer> shardOf) {
+        Map<Integer, List<K>> groups = new LinkedHashMap<>();
+        if (count == 1) {
+            groups.put(0, new ArrayList<>(keys));
+            return groups;
+        }
+        for (int shard = 0; shard < count; shard++) {
+            groups.put(shard, new ArrayList<>());
+        }
+        for (K key : keys) {
+            groups.get(shardOf.apply(key)).add(key);
+        }
+        groups.values().removeIf(List::isEmpty);
+        return groups;
+    }
+
+    // Binding
+
+    // Pin the current transaction to a shard. Must come before the transaction's first statement;
+    // joining a transaction already running on the same shard is fine.
+    public void use(int shard) {
+        if (count == 1) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Binding shard " + shard + " needs a transaction");
+        }
+        ShardContext.Binding current = ShardContext.current();
+        if (current != null && current.shard == shard) {
+            return;
+        }
+        if (current != null && current.routed) {
+            throw new IllegalStateException("Transaction already runs on shard " + current.shard
+                    + ", cannot switch to shard " + shard);
+        }
+        ShardContext.Binding previous = ShardContext.bind(shard);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                ShardContext.restore(previous);
+            }
+        });
+    }
+
+    // Run non-transactional work (DDL, maintenance) against one shard
+    public void onShard(int shard, Runnable work) {
+        if (count == 1) {
+            work.run();
+            return;
+        }
+        ShardContext.Binding previous = ShardContext.bind(shard);
+        try {
+            work.run();
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    public void forEachShard(IntConsumer work) {
+        for (int shard = 0; shard < count; shard++) {
+            int current = shard;
+            onShard(shard, () -> work.accept(current));
+        }
+    }
+
+    // Read from one shard in its own read-only transaction. With one shard the work simply joins
+    // the caller's transaction, as it did before sharding.
+    public <T> T read(int shard, Supplier<T> work) {
+        if (count == 1) {
+            return work.get();
+        }
+        ShardContext.Binding previous = ShardContext.bind(shard);
+        try {
+            return readTemplate.execute(status -> work.get());
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    // Write to one shard in a transaction of its own, or in the caller's if that already runs on
+    // the shard (a second transaction would wait for the shard's only writer connection forever)
+    public <T> T write(int shard, Supplier<T> work) {
+        if (count == 1) {
+            return transactionTemplate.execute(status -> work.get());
+        }
+        ShardContext.Binding current = ShardContext.current();
+        if (current != null && current.shard == shard && current.routed
+                && TransactionSynchronizationManager.isActualTransactionActive()) {
+            return work.get();
+        }
+        ShardContext.Binding previous = ShardContext.bind(shard);
+        try {
+            return writeTemplate.execute(status -> work.get());
+        } finally {
+            ShardContext.restore(previous);
+        }
+    }
+
+    // Scatter-gather
+
+    // Concatenation of every shard's results, shard 0 first
+    public <T> List<T> gather(Supplier<List<T>> query) {
+        if (count == 1) {
+            return query.get();
+        }
+        List<T> all = new ArrayList<>();
+        for (int shard = 0; shard < count; shard++) {
+            all.addAll(read(shard, query));
+        }
+        return all;
+    }
+
+    // Every shard's results merged into one order
+    public <T> List<T> gather(Supplier<List<T>> query, Comparator<? super T> order) {
+        if (count == 1) {
+            return query.get();
+        }
+        List<T> all = gather(query);
+        all.sort(order);
+        return all;
+    }
+
+    // Top "limit" rows overall from each shard's top "limit" rows (keyset pages, top-N reports)
+    public <T> List<T> gather(Supplier<List<T>> query, Comparator<? super T> order, int limit) {
+        if (count == 1) {
+            return query.get();
+        }
+        List<T> all = gather(query, order);
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    public long sum(LongSupplier query) {
+        if (count == 1) {
+            return query.getAsLong();
+        }
+        long total = 0;
+        for (int shard = 0; shard < count; shard++) {
+            total += read(shard, query::getAsLong);
+        }
+        return total;
+    }
+
+    public <T> Optional<T> findFirst(Supplier<Optional<T>> query) {
+        if (count == 1) {
+            return query.get();
+        }
+        for (int shard = 0; shard < count; shard++) {
+            Optional<T> found = read(shard, query);
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    public boolean anyMatch(BooleanSupplier query) {
+        if (count == 1) {
+            return query.getAsBoolean();
+        }
+        for (int shard = 0; shard < count; shard++) {
+            if (read(shard, query::getAsBoolean)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
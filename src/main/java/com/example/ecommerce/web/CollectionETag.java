@@ -0,0 +1,18 @@
+package com.example.ecommerce.web;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Marks a GET endpoint whose response depends only on the request and on the listed collections
+// (CollectionVersions names). ConditionalGetInterceptor answers a matching If-None-Match with 304
+// before the handler runs. Not for responses that change with the clock, like "last 30 days".
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CollectionETag {
+
+    String[] value();
+}
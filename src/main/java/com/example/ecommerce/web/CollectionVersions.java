@@ -0,0 +1,92 @@
+package com.example.ecommerce.web;
+
+import com.example.ecommerce.event.CustomerChangedEvent;
+import com.example.ecommerce.event.OrderChangedEvent;
+import com.example.ecommerce.event.OrdersArchivedEvent;
+import com.example.ecommerce.event.ProductChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One counter per collection, bumped after every committed change, so list endpoints get an ETag
+// without looking at the data. The counters live in memory; a random epoch in every tag makes
+// sure tags handed out before a restart never match again.
+//
+// The bump runs after completion rather than after commit: that callback fires once every
+// AFTER_COMMIT listener is done, so by the time a new tag is visible the product cache, the search
+// index and the live order counters have caught up, and a body is never older than its tag.
+// A rolled back transaction bumps too, which only costs clients one extra full response.
+@Component
+public class CollectionVersions {
+
+    public static final String PRODUCTS = "products";
+    public static final String ORDERS = "orders";
+    public static final String CUSTOMERS = "customers";
+
+    private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 16);
+    private final Map<String, Collection> collections = Map.of(
+            PRODUCTS, new Collection(), ORDERS, new Collection(), CUSTOMERS, new Collection());
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onProductChanged(ProductChangedEvent event) {
+        collections.get(PRODUCTS).bump();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        collections.get(ORDERS).bump();
+    }
+
+    // Archived orders drop out of the customer and status listings
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onOrdersArchived(OrdersArchivedEvent event) {
+        collections.get(ORDERS).bump();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMPLETION, fallbackExecution = true)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        collections.get(CUSTOMERS).bump();
+    }
+
+    // Weak ETag over the given collections, e.g. W/"3fa9c1-12.40"
+    public String etag(String... names) {
+        StringBuilder tag = new StringBuilder("W/\"").append(epoch);
+        char separator = '-';
+        for (String name : names) {
+            tag.append(separator).append(collection(name).version.get());
+            separator = '.';
+        }
+        return tag.append('"').toString();
+    }
+
+    // Time of the most recent change to any of the given collections (startup time if none yet)
+    public long lastModified(String... names) {
+        long latest = 0;
+        for (String name : names) {
+            latest = Math.max(latest, collection(name).changedAt);
+        }
+        return latest;
+    }
+
+    private Collection collection(String name) {
+        Collection collection = collections.get(name);
+        if (collection == null) {
+            throw new IllegalArgumentException("Unknown collection: " + name);
+        }
+        return collection;
+    }
+
+    private static final class Collection {
+        private final AtomicLong version = new AtomicLong();
+        private volatile long changedAt = System.currentTimeMillis();
+
+        void bump() {
+            version.incrementAndGet();
+            changedAt = System.currentTimeMillis();
+        }
+    }
+}
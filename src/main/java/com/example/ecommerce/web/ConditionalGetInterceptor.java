@@ -0,0 +1,40 @@
+package com.example.ecommerce.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+// Conditional GET for @CollectionETag endpoints. The tag is taken before the handler reads any
+// data: a change committed in between makes the body newer than its tag, never older, so the
+// client simply revalidates on its next poll.
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+
+    private final CollectionVersions collectionVersions;
+
+    @Autowired
+    public ConditionalGetInterceptor(CollectionVersions collectionVersions) {
+        this.collectionVersions = collectionVersions;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        CollectionETag annotation = ((HandlerMethod) handler).getMethodAnnotation(CollectionETag.class);
+        if (annotation == null || !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+            return true;
+        }
+        String[] collections = annotation.value();
+        // Sets ETag and Last-Modified on the response; true means 304 has been sent
+        boolean notModified = new ServletWebRequest(request, response).checkNotModified(
+                collectionVersions.etag(collections), collectionVersions.lastModified(collections));
+        return !notModified;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.ecommerce.web;
+
+import com.example.ecommerce.dto.EntityVersion;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// ETag and Last-Modified values for single entities, derived from the optimistic lock version
+// (bumped by every update path, including bulk and atomic stock updates) and updatedAt
+public final class ETags {
+
+    private static final Pattern VERSION_TAG = Pattern.compile("(?:W/)?\"v(\\d{1,18})(?:-[^\"]*)?\"");
+
+    private ETags() {}
+
+    public static String entity(long version) {
+        return "W/\"v" + version + "\"";
+    }
+
+    public static String entity(EntityVersion version) {
+        return entity(version.getVersion());
+    }
+
+    // An entity whose response also embeds another collection, like a customer with its orders
+    public static String entity(long version, String collectionTag) {
+        return "W/\"v" + version + "-" + collectionTag.substring(3, collectionTag.length() - 1) + "\"";
+    }
+
+    // The version named by an If-Match header carrying one of the tags above; null when the header
+    // is absent or "*" (no version to compare)
+    public static Long ifMatchVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        Matcher matcher = VERSION_TAG.matcher(ifMatch.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("If-Match must be an ETag returned by this API, e.g. W/\"v3\"");
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    // Epoch millis for Last-Modified, -1 (no header) when unknown
+    public static long lastModified(LocalDateTime updatedAt) {
+        return updatedAt != null ? updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+}
@@ -0,0 +1,298 @@
+package com.example.ecommerce.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Idempotency-Key support for every POST, PUT, PATCH and DELETE under /api/. The first request
+// with a key runs as usual and its response is kept in the IdempotencyStore; later requests with
+// the same key and the same method, path, parameters and body get that response again, marked
+// with "Idempotent-Replayed: true", without reaching the controller. The same key with a different
+// request answers 422.
+//
+// Asynchronous handlers (POST /api/orders) finish on a second, async dispatch; the response is
+// captured there.
+@Component
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final Set<String> MUTATING_METHODS = Set.of("POST", "PUT", "PATCH", "DELETE");
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final String EXECUTION_ATTRIBUTE = IdempotencyFilter.class.getName() + ".execution";
+
+    private final IdempotencyStore idempotencyStore;
+
+    @Autowired
+    public IdempotencyFilter(IdempotencyStore idempotencyStore) {
+        this.idempotencyStore = idempotencyStore;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !request.getRequestURI().startsWith(request.getContextPath() + "/api/")
+                || !MUTATING_METHODS.contains(request.getMethod());
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (isAsyncDispatch(request)) {
+            chain.doFilter(request, response);
+            finish(request, response);
+            return;
+        }
+        String key = request.getHeader(KEY_HEADER);
+        if (key == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!isValidKey(key)) {
+            sendError(response, HttpStatus.BAD_REQUEST,
+                    KEY_HEADER + " must be 1 to " + MAX_KEY_LENGTH + " printable ASCII characters");
+            return;
+        }
+
+        // Form parameters are read through getParameterMap, which needs the body left unread
+        HttpServletRequest requestToUse = request;
+        byte[] body = new byte[0];
+        if (!isForm(request)) {
+            body = StreamUtils.copyToByteArray(request.getInputStream());
+            requestToUse = new CachedBodyRequest(request, body);
+        }
+        byte[] fingerprint = fingerprint(request, body);
+
+        IdempotencyStore.Claim claim;
+        try {
+            claim = idempotencyStore.claim(key, fingerprint);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendError(response, HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for " + KEY_HEADER + " " + key);
+            return;
+        }
+        switch (claim.getOutcome()) {
+            case REPLAY:
+                replay(response, claim.getResponse());
+                return;
+            case MISMATCH:
+                sendError(response, HttpStatus.UNPROCESSABLE_ENTITY,
+                        KEY_HEADER + " " + key + " was already used for a different request");
+                return;
+            case IN_PROGRESS:
+                sendError(response, HttpStatus.CONFLICT,
+                        "A request with " + KEY_HEADER + " " + key + " is still in progress");
+                return;
+            default:
+                break;
+        }
+
+        IdempotencyStore.Execution execution = claim.getExecution();
+        ContentCachingResponseWrapper responseToUse = new ContentCachingResponseWrapper(response);
+        request.setAttribute(EXECUTION_ATTRIBUTE, execution);
+        try {
+            chain.doFilter(requestToUse, responseToUse);
+        } catch (IOException | ServletException | RuntimeException e) {
+            idempotencyStore.complete(execution, null);
+            throw e;
+        }
+        if (isAsyncStarted(request)) {
+            // Releases the key if the async dispatch never comes (timeouts, dropped connections)
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    idempotencyStore.complete(execution, null);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    idempotencyStore.complete(execution, null);
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        }
+        finish(request, responseToUse);
+    }
+
+    // Keep the response once the handler is done, then send it
+    private void finish(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (isAsyncStarted(request)) {
+            return;
+        }
+        IdempotencyStore.Execution execution = (IdempotencyStore.Execution) request.getAttribute(EXECUTION_ATTRIBUTE);
+        ContentCachingResponseWrapper wrapper = WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+        if (execution == null || wrapper == null) {
+            return;
+        }
+        int status = wrapper.getStatus();
+        byte[] body = wrapper.getContentAsByteArray();
+        // A bodiless error may come from sendError, whose body the error page only renders later
+        boolean kept = IdempotencyStore.isKept(status) && (status < 400 || body.length > 0);
+        idempotencyStore.complete(execution, kept
+                ? idempotencyStore.response(execution.getFingerprint(), status, wrapper.getContentType(), body)
+                : null);
+        wrapper.copyBodyToResponse();
+    }
+
+    private void replay(HttpServletResponse response, IdempotencyStore.StoredResponse stored) throws IOException {
+        response.setStatus(stored.getStatus());
+        if (stored.getContentType() != null) {
+            response.setContentType(stored.getContentType());
+        }
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.getBody().length);
+        response.getOutputStream().write(stored.getBody());
+    }
+
+    private void sendError(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(message);
+    }
+
+    private static boolean isValidKey(String key) {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c < 0x20 || c > 0x7e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isForm(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(MediaType.APPLICATION_FORM_URLENCODED_VALUE);
+    }
+
+    // SHA-256 of what identifies the request: method, path, parameters (query and form) and body
+    private static byte[] fingerprint(HttpServletRequest request, byte[] body) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, request.getMethod());
+        update(digest, request.getRequestURI());
+        for (Map.Entry<String, String[]> parameter : new TreeMap<>(request.getParameterMap()).entrySet()) {
+            update(digest, parameter.getKey());
+            for (String value : parameter.getValue()) {
+                update(digest, value);
+            }
+        }
+        update(digest, request.getContentType());
+        digest.update(body);
+        return digest.digest();
+    }
+
+    // Length-prefixed, so ("ab", "c") and ("a", "bc") differ
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = value != null ? value.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        digest.update((byte) (bytes.length >>> 24));
+        digest.update((byte) (bytes.length >>> 16));
+        digest.update((byte) (bytes.length >>> 8));
+        digest.update((byte) bytes.length);
+        digest.update(bytes);
+    }
+
+    // The request with its body already read into memory, for the handler to read again
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is in memory, so it is all available, and read, right away
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        if (!isFinished()) {
+                            listener.onDataAvailable();
+                        }
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.example.ecommerce.web;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Responses of requests sent with an Idempotency-Key, kept for app.idempotency.ttl so a retry gets
+// the original response instead of running the request again (see IdempotencyFilter). Recent
+// responses are held in memory, bounded by their body size; every response is also written to the
+// idempotency_keys table (on shard 0) so replays survive eviction and restarts.
+//
+// A key is claimed before its request runs. Requests arriving with a key that is still being
+// executed wait for that execution and replay its response rather than running themselves.
+// Responses that are worth retrying (5xx, 409, 429) are not kept; the waiting requests then try
+// to claim the key again, and one of them runs.
+@Component
+public class IdempotencyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    private static final int PURGE_BATCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readTemplate;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+
+    private final Cache<String, StoredResponse> recent;
+    private final ConcurrentHashMap<String, Execution> inFlight = new ConcurrentHashMap<>();
+
+    @Autowired
+    public IdempotencyStore(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${app.idempotency.wait:30s}") Duration waitTimeout,
+                            @Value("${app.idempotency.memory:16MB}") DataSize memory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.readTemplate = new TransactionTemplate(transactionManager);
+        this.readTemplate.setReadOnly(true);
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.recent = Caffeine.newBuilder()
+                .maximumWeight(memory.toBytes())
+                .weigher((String key, StoredResponse response) -> key.length() + response.body.length + 64)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public Claim claim(String key, byte[] fingerprint) throws InterruptedException {
+        long deadline = System.nanoTime() + waitTimeout.toNanos();
+        while (true) {
+            Execution execution = new Execution(key, fingerprint);
+            Execution running = inFlight.putIfAbsent(key, execution);
+            if (running == null) {
+                // An execution that finished just before was stored before it left inFlight
+                StoredResponse stored;
+                try {
+                    stored = find(key);
+                } catch (RuntimeException e) {
+                    complete(execution, null);
+                    throw e;
+                }
+                if (stored == null) {
+                    return new Claim(Outcome.EXECUTE, execution, null);
+                }
+                complete(execution, null);
+                return replayOf(stored, fingerprint);
+            }
+            if (!Arrays.equals(running.fingerprint, fingerprint)) {
+                return new Claim(Outcome.MISMATCH, null, null);
+            }
+            try {
+                StoredResponse result = running.result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (result != null) {
+                    return new Claim(Outcome.REPLAY, null, result);
+                }
+            } catch (TimeoutException e) {
+                return new Claim(Outcome.IN_PROGRESS, null, null);
+            } catch (ExecutionException e) {
+                // Not possible, executions complete normally; claim again
+            }
+        }
+    }
+
+    // Finish a claimed execution with its response, or with null when it is not to be kept. Only
+    // the first call for an execution counts.
+    public void complete(Execution execution, StoredResponse response) {
+        if (!execution.finished.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (response != null) {
+                recent.put(execution.key, response);
+                persist(execution.key, response);
+            }
+        } finally {
+            inFlight.remove(execution.key, execution);
+            execution.result.complete(response);
+        }
+    }
+
+    public StoredResponse response(byte[] fingerprint, int status, String contentType, byte[] body) {
+        return new StoredResponse(fingerprint, status, contentType, body, System.currentTimeMillis() + ttl.toMillis());
+    }
+
+    public static boolean isKept(int status) {
+        return status < 500 && status != 409 && status != 429;
+    }
+
+    // Expired keys, a batch per transaction so writers are only held up briefly
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval:3600000}",
+               initialDelayString = "${app.idempotency.purge-interval:3600000}")
+    public void purge() {
+        long now = System.currentTimeMillis();
+        int removed = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> jdbcTemplate.update(
+                    "DELETE FROM idempotency_keys WHERE rowid IN " +
+                            "(SELECT rowid FROM idempotency_keys WHERE expires_at <= ? LIMIT ?)",
+                    now, PURGE_BATCH_SIZE));
+            removed += batch;
+        } while (batch > 0);
+        if (removed > 0) {
+            log.info("Purged {} expired idempotency keys", removed);
+        }
+    }
+
+    private StoredResponse find(String key) {
+        long now = System.currentTimeMillis();
+        StoredResponse cached = recent.getIfPresent(key);
+        if (cached != null) {
+            return cached.expiresAt > now ? cached : null;
+        }
+        List<StoredResponse> rows = readTemplate.execute(status -> jdbcTemplate.query(
+                "SELECT fingerprint, status, content_type, body, expires_at FROM idempotency_keys " +
+                        "WHERE idempotency_key = ? AND expires_at > ?",
+                (rs, rowNum) -> new StoredResponse(rs.getBytes("fingerprint"), rs.getInt("status"),
+                        rs.getString("content_type"), rs.getBytes("body"), rs.getLong("expires_at")),
+                key, now));
+        if (rows == null || rows.isEmpty()) {
+            return null;
+        }
+        recent.put(key, rows.get(0));
+        return rows.get(0);
+    }
+
+    // A response that only lives in memory is still replayed until it is evicted, so a failed
+    // write is logged rather than failing the request that has already run
+    private void persist(String key, StoredResponse response) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.update(
+                    "INSERT OR REPLACE INTO idempotency_keys " +
+                            "(idempotency_key, fingerprint, status, content_type, body, expires_at) VALUES (?, ?, ?, ?, ?, ?)",
+                    key, response.fingerprint, response.status, response.contentType, response.body, response.expiresAt));
+        } catch (DataAccessException e) {
+            log.warn("Could not persist idempotency key {}: {}", key, e.getMessage());
+        }
+    }
+
+    private static Claim replayOf(StoredResponse stored, byte[] fingerprint) {
+        return Arrays.equals(stored.fingerprint, fingerprint)
+                ? new Claim(Outcome.REPLAY, null, stored)
+                : new Claim(Outcome.MISMATCH, null, null);
+    }
+
+    public enum Outcome {
+        // The caller runs the request and completes the execution
+        EXECUTE,
+        // The key's response is known, send it again
+        REPLAY,
+        // The key was used for a different request
+        MISMATCH,
+        // Another request with the key is still running after the wait timeout
+        IN_PROGRESS
+    }
+
+    public static final class Claim {
+        private final Outcome outcome;
+        private final Execution execution;
+        private final StoredResponse response;
+
+        Claim(Outcome outcome, Execution execution, StoredResponse response) {
+            this.outcome = outcome;
+            this.execution = execution;
+            this.response = response;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public Execution getExecution() {
+            return execution;
+        }
+
+        public StoredResponse getResponse() {
+            return response;
+        }
+    }
+
+    public static final class Execution {
+        private final String key;
+        private final byte[] fingerprint;
+        private final CompletableFuture<StoredResponse> result = new CompletableFuture<>();
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        Execution(String key, byte[] fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+
+        public byte[] getFingerprint() {
+            return fingerprint;
+        }
+    }
+
+    public static final class StoredResponse {
+        private final byte[] fingerprint;
+        private final int status;
+        private final String contentType;
+        private final byte[] body;
+        private final long expiresAt;
+
+        StoredResponse(byte[] fingerprint, int status, String contentType, byte[] body, long expiresAt) {
+            this.fingerprint = fingerprint;
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body != null ? body : new byte[0];
+            this.expiresAt = expiresAt;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.ecommerce;
+
+import org.springframework.boot.test.util.TestPropertyValues;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Points the application at target/test-databases/<test.database>/ (default "default"), shard
+// files included. Whatever a previous run left there is removed the first time a database is used
+// in this JVM, and mvn clean removes the rest.
+public class TestDatabase implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+
+    private static final Path ROOT = Paths.get("target", "test-databases");
+    private static final Set<String> CLEARED = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public void initialize(ConfigurableApplicationContext context) {
+        String name = context.getEnvironment().getProperty("test.database", "default");
+        Path directory = ROOT.resolve(name).toAbsolutePath();
+        try {
+            if (CLEARED.add(name)) {
+                FileSystemUtils.deleteRecursively(directory);
+            }
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        TestPropertyValues.of(
+                "spring.datasource.url=jdbc:sqlite:" + directory.resolve("ecommerce.db"),
+                "app.sharding.url-pattern=jdbc:sqlite:" + directory.resolve("ecommerce-shard{n}.db"))
+                .applyTo(context);
+    }
+}
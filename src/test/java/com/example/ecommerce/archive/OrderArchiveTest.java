@@ -0,0 +1,163 @@
+package com.example.ecommerce.archive;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.entity.OrderStatus;
+import com.example.ecommerce.repository.OrderRepository;
+import com.example.ecommerce.service.CustomerService;
+import com.example.ecommerce.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Reads through OrderRepository answer the same before and after a month moves to its partition
+@EcommerceTest
+@TestPropertySource(properties = { "test.database=archive", "app.orders.archive.enabled=true" })
+class OrderArchiveTest {
+
+    private static final LocalDateTime MARCH = LocalDateTime.of(2021, 3, 1, 0, 0);
+
+    @Autowired
+    private OrderArchive orderArchive;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void readsAreUnchangedByArchivingAMonth() {
+        Customer customer = customerService.createCustomer(new Customer("Archive", "Reader", "archive.reader@example.com"));
+        // Archived and hot orders interleave in the month, two pairs share a timestamp
+        List<Long> archived = new ArrayList<>();
+        archived.add(order(customer, "12.50", OrderStatus.DELIVERED, MARCH.plusDays(2)));
+        archived.add(order(customer, "7.25", OrderStatus.CANCELLED, MARCH.plusDays(4)));
+        Long hot = order(customer, "30.00", OrderStatus.PENDING, MARCH.plusDays(4));
+        archived.add(order(customer, "19.99", OrderStatus.DELIVERED, MARCH.plusDays(4)));
+        archived.add(order(customer, "5.00", OrderStatus.DELIVERED, MARCH.plusDays(9).plusHours(3)));
+        archived.add(order(customer, "44.10", OrderStatus.CANCELLED, MARCH.plusDays(20)));
+        archived.add(order(customer, "8.40", OrderStatus.DELIVERED, MARCH.plusDays(30).plusHours(23)));
+        // The newest order always stays hot
+        orderService.createOrder(customer.getId(), "1 Archive Road", new BigDecimal("3.00"));
+
+        LocalDateTime start = MARCH.minusDays(1);
+        LocalDateTime end = MARCH.plusMonths(1).plusDays(1);
+        Reads before = reads(start, end);
+        assertThat(before.range).hasSize(7);
+        // Cancelled orders are no sales; the pending one is
+        assertThat(before.monthlySales).contains("2021-3 75.89 x5");
+
+        Map<String, Object> run = orderArchive.archiveOlderThan(MARCH.plusMonths(1));
+
+        assertThat(run.get("archived")).isEqualTo(6L);
+        assertThat(orderArchive.getPartitions()).extracting(ArchivePartition::getTable)
+                .containsExactly("orders_archive_2021_03");
+        for (Long id : archived) {
+            assertThat(orderRepository.findById(id)).isEmpty();
+        }
+        Reads after = reads(start, end);
+        assertThat(after.range).isEqualTo(before.range);
+        assertThat(after.pages).isEqualTo(before.pages);
+        assertThat(after.export).isEqualTo(before.export);
+        assertThat(after.exportAll).isEqualTo(before.exportAll);
+        assertThat(after.monthlySales).isEqualTo(before.monthlySales);
+        assertThat(after.totalSales).isEqualTo(before.totalSales);
+        assertThat(after.rangeSales).isEqualTo(before.rangeSales);
+
+        Order found = orderRepository.findArchivedById(archived.get(2)).orElseThrow();
+        assertThat(found.getTotalAmount()).isEqualByComparingTo("19.99");
+        assertThat(found.getStatus()).isEqualTo(OrderStatus.DELIVERED);
+        assertThat(found.getOrderDate()).isEqualTo(MARCH.plusDays(4));
+        assertThat(orderRepository.findArchivedById(hot)).isEmpty();
+        assertThat(orderService.getOrderById(archived.get(0))).isPresent();
+    }
+
+    private Long order(Customer customer, String amount, OrderStatus status, LocalDateTime date) {
+        Order order = orderService.createOrder(customer.getId(), "1 Archive Road", new BigDecimal(amount));
+        jdbcTemplate.update("UPDATE orders SET status = ?, order_date = ? WHERE id = ?",
+                status.name(), Timestamp.valueOf(date), order.getId());
+        return order.getId();
+    }
+
+    private Reads reads(LocalDateTime start, LocalDateTime end) {
+        Reads reads = new Reads();
+        reads.range = describe(orderRepository.findByOrderDateBetween(start, end));
+
+        LocalDateTime afterDate = start;
+        Long afterId = 0L;
+        List<Order> page;
+        do {
+            page = orderRepository.findByOrderDateBetweenAfter(start, end, afterDate, afterId, PageRequest.of(0, 2));
+            reads.pages.add(describe(page));
+            if (!page.isEmpty()) {
+                afterDate = page.get(page.size() - 1).getOrderDate();
+                afterId = page.get(page.size() - 1).getId();
+            }
+        } while (page.size() == 2);
+
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        reads.export = readOnly.execute(status -> consume(orderRepository.streamByOrderDateBetween(start, end)));
+        reads.exportAll = readOnly.execute(status -> consume(orderRepository.streamAllOrders()));
+
+        reads.monthlySales = orderRepository.getMonthlySalesReport().stream()
+                .map(row -> row[0] + "-" + row[1] + " " + amount((BigDecimal) row[2]) + " x" + row[3])
+                .collect(Collectors.toList());
+        reads.totalSales = amount(orderRepository.getTotalSalesAmount());
+        reads.rangeSales = amount(orderRepository.getTotalSalesAmountByDateRange(start, end));
+        return reads;
+    }
+
+    private static List<String> consume(Stream<Order> orders) {
+        try (orders) {
+            return describe(orders.collect(Collectors.toList()));
+        }
+    }
+
+    private static List<String> describe(List<Order> orders) {
+        return orders.stream()
+                .map(order -> order.getId() + "@" + order.getOrderDate() + " " + order.getStatus() + " " +
+                        amount(order.getTotalAmount()))
+                .collect(Collectors.toList());
+    }
+
+    private static String amount(BigDecimal amount) {
+        return amount.stripTrailingZeros().toPlainString();
+    }
+
+    private static final class Reads {
+        private List<String> range;
+        private final List<List<String>> pages = new ArrayList<>();
+        private List<String> export;
+        private List<String> exportAll;
+        private List<String> monthlySales;
+        private String totalSales;
+        private String rangeSales;
+    }
+}
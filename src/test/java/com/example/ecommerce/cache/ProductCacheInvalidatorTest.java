@@ -0,0 +1,80 @@
+package com.example.ecommerce.cache;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.entity.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import com.example.ecommerce.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// A reader that loaded a product before an update committed stores it only after the update's
+// eviction: the steps @Cacheable takes (miss, load, put), with the update in between
+@EcommerceTest
+class ProductCacheInvalidatorTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void fillOvertakenByAnEvictionIsNotStored() throws Exception {
+        Product product = productService.createProduct(new Product("Stale lamp", new BigDecimal("20.00"), 3));
+        Long id = product.getId();
+        Cache cache = cacheManager.getCache(CacheNames.PRODUCTS);
+        cache.evict(id);
+
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch updated = new CountDownLatch(1);
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> {
+            assertThat(cache.get(id)).isNull();
+            Product stale = productRepository.findById(id).orElseThrow();
+            loaded.countDown();
+            await(updated);
+            cache.put(id, stale);
+        });
+
+        assertThat(loaded.await(10, TimeUnit.SECONDS)).isTrue();
+        productService.updateProduct(id, new Product("Stale lamp", new BigDecimal("25.00"), 3), null);
+        updated.countDown();
+        reader.get(10, TimeUnit.SECONDS);
+
+        assertThat(cache.get(id)).isNull();
+        assertThat(productService.getProductById(id).orElseThrow().getPrice()).isEqualByComparingTo("25.00");
+        // The next fill, with no eviction in between, is cached as usual
+        assertThat(cache.get(id)).isNotNull();
+    }
+
+    @Test
+    void fillWithoutEvictionIsStored() {
+        Product product = productService.createProduct(new Product("Fresh lamp", new BigDecimal("30.00"), 3));
+        Cache cache = cacheManager.getCache(CacheNames.PRODUCTS);
+        cache.evict(product.getId());
+
+        productService.getProductById(product.getId());
+
+        assertThat(cache.get(product.getId())).isNotNull();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(10, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.ecommerce.changes;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.dto.ChangeBatch;
+import com.example.ecommerce.dto.ChangeRecord;
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.service.CustomerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EcommerceTest
+class ChangeFeedTest {
+
+    @Autowired
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // The log entry is written in the transaction of the change, so it rolls back with it
+    @Test
+    void rolledBackChangeLeavesNoLogEntry() {
+        ChangeCursor head = changeLog.heads().get(0);
+
+        Customer rolledBack = transactionTemplate.execute(status -> {
+            Customer customer = customerService.createCustomer(
+                    new Customer("Rolled", "Back", "rolled.back@example.com"));
+            status.setRollbackOnly();
+            return customer;
+        });
+
+        assertThat(changeLog.heads().get(0)).isEqualTo(head);
+        assertThat(changeLog.readSince(head, 100)).isEmpty();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customers WHERE id = ?",
+                Integer.class, rolledBack.getId())).isZero();
+
+        Customer committed = customerService.createCustomer(new Customer("Com", "Mitted", "committed@example.com"));
+        assertThat(changeLog.readSince(head, 100)).extracting(ChangeRecord::getEntityId)
+                .containsExactly(committed.getId());
+    }
+
+    @Test
+    void longPollIsAnsweredByTheNextCommit() throws Exception {
+        ChangeCursor head = changeLog.heads().get(0);
+        DeferredResult<ResponseEntity<?>> result = changeFeed.poll(head, 100, Duration.ofSeconds(30));
+        CountDownLatch answered = new CountDownLatch(1);
+        result.setResultHandler(value -> answered.countDown());
+        assertThat(result.hasResult()).isFalse();
+        assertThat(changeFeed.getWaiterCount()).isPositive();
+
+        Customer customer = customerService.createCustomer(new Customer("Long", "Poll", "long.poll@example.com"));
+
+        assertThat(answered.await(10, TimeUnit.SECONDS)).isTrue();
+        ChangeBatch batch = (ChangeBatch) ((ResponseEntity<?>) result.getResult()).getBody();
+        assertThat(batch.getChanges()).extracting(ChangeRecord::getEntityId).containsExactly(customer.getId());
+        assertThat(batch.getNext()).isEqualTo(head.at(batch.getLastSeq()).toString());
+    }
+
+    // A stream whose client stopped reading blocks in send; the other streams still get the change
+    @Test
+    void stalledStreamDoesNotHoldUpOthers() throws Exception {
+        ChangeCursor head = changeLog.heads().get(0);
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(1);
+        SseEmitter stalledEmitter = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder event) {
+                stalled.countDown();
+                try {
+                    release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        SseEmitter liveEmitter = new SseEmitter() {
+            @Override
+            public void send(SseEventBuilder event) {
+                delivered.countDown();
+            }
+        };
+        changeFeed.subscribe(head, stalledEmitter);
+        try {
+            customerService.createCustomer(new Customer("Stalled", "Stream", "stalled.stream@example.com"));
+            assertThat(stalled.await(10, TimeUnit.SECONDS)).isTrue();
+
+            changeFeed.subscribe(head, liveEmitter);
+            assertThat(delivered.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            stalledEmitter.complete();
+            liveEmitter.complete();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.ecommerce.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Spring Retry has to find @Retryable through the meta-annotation, with its listener
+class RetryOnOptimisticLockTest {
+
+    static class Writer {
+        private final AtomicInteger attempts = new AtomicInteger();
+
+        // Fails the first "conflicts" attempts
+        @RetryOnOptimisticLock
+        public int write(int conflicts) {
+            if (attempts.incrementAndGet() <= conflicts) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return attempts.get();
+        }
+
+        // Attempts since the last call
+        public int attempts() {
+            return attempts.getAndSet(0);
+        }
+    }
+
+    @Test
+    void retriesConflictsAndCountsThem() {
+        try (AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+            context.register(RetryConfig.class, OptimisticLockMonitor.class, Writer.class);
+            context.refresh();
+            Writer writer = context.getBean(Writer.class);
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+
+            assertThat(writer.write(3)).isEqualTo(4);
+            assertThat(meterRegistry.counter("optimistic.lock.conflicts", "entity", "unknown").count()).isEqualTo(3);
+
+            writer.attempts();
+            assertThatThrownBy(() -> writer.write(4)).isInstanceOf(OptimisticLockingFailureException.class);
+            assertThat(writer.attempts()).isEqualTo(4);
+        }
+    }
+}
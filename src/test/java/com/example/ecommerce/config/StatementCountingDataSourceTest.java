@@ -0,0 +1,47 @@
+package com.example.ecommerce.config;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EcommerceTest
+class StatementCountingDataSourceTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    // JdbcTemplate SQL never passes through Hibernate's StatementInspector
+    @Test
+    void countsJdbcTemplateStatements() {
+        StatementLog statementLog = StatementLog.current();
+        long mark = statementLog.count();
+
+        jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+        jdbcTemplate.update("UPDATE products SET stock_quantity = stock_quantity WHERE id = ?", -1L);
+
+        assertThat(statementLog.count() - mark).isEqualTo(2);
+        assertThat(statementLog.since(mark)).containsExactly(
+                "SELECT 1", "UPDATE products SET stock_quantity = stock_quantity WHERE id = ?");
+    }
+
+    @Test
+    void countsRepositoryStatements() {
+        StatementLog statementLog = StatementLog.current();
+        long mark = statementLog.count();
+
+        productRepository.count();
+
+        List<String> statements = statementLog.since(mark);
+        assertThat(statements).hasSize(1);
+        assertThat(statements.get(0).toLowerCase()).startsWith("select count(");
+    }
+}
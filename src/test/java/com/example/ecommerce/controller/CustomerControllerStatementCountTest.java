@@ -0,0 +1,67 @@
+package com.example.ecommerce.controller;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.config.StatementLog;
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.service.CustomerService;
+import com.example.ecommerce.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The customer list must not issue a query per customer (or per order), with or without
+// include=orders: the statement count stays the same however many rows there are
+@EcommerceTest
+class CustomerControllerStatementCountTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private OrderService orderService;
+
+    private int created;
+
+    @Test
+    void listingCustomersTakesConstantStatements() throws Exception {
+        addCustomers(2, 1);
+        long few = statementsFor("/api/customers");
+        long fewWithOrders = statementsFor("/api/customers?include=orders");
+
+        addCustomers(20, 3);
+        long many = statementsFor("/api/customers");
+        long manyWithOrders = statementsFor("/api/customers?include=orders");
+
+        assertThat(many).isEqualTo(few);
+        assertThat(manyWithOrders).isEqualTo(fewWithOrders);
+        assertThat(fewWithOrders).isGreaterThan(few);
+    }
+
+    private void addCustomers(int customers, int ordersEach) {
+        for (int i = 0; i < customers; i++) {
+            created++;
+            Customer customer = customerService.createCustomer(
+                    new Customer("Test", "Customer" + created, "customer" + created + "@example.com"));
+            for (int j = 0; j < ordersEach; j++) {
+                orderService.createOrder(customer.getId(), created + " Main Street", new BigDecimal("19.99"));
+            }
+        }
+    }
+
+    // MockMvc runs the request on this thread, so its statements land in this thread's log
+    private long statementsFor(String uri) throws Exception {
+        StatementLog statementLog = StatementLog.current();
+        long mark = statementLog.count();
+        mockMvc.perform(get(uri)).andExpect(status().isOk());
+        return statementLog.count() - mark;
+    }
+}
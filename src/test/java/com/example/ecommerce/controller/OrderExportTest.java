@@ -0,0 +1,53 @@
+package com.example.ecommerce.controller;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.service.CustomerService;
+import com.example.ecommerce.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// The export is written on the request thread, so the async request timeout does not apply to it
+@EcommerceTest
+class OrderExportTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Test
+    void exportIsWrittenWithoutStartingAsyncProcessing() throws Exception {
+        Customer customer = customerService.createCustomer(new Customer("Export", "Customer", "export@example.com"));
+        Order order = orderService.createOrder(customer.getId(), "1 Export Street", new BigDecimal("12.50"));
+
+        MvcResult result = mockMvc.perform(get("/api/orders/export").param("format", "csv"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"orders.csv\""))
+                .andReturn();
+
+        assertThat(result.getRequest().isAsyncStarted()).isFalse();
+        assertThat(result.getResponse().getContentType()).startsWith("text/csv");
+        assertThat(result.getResponse().getContentAsString()).contains("\n" + order.getId() + ",");
+    }
+
+    @Test
+    void unknownFormatIsRefused() throws Exception {
+        mockMvc.perform(get("/api/orders/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+}
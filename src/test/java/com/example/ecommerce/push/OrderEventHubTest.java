@@ -0,0 +1,133 @@
+package com.example.ecommerce.push;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.entity.Order;
+import com.example.ecommerce.entity.OrderStatus;
+import com.example.ecommerce.service.CustomerService;
+import com.example.ecommerce.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@EcommerceTest
+class OrderEventHubTest {
+
+    private static final Pattern FIELD = Pattern.compile("^(id|event):(.*)$", Pattern.MULTILINE);
+
+    @Autowired
+    private OrderEventHub orderEventHub;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private OrderService orderService;
+
+    // Updates committed from several threads reach the stream in id order, and a stream resumed
+    // from the middle gets exactly the rest
+    @Test
+    void concurrentUpdatesArriveInOrderAndResume() throws Exception {
+        Customer customer = customerService.createCustomer(new Customer("Event", "Hub", "event.hub@example.com"));
+        CapturingEmitter live = new CapturingEmitter();
+        orderEventHub.subscribeToCustomer(customer.getId(), null, live);
+
+        List<Order> orders = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            orders.add(orderService.createOrder(customer.getId(), "1 Event Street", new BigDecimal("10.00")));
+        }
+        ExecutorService writers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> updates = new ArrayList<>();
+            for (Order order : orders) {
+                updates.add(writers.submit(() -> {
+                    for (OrderStatus status : List.of(OrderStatus.CONFIRMED, OrderStatus.PROCESSING, OrderStatus.SHIPPED)) {
+                        orderService.updateOrderStatus(order.getId(), status);
+                    }
+                }));
+            }
+            for (Future<?> update : updates) {
+                update.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            writers.shutdown();
+        }
+
+        List<String> ids = live.awaitIds(40);
+        assertThat(ids).hasSize(40);
+        for (int i = 1; i < ids.size(); i++) {
+            assertThat(sequence(ids.get(i))).isGreaterThan(sequence(ids.get(i - 1)));
+        }
+
+        CapturingEmitter resumed = new CapturingEmitter();
+        orderEventHub.subscribeToCustomer(customer.getId(), ids.get(19), resumed);
+        assertThat(resumed.awaitIds(20)).containsExactlyElementsOf(ids.subList(20, 40));
+
+        live.complete();
+        resumed.complete();
+    }
+
+    @Test
+    void idFromAnotherEpochGetsAReset() throws Exception {
+        Customer customer = customerService.createCustomer(new Customer("Event", "Reset", "event.reset@example.com"));
+        CapturingEmitter emitter = new CapturingEmitter();
+        orderEventHub.subscribeToCustomer(customer.getId(), "0-5", emitter);
+
+        assertThat(emitter.awaitNames(1)).containsExactly("reset");
+        emitter.complete();
+    }
+
+    private static long sequence(String id) {
+        return Long.parseLong(id.substring(id.lastIndexOf('-') + 1));
+    }
+
+    private static final class CapturingEmitter extends SseEmitter {
+        private final List<String> ids = new CopyOnWriteArrayList<>();
+        private final List<String> names = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder event) {
+            StringBuilder text = new StringBuilder();
+            event.build().forEach(part -> {
+                if (part.getData() instanceof String) {
+                    text.append(part.getData());
+                }
+            });
+            Matcher field = FIELD.matcher(text);
+            while (field.find()) {
+                (field.group(1).equals("id") ? ids : names).add(field.group(2));
+            }
+        }
+
+        List<String> awaitIds(int count) throws InterruptedException {
+            return await(ids, count);
+        }
+
+        List<String> awaitNames(int count) throws InterruptedException {
+            return await(names, count);
+        }
+
+        private static List<String> await(List<String> values, int count) throws InterruptedException {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (values.size() < count && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            // Nothing beyond what was expected arrives late
+            Thread.sleep(100);
+            return new ArrayList<>(values);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.ecommerce.schema;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaMigrationsTest {
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void openDatabase() {
+        dataSource = new SingleConnectionDataSource("jdbc:sqlite::memory:", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @AfterEach
+    void closeDatabase() {
+        dataSource.destroy();
+    }
+
+    // The schema Hibernate generated before identity columns were plain "integer"
+    @Test
+    void rebuildsBigintIdentityTablesWithRowidIds() {
+        jdbcTemplate.execute("create table customers (id bigint integer, email varchar(255), primary key (id))");
+        jdbcTemplate.execute("create table orders (id bigint integer, customer_id bigint, primary key (id))");
+        jdbcTemplate.execute("CREATE INDEX idx_orders_customer ON orders (customer_id)");
+        jdbcTemplate.execute("create table notes (id integer, text varchar(255), primary key (id))");
+        for (String email : List.of("a@example.com", "b@example.com")) {
+            jdbcTemplate.update("insert into customers (email) values (?)", email);
+            jdbcTemplate.update("insert into orders (customer_id) values (last_insert_rowid())");
+        }
+        jdbcTemplate.update("insert into notes (text) values ('untouched')");
+        assertThat(jdbcTemplate.queryForList("SELECT id FROM customers", Long.class)).containsOnlyNulls();
+
+        SchemaMigrations.rebuildBigintIdentityTables(jdbcTemplate);
+
+        assertThat(jdbcTemplate.queryForList(
+                "SELECT c.email FROM orders o JOIN customers c ON c.id = o.customer_id ORDER BY o.id", String.class))
+                .containsExactly("a@example.com", "b@example.com");
+        assertThat(jdbcTemplate.queryForList("SELECT sql FROM sqlite_master WHERE name = 'customers'", String.class)
+                .get(0)).contains("id integer").doesNotContain("bigint integer");
+        assertThat(jdbcTemplate.queryForList("SELECT name FROM sqlite_master WHERE type = 'index' AND tbl_name = 'orders'",
+                String.class)).contains("idx_orders_customer");
+        assertThat(jdbcTemplate.queryForList("SELECT text FROM notes", String.class)).containsExactly("untouched");
+
+        // New rows get an id from the rowid again
+        jdbcTemplate.update("insert into customers (email) values ('c@example.com')");
+        assertThat(jdbcTemplate.queryForObject("SELECT id FROM customers WHERE email = 'c@example.com'", Long.class))
+                .isEqualTo(3L);
+    }
+}
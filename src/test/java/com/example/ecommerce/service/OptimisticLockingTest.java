@@ -0,0 +1,62 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.entity.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.retry.annotation.RetryConfiguration;
+import org.springframework.transaction.interceptor.TransactionAttributeSourceAdvisor;
+import org.springframework.transaction.interceptor.BeanFactoryTransactionAttributeSourceAdvisor;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@EcommerceTest
+class OptimisticLockingTest {
+
+    @Autowired
+    private ProductService productService;
+
+    // A retry inside the transaction would re-run on the persistence context that already failed
+    @Test
+    void retryAdviceWrapsTransactionAdvice() {
+        Advisor[] advisors = ((Advised) productService).getAdvisors();
+        int retry = -1;
+        int transaction = -1;
+        for (int i = 0; i < advisors.length; i++) {
+            if (advisors[i] instanceof RetryConfiguration) {
+                retry = i;
+            } else if (advisors[i] instanceof BeanFactoryTransactionAttributeSourceAdvisor
+                    || advisors[i] instanceof TransactionAttributeSourceAdvisor) {
+                transaction = i;
+            }
+        }
+        assertThat(retry).isNotNegative();
+        assertThat(transaction).isNotNegative();
+        assertThat(retry).isLessThan(transaction);
+    }
+
+    @Test
+    void updateBasedOnStaleVersionIsRefused() {
+        Product product = productService.createProduct(new Product("Desk lamp", new BigDecimal("39.90"), 12));
+        long version = product.getVersion();
+
+        Product edit = new Product("Desk lamp", new BigDecimal("34.90"), 12);
+        Product updated = productService.updateProduct(product.getId(), edit, version);
+        assertThat(updated.getVersion()).isGreaterThan(version);
+
+        Product staleEdit = new Product("Desk lamp", new BigDecimal("29.90"), 40);
+        assertThatThrownBy(() -> productService.updateProduct(product.getId(), staleEdit, version))
+                .isInstanceOf(StaleVersionException.class);
+        assertThat(productService.getProductById(product.getId()).orElseThrow().getPrice())
+                .isEqualByComparingTo("34.90");
+
+        // Without an expected version the update still goes through
+        assertThat(productService.updateProduct(product.getId(), staleEdit, null).getPrice())
+                .isEqualByComparingTo("29.90");
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.entity.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Text search matches words and word prefixes, listed or paged, and never substrings
+@EcommerceTest
+class ProductSearchTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Test
+    void matchesWordsAndPrefixesButNotSubstrings() {
+        Product phoneCase = productService.createProduct(new Product("Quux Phone Case", new BigDecimal("9.90"), 5));
+        Product smartphone = productService.createProduct(new Product("Quuxphone", new BigDecimal("499.00"), 5));
+
+        assertThat(productService.searchProducts("phone")).extracting(Product::getId)
+                .contains(phoneCase.getId())
+                .doesNotContain(smartphone.getId());
+        assertThat(productService.searchProductsPage("phone", null, 500).getItems()).extracting(Product::getId)
+                .contains(phoneCase.getId())
+                .doesNotContain(smartphone.getId());
+
+        assertThat(productService.searchProducts("quux")).extracting(Product::getId)
+                .contains(phoneCase.getId(), smartphone.getId());
+        assertThat(productService.searchProducts("uxphone")).isEmpty();
+    }
+}
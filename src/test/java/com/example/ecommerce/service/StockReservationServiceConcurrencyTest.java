@@ -0,0 +1,84 @@
+package com.example.ecommerce.service;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.entity.Product;
+import com.example.ecommerce.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Many buyers race for the last units of one product; the conditional UPDATE must let exactly as
+// many reservations through as there is stock, and stock must never go negative.
+@EcommerceTest
+class StockReservationServiceConcurrencyTest {
+
+    private static final int STOCK = 50;
+    private static final int BUYERS = 200;
+    private static final int THREADS = 16;
+
+    @Autowired
+    private StockReservationService stockReservationService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Test
+    void parallelReservationsNeverOversell() throws Exception {
+        Product product = productRepository.save(new Product("Limited edition", new BigDecimal("99.00"), STOCK));
+
+        assertThat(reserveConcurrently(product.getId(), 1)).isEqualTo(STOCK);
+
+        int stock = productRepository.findById(product.getId()).orElseThrow().getStockQuantity();
+        assertThat(stock).isZero();
+    }
+
+    @Test
+    void parallelMultiUnitReservationsKeepTheRemainder() throws Exception {
+        Product product = productRepository.save(new Product("Bundle", new BigDecimal("10.00"), STOCK));
+        int quantity = 3;
+
+        assertThat(reserveConcurrently(product.getId(), quantity)).isEqualTo(STOCK / quantity);
+
+        int stock = productRepository.findById(product.getId()).orElseThrow().getStockQuantity();
+        assertThat(stock).isEqualTo(STOCK % quantity).isNotNegative();
+    }
+
+    // BUYERS reservations of the quantity, released at once on THREADS threads; returns how many succeeded
+    private int reserveConcurrently(Long productId, int quantity) throws Exception {
+        List<Future<Boolean>> results = new ArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < BUYERS; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        stockReservationService.reserve(productId, quantity);
+                        return true;
+                    } catch (InsufficientStockException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            int reserved = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    reserved++;
+                }
+            }
+            return reserved;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
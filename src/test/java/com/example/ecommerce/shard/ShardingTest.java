@@ -0,0 +1,154 @@
+package com.example.ecommerce.shard;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.changes.ChangeCursor;
+import com.example.ecommerce.changes.ChangeLog;
+import com.example.ecommerce.dto.ChangeRecord;
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.service.CustomerService;
+import com.example.ecommerce.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@EcommerceTest
+@TestPropertySource(properties = { "test.database=sharding", "app.sharding.shards=2" })
+class ShardingTest {
+
+    @Autowired
+    private Shards shards;
+
+    @Autowired
+    private ShardRebalancer shardRebalancer;
+
+    @Autowired
+    private ChangeLog changeLog;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void rebalancingLeavesNoCustomerOnTwoShards() {
+        List<Long> onShardZero = customersWithOrdersOnShardZero("rebalance");
+        long customersBefore = totalCustomers();
+
+        Map<String, Object> run = shardRebalancer.rebalance(null);
+
+        assertThat((Integer) run.get("movedCustomers")).isPositive();
+        assertThat((List<?>) run.get("duplicateCustomers")).isEmpty();
+        assertThat(totalCustomers()).isEqualTo(customersBefore);
+        for (Long customerId : onShardZero) {
+            assertThat(customerService.getCustomerById(customerId)).isPresent();
+        }
+    }
+
+    @Test
+    void moveRolledBackOnTheSourceIsTakenOffTheTarget() {
+        List<Long> onShardZero = customersWithOrdersOnShardZero("rollback");
+        long[] customersBefore = customersPerShard();
+        shards.onShard(0, () -> jdbcTemplate.execute(
+                "CREATE TRIGGER refuse_deletes BEFORE DELETE ON customers BEGIN SELECT RAISE(ABORT, 'refused'); END"));
+        try {
+            assertThatThrownBy(() -> shardRebalancer.rebalance(null)).hasMessageContaining("refused");
+        } finally {
+            shards.onShard(0, () -> jdbcTemplate.execute("DROP TRIGGER refuse_deletes"));
+        }
+
+        assertThat(customersPerShard()).isEqualTo(customersBefore);
+        assertThat((List<?>) shardRebalancer.report().get("duplicateCustomers")).isEmpty();
+        for (Long customerId : onShardZero) {
+            assertThat(shards.shardOfCustomer(customerId)).isZero();
+        }
+    }
+
+    // What a move leaves behind when the process dies between the target's and the source's commit
+    @Test
+    void reportListsCustomersStoredOnTwoShards() {
+        Customer customer = null;
+        for (int i = 0; customer == null || shards.shardOfCustomer(customer.getId()) != 1; i++) {
+            customer = customerService.createCustomer(
+                    new Customer("Duplicate", "Customer" + i, "duplicate" + i + "@example.com"));
+        }
+        Long customerId = customer.getId();
+        Map<String, Object> row = shards.read(1, () ->
+                jdbcTemplate.queryForMap("SELECT * FROM customers WHERE id = ?", customerId));
+        shards.write(0, () -> jdbcTemplate.update(
+                "INSERT INTO customers (" + String.join(", ", row.keySet()) + ") VALUES (" +
+                        String.join(", ", Collections.nCopies(row.size(), "?")) + ")", row.values().toArray()));
+
+        assertThat(shardRebalancer.report().get("duplicateCustomers")).isEqualTo(List.of(customerId));
+
+        shards.write(0, () -> jdbcTemplate.update("DELETE FROM customers WHERE id = ?", customerId));
+        assertThat((List<?>) shardRebalancer.report().get("duplicateCustomers")).isEmpty();
+    }
+
+    @Test
+    void changeFeedIsReadPerShard() {
+        List<ChangeCursor> before = changeLog.heads();
+        assertThat(before).hasSize(2);
+
+        Customer customer = null;
+        for (int i = 0; customer == null || shards.shardOfCustomer(customer.getId()) != 1; i++) {
+            customer = customerService.createCustomer(
+                    new Customer("Feed", "Customer" + i, "feed" + i + "@example.com"));
+        }
+
+        ChangeCursor since = before.get(1);
+        assertThat(since.toString()).startsWith("1:");
+        List<ChangeRecord> changes = changeLog.readSince(since, 100);
+        assertThat(changes).extracting(ChangeRecord::getEntityId).contains(customer.getId());
+        assertThat(changeLog.heads().get(1).getSeq()).isEqualTo(changes.get(changes.size() - 1).getSeq());
+    }
+
+    // Customers placed on shard 0 with enough orders to make it the fullest shard
+    private List<Long> customersWithOrdersOnShardZero(String prefix) {
+        List<Long> onShardZero = new ArrayList<>();
+        for (int i = 0; onShardZero.size() < 12 && i < 200; i++) {
+            Customer customer = customerService.createCustomer(
+                    new Customer("Shard", "Customer" + i, prefix + i + "@example.com"));
+            if (shards.shardOfCustomer(customer.getId()) == 0) {
+                onShardZero.add(customer.getId());
+            }
+        }
+        for (Long customerId : onShardZero) {
+            for (int j = 0; j < 5; j++) {
+                orderService.createOrder(customerId, "1 Shard Street", new BigDecimal("10.00"));
+            }
+        }
+        return onShardZero;
+    }
+
+    private long[] customersPerShard() {
+        long[] customers = new long[shards.getCount()];
+        for (int shard = 0; shard < customers.length; shard++) {
+            customers[shard] = shards.read(shard, () -> {
+                Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customers", Long.class);
+                return count != null ? count : 0L;
+            });
+        }
+        return customers;
+    }
+
+    private long totalCustomers() {
+        return shards.sum(() -> {
+            Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM customers", Long.class);
+            return count != null ? count : 0L;
+        });
+    }
+}
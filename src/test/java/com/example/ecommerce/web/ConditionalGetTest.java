@@ -0,0 +1,80 @@
+package com.example.ecommerce.web;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.entity.Product;
+import com.example.ecommerce.service.CustomerService;
+import com.example.ecommerce.service.ProductService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@EcommerceTest
+class ConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Test
+    void collectionAnswersNotModifiedUntilAWriteCommits() throws Exception {
+        String etag = etagOf("/api/customers");
+        assertThat(etag).startsWith("W/\"");
+
+        mockMvc.perform(get("/api/customers").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        customerService.createCustomer(new Customer("Tag", "Customer", "tag.customer@example.com"));
+
+        mockMvc.perform(get("/api/customers").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        String changed = etagOf("/api/customers");
+        assertThat(changed).isNotEqualTo(etag);
+        mockMvc.perform(get("/api/customers").header(HttpHeaders.IF_NONE_MATCH, changed))
+                .andExpect(status().isNotModified());
+    }
+
+    // A product's tag follows its version, not the collection
+    @Test
+    void entityTagFollowsTheEntityVersion() throws Exception {
+        Product product = productService.createProduct(new Product("Tagged mug", new BigDecimal("8.00"), 10));
+        Product other = productService.createProduct(new Product("Other mug", new BigDecimal("8.00"), 10));
+        String uri = "/api/products/" + product.getId();
+        String etag = etagOf(uri);
+        assertThat(etag).isEqualTo(ETags.entity(product.getVersion()));
+
+        mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        productService.updateProduct(other.getId(), new Product("Other mug", new BigDecimal("9.00"), 10), null);
+        mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        productService.updateProduct(product.getId(), new Product("Tagged mug", new BigDecimal("9.00"), 10), null);
+        mockMvc.perform(get(uri).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        assertThat(etagOf(uri)).isNotEqualTo(etag);
+    }
+
+    private String etagOf(String uri) throws Exception {
+        String etag = mockMvc.perform(get(uri))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).isNotNull();
+        return etag;
+    }
+}
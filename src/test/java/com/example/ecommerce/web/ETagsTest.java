@@ -0,0 +1,23 @@
+package com.example.ecommerce.web;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ETagsTest {
+
+    @Test
+    void ifMatchReadsTheVersionOfEntityTags() {
+        assertThat(ETags.ifMatchVersion(ETags.entity(7))).isEqualTo(7L);
+        assertThat(ETags.ifMatchVersion("\"v12\"")).isEqualTo(12L);
+        assertThat(ETags.ifMatchVersion(ETags.entity(3, "W/\"c5-9\""))).isEqualTo(3L);
+    }
+
+    @Test
+    void ifMatchWithoutVersion() {
+        assertThat(ETags.ifMatchVersion(null)).isNull();
+        assertThat(ETags.ifMatchVersion("*")).isNull();
+        assertThatThrownBy(() -> ETags.ifMatchVersion("\"abc\"")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.ecommerce.web;
+
+import com.example.ecommerce.EcommerceTest;
+import com.example.ecommerce.entity.Customer;
+import com.example.ecommerce.service.CustomerService;
+import com.example.ecommerce.service.OrderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@EcommerceTest
+class IdempotencyFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CustomerService customerService;
+
+    @Autowired
+    private OrderService orderService;
+
+    // POST /api/orders answers from its CompletableFuture; the response is kept on the async dispatch
+    @Test
+    void asyncResponseIsKeptAndReplayed() throws Exception {
+        Customer customer = customerService.createCustomer(new Customer("Async", "Key", "async.key@example.com"));
+        MockHttpServletRequestBuilder create = createOrder(customer, "async-order-1");
+
+        MvcResult started = mockMvc.perform(create)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyFilter.REPLAYED_HEADER))
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(create)
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(content().string(body));
+        assertThat(orderService.getOrdersByCustomerId(customer.getId())).hasSize(1);
+    }
+
+    // Duplicates arriving while the first request runs wait for it and get its response
+    @Test
+    void concurrentDuplicatesCollapseIntoOneOrder() throws Exception {
+        Customer customer = customerService.createCustomer(new Customer("Concurrent", "Key", "concurrent.key@example.com"));
+        int requests = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService clients = Executors.newFixedThreadPool(requests);
+        List<MockHttpServletResponse> responses = new ArrayList<>();
+        try {
+            List<Future<MockHttpServletResponse>> sent = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                sent.add(clients.submit(() -> {
+                    start.await();
+                    MvcResult result = mockMvc.perform(createOrder(customer, "concurrent-order-1")).andReturn();
+                    if (result.getRequest().isAsyncStarted()) {
+                        result = mockMvc.perform(asyncDispatch(result)).andReturn();
+                    }
+                    return result.getResponse();
+                }));
+            }
+            start.countDown();
+            for (Future<MockHttpServletResponse> response : sent) {
+                responses.add(response.get(60, TimeUnit.SECONDS));
+            }
+        } finally {
+            clients.shutdown();
+        }
+
+        assertThat(responses).extracting(MockHttpServletResponse::getStatus).containsOnly(201);
+        assertThat(responses).filteredOn(response -> response.getHeader(IdempotencyFilter.REPLAYED_HEADER) == null)
+                .hasSize(1);
+        assertThat(responses).extracting(MockHttpServletResponse::getContentAsString)
+                .containsOnly(responses.get(0).getContentAsString());
+        assertThat(orderService.getOrdersByCustomerId(customer.getId())).hasSize(1);
+    }
+
+    // The key is bound to the body it was first sent with
+    @Test
+    void reusedKeyWithAnotherBodyIsRejected() throws Exception {
+        String first = "{\"firstName\":\"Reused\",\"lastName\":\"Key\",\"email\":\"reused.key@example.com\"}";
+        String second = "{\"firstName\":\"Reused\",\"lastName\":\"Key\",\"email\":\"reused.key2@example.com\"}";
+
+        String created = mockMvc.perform(createCustomer("reused-customer-1", first))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+
+        mockMvc.perform(createCustomer("reused-customer-1", second))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(content().string(
+                        IdempotencyFilter.KEY_HEADER + " reused-customer-1 was already used for a different request"));
+        mockMvc.perform(createCustomer("reused-customer-1", first))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyFilter.REPLAYED_HEADER, "true"))
+                .andExpect(content().string(created));
+        assertThat(customerService.getCustomerByEmail("reused.key2@example.com")).isEmpty();
+    }
+
+    private static MockHttpServletRequestBuilder createOrder(Customer customer, String key) {
+        return post("/api/orders")
+                .header(IdempotencyFilter.KEY_HEADER, key)
+                .param("customerId", customer.getId().toString())
+                .param("shippingAddress", "1 Key Street")
+                .param("totalAmount", "15.00");
+    }
+
+    private static MockHttpServletRequestBuilder createCustomer(String key, String json) {
+        return post("/api/customers")
+                .header(IdempotencyFilter.KEY_HEADER, key)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json);
+    }
+}